@@ -1,55 +1,24 @@
 // =============================================================================
 // IMPORTS
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.ArrayList;
 // =============================================================================
 
 
 // =============================================================================
 /**
- * @file   DumbDataLinkLayer.java
+ * @file   CRCDataLinkLayer.java
  * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
  * @date   August 2018, original September 2004
  *
  * A data link layer that uses start/stop tags and byte packing to frame the
- * data, and that performs no error management.
+ * data, and that detects errors with a CRC-8 (generator 0x11D) following each
+ * block of up to eight data bytes.  Damaged blocks are dropped.
  */
 public class CRCDataLinkLayer extends DataLinkLayer {
 // =============================================================================
 
-	public boolean testBit(int v, int position){
-		return (v & (1 << position)) != 0;
-	}
-
-	public int injectBit(int v, int newValue){
-		return (v << 1) | newValue;
-	}
-
-	public boolean isDivisible(int c){
-		return (c &(1<<8)) != 0;
-	}
-
-	public String toBitString(final byte[] b){
-		final char[] bits = new char[8 * b.length];
-    	for(int i = 0; i < b.length; i++) {
-        final byte byteval = b[i];
-        int bytei = i << 3;
-        int mask = 0x1;
-        for(int j = 7; j >= 0; j--) {
-            final int bitval = byteval & mask;
-            if(bitval == 0) {
-                bits[bytei + j] = '0';
-            } else {
-                bits[bytei + j] = '1';
-            }
-            mask <<= 1;
-        }
-    }
-    return String.valueOf(bits);
-	}
 
 
     // =========================================================================
@@ -60,73 +29,41 @@ public class CRCDataLinkLayer extends DataLinkLayer {
      * @return A complete frame.
      */
     protected byte[] createFrame (byte[] data) {
-    Queue<Byte> framingData = new LinkedList<Byte>();
+
+	// In the worst case, every data and CRC byte must be escaped.
+	int    blocks = (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	byte[] framed = new byte[2 * (data.length + blocks * crc.size()) + 2];
+	byte[] check  = new byte[crc.size()];
+	int    length = 0;
+
 	// Begin with the start tag.
-	framingData.add(startTag);
-	ArrayList<Byte> frame = new ArrayList<Byte>();
-	// Add each byte of original data.
-	for (int i = 0; i < data.length; i += 1) {
-
-	    // If the current data byte is itself a metadata tag, then precede
-	    // it with an escape tag.
-	    byte currentByte = data[i];
-	    if ((currentByte == startTag) ||
-		(currentByte == stopTag) ||
-		(currentByte == escapeTag)) {
-
-		framingData.add(escapeTag);
-		}
+	framed[length++] = startTag;
+
+	// Add each block of original data, followed by its CRC.
+	for (int start = 0; start < data.length; start += BLOCK_SIZE) {
 
-		// Add the data byte itself.
-	    framingData.add(currentByte);
-		frame.add(currentByte);
-	    //if frame is full or last byte
-	    if(frame.size() == 8 || i == data.length - 1){
-			LinkedList<Integer> bitMessage = new LinkedList<Integer>();
-			byte[] byteFrame = new byte[frame.size()];
-			for(int j = 0; j < frame.size(); j++){
-				byteFrame[j] = frame.get(j);
-			}
-			frame.clear();
-			String bitString = toBitString(byteFrame);
-			//add each bit to a linkedlist
-			for(int j = 0; j < bitString.length(); j++){
-				bitMessage.add(Character.getNumericValue(bitString.charAt(j)));
-			}
-			//add 8 zeros
-			for(int j = 0; j < 8; j++){
-				bitMessage.add(0);
-			}
-			int c = 0;
-			while(bitMessage.size() != 0){
-				int current = bitMessage.removeFirst();
-				c = injectBit(c, current);
-				if(isDivisible(c)){
-					c = c ^ generator;
-				}
-			}
-			framingData.add(new Integer(c).byteValue());
+	    int end = Math.min(start + BLOCK_SIZE, data.length);
+	    for (int i = start; i < end; i += 1) {
+		length = addEscaped(data[i], framed, length);
 	    }
+
+	    crc.write(crc.compute(data, start, end - start), check, 0);
+	    for (int i = 0; i < check.length; i += 1) {
+		length = addEscaped(check[i], framed, length);
+	    }
+
 	}
-	    
+
 	// End with a stop tag.
-	framingData.add(stopTag);
-
-	// Convert to the desired byte array.
-	byte[] framedData = new byte[framingData.size()];
-	Iterator<Byte>  i = framingData.iterator();
-	int             j = 0;
-	while (i.hasNext()) {
-	    framedData[j++] = i.next();
-	}
-	System.out.println("framedData: " + new String(framedData));
-	return framedData;
-	
+	framed[length++] = stopTag;
+
+	return Arrays.copyOf(framed, length);
+
     } // createFrame ()
     // =========================================================================
 
 
-    
+
     // =========================================================================
     /**
      * Determine whether the received, buffered data constitutes a complete
@@ -155,10 +92,11 @@ public class CRCDataLinkLayer extends DataLinkLayer {
 	if (!startTagFound) {
 	    return null;
 	}
-	
+
 	// Try to extract data while waiting for an unescaped stop tag.
-	Queue<Byte> extractedBytes = new LinkedList<Byte>();
-	boolean       stopTagFound = false;
+	byte[]  extracted    = new byte[byteBuffer.size()];
+	int     length       = 0;
+	boolean stopTagFound = false;
 	while (!stopTagFound && i.hasNext()) {
 
 	    // Grab the next byte.  If it is...
@@ -172,8 +110,7 @@ public class CRCDataLinkLayer extends DataLinkLayer {
 	    byte current = i.next();
 	    if (current == escapeTag) {
 		if (i.hasNext()) {
-		    current = i.next();
-		    extractedBytes.add(current);
+		    extracted[length++] = i.next();
 		} else {
 		    // An escape was the last byte available, so this is not a
 		    // complete frame.
@@ -184,9 +121,9 @@ public class CRCDataLinkLayer extends DataLinkLayer {
 		stopTagFound = true;
 	    } else if (current == startTag) {
 		cleanBufferUpTo(i);
-		extractedBytes = new LinkedList<Byte>();
+		length = 0;
 	    } else {
-		extractedBytes.add(current);
+		extracted[length++] = current;
 	    }
 
 	}
@@ -196,69 +133,57 @@ public class CRCDataLinkLayer extends DataLinkLayer {
 	    return null;
 	}
 
-	ArrayList<Byte> frame = new ArrayList<Byte>();
-	i = extractedBytes.iterator();
-	ArrayList<Byte> extractedData = new ArrayList<Byte>();
-
-	while(i.hasNext()){
-		byte currentByte = i.next();
-		System.out.println("currentByte: " + new String(new byte[] {currentByte}));
-		if(frame.size() == 8 || !i.hasNext()){
-			LinkedList<Integer> bitMessage = new LinkedList<Integer>();
-			//add remainder
-			frame.add(currentByte);
-			//System.out.println("currentByte: " + new String(new byte[] {currentByte}));
-			byte[] byteFrame = new byte[frame.size()];
-			for(int j = 0; j < frame.size(); j++){
-				byteFrame[j] = frame.get(j);
-			}
-			String s = toBitString(byteFrame);
-			for(int j = 0; j < s.length(); j++){
-				bitMessage.add(Character.getNumericValue(s.charAt(j)));
-			}
-			//division
-			int c = 0;
-			while(bitMessage.size() != 0){
-				int current = bitMessage.removeFirst();
-				System.out.println("current: " + current);
-				c = injectBit(c, current);
-				System.out.println("c: " + c);
-				if(isDivisible(c)){
-					c = c ^ generator;
-					System.out.println("c: " + c);
-				}
-			}
-			if(c != 0){
-				byte[] incorrect = new byte[8];
-				for(int j = 0; j < frame.size(); j++){
-					incorrect[j] = frame.get(j).byteValue();
-				}
-				System.out.println("Error detected. Incorrect data: " + (new String(incorrect)));
-			}
-			else{
-				for(int j = 0; j < frame.size() - 1; j++){
-					extractedData.add(frame.get(j));
-					//System.out.println("data: " + new String(extractedData));
-				}
-			}
-			frame.clear();
-		}
-		else{
-			frame.add(currentByte);
-		}
-	}
+	// Check each block against its CRC, keeping only the intact blocks.
+	byte[] data      = new byte[length];
+	int    dataCount = 0;
+	int    blockSize = BLOCK_SIZE + crc.size();
+	for (int start = 0; start < length; start += blockSize) {
+
+	    int end   = Math.min(start + blockSize, length);
+	    int count = end - start - crc.size();
+	    if (count <= 0 ||
+		crc.compute(extracted, start, count) !=
+		crc.read(extracted, start + count)) {
+		System.out.printf("CRCDataLinkLayer.processFrame():\tDamaged block\n");
+		continue;
+	    }
+
+	    System.arraycopy(extracted, start, data, dataCount, count);
+	    dataCount += count;
 
-	byte[] toReturn = new byte[extractedData.size()];
-	for(int j = 0; j < extractedData.size(); j++){
-		toReturn[j] = extractedData.get(j);
 	}
-	return toReturn;
+
+	return Arrays.copyOf(data, dataCount);
 
     } // processFrame ()
     // ===============================================================
 
 
 
+    // ===============================================================
+    /**
+     * Append a byte to a frame, preceded by an escape tag if it is itself a
+     * metadata tag.
+     *
+     * @param b      The byte to append.
+     * @param framed The frame being built.
+     * @param length The number of bytes already in the frame.
+     * @return the new number of bytes in the frame.
+     */
+    private int addEscaped (byte b, byte[] framed, int length) {
+
+	if ((b == startTag) || (b == stopTag) || (b == escapeTag)) {
+	    framed[length++] = escapeTag;
+	}
+	framed[length++] = b;
+
+	return length;
+
+    } // addEscaped ()
+    // ===============================================================
+
+
+
     // ===============================================================
     private void cleanBufferUpTo (Iterator<Byte> end) {
 
@@ -277,7 +202,11 @@ public class CRCDataLinkLayer extends DataLinkLayer {
     // DATA MEMBERS
     // ===============================================================
 
-    private final int generator = 0b100011101;
+    /** The CRC following each block (CRC-8, generator 0x11D). */
+    private final Crc crc = Crc.CRC8;
+
+    /** The number of data bytes covered by each CRC. */
+    private static final int BLOCK_SIZE = 8;
 
 
     // ===============================================================
@@ -290,5 +219,5 @@ public class CRCDataLinkLayer extends DataLinkLayer {
 
 
 // ===================================================================
-} // class DumbDataLinkLayer
+} // class CRCDataLinkLayer
 // ===================================================================
@@ -0,0 +1,72 @@
+// =============================================================================
+/**
+ * A frame checksum that is Adler-32: two running sums modulo 65521, cheaper
+ * than a CRC but weaker on short frames.
+ *
+ * @file   Adler32Checksum.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class Adler32Checksum extends FrameChecksum {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes that the check value occupies. */
+    public int size () {
+
+	return 4;
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the Adler-32 of a run of bytes.  The modulus is taken only once
+     * per block of bytes small enough that the sums cannot overflow.
+     *
+     * @param data The array holding the bytes.
+     * @param off  The index of the first byte.
+     * @param len  The number of bytes.
+     * @return the checksum.
+     */
+    public long compute (byte[] data, int off, int len) {
+
+	int a   = 1;
+	int b   = 0;
+	int end = off + len;
+	while (off < end) {
+	    int blockEnd = Math.min(end, off + BLOCK_SIZE);
+	    for (; off < blockEnd; off += 1) {
+		a += data[off] & 0xff;
+		b += a;
+	    }
+	    a %= MODULUS;
+	    b %= MODULUS;
+	}
+
+	return ((long)b << 16) | a;
+
+    } // compute ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The largest prime below 2^16. */
+    private static final int MODULUS    = 65521;
+
+    /** The most bytes that may be summed before the sums could overflow. */
+    private static final int BLOCK_SIZE = 5552;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Adler32Checksum
+// =============================================================================
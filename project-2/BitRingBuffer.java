@@ -0,0 +1,476 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.concurrent.locks.LockSupport;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A fixed-capacity ring buffer of bits, packed 64 to a <code>long</code>.  Bits
+ * are written and read most significant first, either one at a time or as
+ * right-aligned words of up to 64 bits.  Whole bytes can be drained with word
+ * shifts rather than a loop per bit.
+ *
+ * The buffer is lock-free for exactly one producer thread (which calls the
+ * <code>put</code>/<code>offer</code> methods) and one consumer thread (which
+ * calls <code>poll</code>, <code>take</code>, and the <code>drain</code>
+ * methods).  Each side publishes its progress through a volatile position, so
+ * no locking is needed between the two.  A producer that must wait for space
+ * parks, and the consumer unparks it once it has drained the buffer to half
+ * full, so that neither spins and the producer wakes to a useful amount of
+ * room.
+ *
+ * @file   BitRingBuffer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class BitRingBuffer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     *
+     * @param capacity The minimum number of bits that the buffer can hold.
+     *                 This value is rounded up to a power of two, and to at
+     *                 least 64.
+     * @throws RuntimeException if the capacity is not positive.
+     */
+    public BitRingBuffer (int capacity) {
+
+        if (capacity < 1) {
+            throw new RuntimeException("Invalid bit buffer capacity " + capacity);
+        }
+
+        // Round up to a whole power-of-two number of words.
+        int wordCount = Math.max(1, (capacity + Long.SIZE - 1) / Long.SIZE);
+        wordCount     = Integer.highestOneBit(wordCount - 1) << 1;
+        if (wordCount == 0) {
+            wordCount = 1;
+        }
+
+        words    = new long[wordCount];
+        wordMask = wordCount - 1;
+        this.capacity = (long)wordCount * Long.SIZE;
+
+    } // BitRingBuffer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the total number of bits that the buffer can hold.
+     */
+    public long capacity () {
+
+        return capacity;
+
+    } // capacity ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the number of bits currently buffered and available to read.
+     */
+    public long available () {
+
+        return tail - head;
+
+    } // available ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the number of bits that can currently be written without
+     *         blocking.
+     */
+    public long remaining () {
+
+        return capacity - (tail - head);
+
+    } // remaining ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Write a single bit if there is space for it.  Producer only.
+     *
+     * @param bit The bit to write.
+     * @return <code>true</code> if the bit was written; <code>false</code> if
+     *         the buffer is full.
+     */
+    public boolean offer (boolean bit) {
+
+        return offer(bit ? 1 : 0, 1);
+
+    } // offer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Write a word of bits if there is space for all of them.  Producer only.
+     *
+     * @param bits  The bits to write, right-aligned, most significant first.
+     * @param count The number of low-order bits of <code>bits</code> to write,
+     *              from 1 to 64.
+     * @return <code>true</code> if the bits were written; <code>false</code> if
+     *         there is not enough space for them.
+     */
+    public boolean offer (long bits, int count) {
+
+        long t = tail;
+        if (capacity - (t - head) < count) {
+            return false;
+        }
+
+        write(t, bits, count);
+        tail = t + count;
+        return true;
+
+    } // offer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Write a word of bits, parking until the consumer makes space if
+     * necessary.  Producer only.
+     *
+     * @param bits  The bits to write, right-aligned, most significant first.
+     * @param count The number of low-order bits of <code>bits</code> to write,
+     *              from 1 to 64.
+     */
+    public void put (long bits, int count) {
+
+        if (offer(bits, count)) {
+            return;
+        }
+
+        // Announce the wait before checking again, so that the consumer either
+        // sees the waiter or has already made the room that the check finds.
+        waiter = Thread.currentThread();
+        try {
+            while (!offer(bits, count)) {
+                LockSupport.park(this);
+            }
+        } finally {
+            waiter = null;
+        }
+
+    } // put ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Write a word of bits, doubling the buffer's capacity as many times as
+     * necessary rather than waiting for space.  Only for a thread that is
+     * both producer and consumer (e.g., that of a discrete-event simulation,
+     * which delivers bits and polls their receiver in turn), as waiting there
+     * would never end, and no other thread may read while the buffer grows.
+     *
+     * @param bits  The bits to write, right-aligned, most significant first.
+     * @param count The number of low-order bits of <code>bits</code> to write,
+     *              from 1 to 64.
+     */
+    public void putOrGrow (long bits, int count) {
+
+        while (!offer(bits, count)) {
+            grow();
+        }
+
+    } // putOrGrow ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Read a single bit.  Consumer only.
+     *
+     * @return <code>1</code> or <code>0</code> for the next bit; or
+     *         <code>-1</code> if the buffer is empty.
+     */
+    public int poll () {
+
+        if (tail == head) {
+            return -1;
+        }
+
+        return (int)take(1);
+
+    } // poll ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Read a word of bits.  Consumer only, and the caller must first ensure
+     * that at least <code>count</code> bits are available.
+     *
+     * @param count The number of bits to read, from 1 to 64.
+     * @return the bits read, right-aligned, the first bit read being the most
+     *         significant.
+     * @throws RuntimeException if fewer than <code>count</code> bits are
+     *                          available.
+     */
+    public long take (int count) {
+
+        long h = head;
+        if (tail - h < count) {
+            throw new RuntimeException("Bit buffer underflow");
+        }
+
+        long bits = read(h, count);
+        advance(h + count);
+        return bits;
+
+    } // take ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Assemble as many whole bytes as are available, up to the length of the
+     * given array, and remove their bits from the buffer.  Consumer only.
+     *
+     * @param dst The array into which to place the bytes.
+     * @return the number of bytes drained.
+     */
+    public int drainBytes (byte[] dst) {
+
+        return drainBytes(dst, 0, dst.length);
+
+    } // drainBytes ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Assemble as many whole bytes as are available, up to the given length,
+     * and remove their bits from the buffer.  Consumer only.
+     *
+     * @param dst The array into which to place the bytes.
+     * @param off The index at which to place the first byte.
+     * @param len The maximum number of bytes to drain.
+     * @return the number of bytes drained.
+     */
+    public int drainBytes (byte[] dst, int off, int len) {
+
+        long h     = head;
+        int  count = (int)Math.min(len, (tail - h) / Byte.SIZE);
+
+        // Take eight bytes at a time as whole words...
+        int i = 0;
+        for (; i + Long.BYTES <= count; i += Long.BYTES) {
+            long word = read(h, Long.SIZE);
+            h += Long.SIZE;
+            for (int j = Long.BYTES - 1; j >= 0; j -= 1) {
+                dst[off + i + j] = (byte)word;
+                word >>>= Byte.SIZE;
+            }
+        }
+
+        // ...and then any remaining bytes singly.
+        for (; i < count; i += 1) {
+            dst[off + i] = (byte)read(h, Byte.SIZE);
+            h += Byte.SIZE;
+        }
+
+        advance(h);
+        return count;
+
+    } // drainBytes ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Move as many bits as will fit from this buffer into another.  The
+     * calling thread must be the consumer of this buffer and the producer of
+     * the destination.
+     *
+     * @param dst The buffer into which to move bits.
+     * @return the number of bits moved.
+     */
+    public long drainTo (BitRingBuffer dst) {
+
+        long h     = head;
+        long count = Math.min(tail - h, dst.remaining());
+        long moved = 0;
+        while (moved < count) {
+            int chunk = (int)Math.min(Long.SIZE, count - moved);
+            dst.offer(read(h + moved, chunk), chunk);
+            moved += chunk;
+        }
+
+        advance(h + moved);
+        return moved;
+
+    } // drainTo ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Publish the consumer's progress, and unpark a waiting producer once the
+     * buffer is no more than half full.
+     *
+     * @param position The absolute position of the next bit to read.
+     */
+    private void advance (long position) {
+
+        head = position;
+        Thread producer = waiter;
+        if (producer != null && tail - position <= capacity / 2) {
+            LockSupport.unpark(producer);
+        }
+
+    } // advance ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Store bits at a given position without publishing them.
+     *
+     * @param position The absolute bit position of the first bit.
+     * @param bits     The bits to store, right-aligned.
+     * @param count    The number of bits to store, from 1 to 64.
+     */
+    private void write (long position, long bits, int count) {
+
+        // Left-align the bits so that the first one is the most significant.
+        long value  = bits << (Long.SIZE - count);
+        int  offset = (int)(position & (Long.SIZE - 1));
+        int  index  = (int)((position >>> 6) & wordMask);
+        int  end    = offset + count;
+
+        // Fill the portion of the first word, leaving its other bits intact.
+        long mask   = (-1L >>> offset) & ((end >= Long.SIZE) ? -1L : ~(-1L >>> end));
+        words[index] = (words[index] & ~mask) | ((value >>> offset) & mask);
+
+        // Spill any remainder into the top of the next word.
+        if (end > Long.SIZE) {
+            int next     = (index + 1) & wordMask;
+            long spill   = ~(-1L >>> (end - Long.SIZE));
+            words[next]  = (words[next] & ~spill) |
+                           ((value << (Long.SIZE - offset)) & spill);
+        }
+
+    } // write ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Double the buffer's capacity, keeping the bits buffered at the same
+     * absolute positions.  Each word of the old array moves to the slot that
+     * its absolute index takes in the new one.
+     */
+    private void grow () {
+
+        long[] larger     = new long[words.length * 2];
+        int    largerMask = larger.length - 1;
+        long   h          = head;
+        long   t          = tail;
+        if (t > h) {
+            for (long w = h >>> 6; w <= (t - 1) >>> 6; w += 1) {
+                larger[(int)(w & largerMask)] = words[(int)(w & wordMask)];
+            }
+        }
+
+        words    = larger;
+        wordMask = largerMask;
+        capacity = (long)larger.length * Long.SIZE;
+
+    } // grow ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Load bits from a given position without consuming them.
+     *
+     * @param position The absolute bit position of the first bit.
+     * @param count    The number of bits to load, from 1 to 64.
+     * @return the bits, right-aligned.
+     */
+    private long read (long position, int count) {
+
+        int  offset = (int)(position & (Long.SIZE - 1));
+        int  index  = (int)((position >>> 6) & wordMask);
+        long value  = words[index] << offset;
+        if (offset + count > Long.SIZE) {
+            value |= words[(index + 1) & wordMask] >>> (Long.SIZE - offset);
+        }
+
+        return value >>> (Long.SIZE - count);
+
+    } // read ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The packed bits.  Replaced only by <code>putOrGrow()</code>. */
+    private long[]       words;
+
+    /** The mask that wraps a word index around the array. */
+    private int          wordMask;
+
+    /** The number of bits the buffer can hold. */
+    private long         capacity;
+
+    /** The absolute position of the next bit to read; written by the consumer. */
+    private volatile long head;
+
+    /** The absolute position of the next bit to write; written by the producer. */
+    private volatile long tail;
+
+    /** The producer, while it is parked in <code>put()</code> for space. */
+    private volatile Thread waiter;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class BitRingBuffer
+// =============================================================================
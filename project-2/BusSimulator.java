@@ -0,0 +1,258 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * Measures the throughput of a contended shared bus.  Based on command-line
+ * arguments, it attaches some number of CSMA/CD hosts to a
+ * <code>SharedBusMedium</code>, has every one of them send the same amount of
+ * data at once, and reports the aggregate rate at which the data was put on
+ * the bus, along with the collisions and dropped frames that it cost.
+ *
+ * Given <code>-virtual</code>, the hosts run in a discrete-event simulation
+ * (see <code>EventSimulator</code>) on a single thread in virtual time, and
+ * the rate is reported in virtual time; given also <code>-seed</code> and a
+ * seed, such runs are exactly reproducible.  Given <code>-rate</code> and a
+ * number of bits per second, the bus carries bits at that rate, so that each
+ * frame holds it for as long as its bits take to send (see
+ * <code>SharedBusMedium</code>).
+ *
+ * @file   BusSimulator.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class BusSimulator {
+// =============================================================================
+
+
+    // =========================================================================
+    /**
+     * The entry point.  Interpret the command-line arguments, aborting if they
+     * are invalid.  Set up the hosts and run the measurement.
+     *
+     * @param args The command-line arguments.
+     */
+    public static void main (String[] args) {
+
+	// Check for options, then the number of arguments passed.
+	boolean virtual   = false;
+	Long    seed      = null;
+	long    bandwidth = Medium.UNLIMITED;
+	int     options   = 0;
+	while (options < args.length && args[options].startsWith("-")) {
+	    if (args[options].equals(VIRTUAL_OPTION)) {
+		virtual  = true;
+		options += 1;
+	    } else if (args[options].equals(SEED_OPTION) &&
+		       options + 1 < args.length) {
+		seed     = Long.parseLong(args[options + 1]);
+		options += 2;
+	    } else if (args[options].equals(RATE_OPTION) &&
+		       options + 1 < args.length) {
+		bandwidth = Long.parseLong(args[options + 1]);
+		options  += 2;
+	    } else {
+		break;
+	    }
+	}
+	args = Arrays.copyOfRange(args, options, args.length);
+	if (args.length != 2 && args.length != 3) {
+
+	    System.err.println("Usage: java BusSimulator "           +
+			       "[" + VIRTUAL_OPTION + "] "           +
+			       "[" + SEED_OPTION + " <seed>] "       +
+			       "[" + RATE_OPTION + " <bits per second>] " +
+			       "<host count> "                       +
+			       "<bytes per host> "                   +
+			       "[<checksum type>]");
+	    System.exit(1);
+
+	}
+
+	// Assign names to the arguments.
+	int    hostCount    = Integer.parseInt(args[0]);
+	int    bytesPerHost = Integer.parseInt(args[1]);
+	String checksumType = (args.length == 3) ? args[2] : "Parity";
+	if (hostCount < 2 || bytesPerHost < 1) {
+	    throw new RuntimeException("Need at least two hosts and one byte");
+	}
+
+	// Attach the hosts to one bus.
+	SharedBusMedium medium = new SharedBusMedium();
+	if (seed != null) {
+	    medium.setSeed(seed);
+	}
+	medium.setTiming(bandwidth, 0, Medium.UNLIMITED);
+	Host[]          hosts  = new Host[hostCount];
+	for (int i = 0; i < hostCount; i += 1) {
+	    hosts[i] = new Host(medium, "CsmaCd", checksumType);
+	}
+
+	// Draw the data from the seed, if any, so that seeded runs repeat.
+	byte[] data = new byte[bytesPerHost];
+	((seed != null) ? new SplittableRandom(seed)
+	                : new SplittableRandom()).nextBytes(data);
+	if (virtual) {
+	    EventSimulator simulation = new EventSimulator();
+	    simulation.add(medium);
+	    for (Host host : hosts) {
+		simulation.add(host);
+	    }
+	    measure(simulation, medium, hosts, data);
+	} else {
+	    measure(medium, hosts, data);
+	}
+
+    } // main
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Have every host send its data at once, wait until all of it has been
+     * put on the bus (or dropped), and report the results.
+     *
+     * @param medium The bus.
+     * @param hosts  The hosts attached to it.
+     * @param data   The data for each host to send.
+     */
+    private static void measure (SharedBusMedium medium,
+				 Host[]          hosts,
+				 byte[]          data) {
+
+	for (Host host : hosts) {
+	    new Thread(host).start();
+	}
+
+	// Start every host sending at once.
+	long start = System.nanoTime();
+	CompletableFuture<?>[] sent = new CompletableFuture<?>[hosts.length];
+	for (int i = 0; i < hosts.length; i += 1) {
+	    sent[i] = hosts[i].sendAsync(data);
+	}
+	try {
+	    CompletableFuture.allOf(sent).get();
+	} catch (InterruptedException | ExecutionException e) {
+	    throw new RuntimeException("Measurement failed: " + e);
+	}
+	long elapsed = System.nanoTime() - start;
+	for (Host host : hosts) {
+	    host.stop();
+	}
+
+	report(medium, hosts, data.length, elapsed);
+
+    } // measure()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Have every host send its data at once in virtual time, run the
+     * simulation until all of it has been put on the bus (or dropped), or
+     * <code>VIRTUAL_TIME_LIMIT</code> passes, and report the results.
+     *
+     * @param simulation The simulation, to which the bus and hosts have been
+     *                   added.
+     * @param medium     The bus.
+     * @param hosts      The hosts attached to it.
+     * @param data       The data for each host to send.
+     */
+    private static void measure (EventSimulator  simulation,
+				 SharedBusMedium medium,
+				 Host[]          hosts,
+				 byte[]          data) {
+
+	// Start every host sending at once.  Nothing would drain a full send
+	// buffer while a host waited.
+	CompletableFuture<?>[] sent = new CompletableFuture<?>[hosts.length];
+	long start = simulation.nanoTime();
+	for (int i = 0; i < hosts.length; i += 1) {
+	    hosts[i].dataLinkLayer().setSendWatermarks(Long.MAX_VALUE - 1,
+						       Long.MAX_VALUE);
+	    sent[i] = hosts[i].sendAsync(data);
+	}
+	CompletableFuture<?> all = CompletableFuture.allOf(sent);
+	if (!simulation.run(all::isDone, start + VIRTUAL_TIME_LIMIT)) {
+	    throw new RuntimeException("Measurement ran out of virtual time");
+	}
+
+	report(medium, hosts, data.length, simulation.nanoTime() - start);
+
+    } // measure()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Report the aggregate rate at which the hosts' data was put on the bus,
+     * and what it cost.
+     *
+     * @param medium       The bus.
+     * @param hosts        The hosts attached to it.
+     * @param bytesPerHost The number of bytes that each host sent.
+     * @param elapsed      The time taken, in nanoseconds.
+     */
+    private static void report (SharedBusMedium medium,
+				Host[]          hosts,
+				int             bytesPerHost,
+				long            elapsed) {
+
+	// Total the hosts' outcomes.
+	long framesSent    = 0;
+	long framesDropped = 0;
+	long collisions    = 0;
+	for (Host host : hosts) {
+	    CsmaCdDataLinkLayer layer = (CsmaCdDataLinkLayer)host.dataLinkLayer();
+	    framesSent    += layer.framesSent();
+	    framesDropped += layer.framesDropped();
+	    collisions    += layer.collisions();
+	}
+
+	double seconds = elapsed / 1e9;
+	System.out.printf("Hosts:                %d\n", hosts.length);
+	System.out.printf("Elapsed:              %.3f s\n", seconds);
+	System.out.printf("Aggregate throughput: %.1f bytes/s\n",
+			  (double)hosts.length * bytesPerHost / seconds);
+	System.out.printf("Frames sent:          %d\n", framesSent);
+	System.out.printf("Frames dropped:       %d\n", framesDropped);
+	System.out.printf("Collisions:           %d (medium saw %d)\n",
+			  collisions, medium.collisions());
+
+    } // report()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The longest virtual time, in nanoseconds, to simulate: a day. */
+    private static final long VIRTUAL_TIME_LIMIT = 24 * 3600 * 1_000_000_000L;
+
+    /** The option selecting a simulation in virtual time. */
+    private static final String VIRTUAL_OPTION = "-virtual";
+
+    /** The option seeding the bus and the data. */
+    private static final String SEED_OPTION    = "-seed";
+
+    /** The option setting the bus's bit rate. */
+    private static final String RATE_OPTION    = "-rate";
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class BusSimulator
+// =============================================================================
@@ -0,0 +1,239 @@
+// =============================================================================
+/**
+ * A ring buffer of bytes that grows as needed, into which one thread writes
+ * and from which any thread may read, waiting if need be for bytes to arrive.
+ * Bytes are copied in and out in runs with <code>System.arraycopy()</code>,
+ * never boxed.  Once closed, the buffer accepts no more bytes, and readers
+ * waiting for bytes that will never come are released.
+ *
+ * @file   ByteRingBuffer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class ByteRingBuffer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     *
+     * @param capacity The initial number of bytes that the buffer can hold.
+     * @throws RuntimeException if the capacity is not positive.
+     */
+    public ByteRingBuffer (int capacity) {
+
+	if (capacity < 1) {
+	    throw new RuntimeException("Invalid byte buffer capacity " +
+				       capacity);
+	}
+
+	data = new byte[capacity];
+
+    } // ByteRingBuffer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append a run of bytes, growing the buffer if they do not fit, and wake
+     * any waiting readers.  Bytes written after the buffer is closed are
+     * dropped.
+     *
+     * @param src The array holding the bytes.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     */
+    public synchronized void write (byte[] src, int off, int len) {
+
+	if (closed || len == 0) {
+	    return;
+	}
+
+	if (count + len > data.length) {
+	    grow(count + len);
+	}
+
+	// Copy in up to two runs: to the end of the array, then from its start.
+	int tail  = (head + count) % data.length;
+	int first = Math.min(len, data.length - tail);
+	System.arraycopy(src, off, data, tail, first);
+	System.arraycopy(src, off + first, data, 0, len - first);
+	count += len;
+
+	notifyAll();
+
+    } // write ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove up to a number of bytes, without waiting.
+     *
+     * @param dst The array into which to copy the bytes.
+     * @param off The index at which to store the first byte.
+     * @param len The most bytes to remove.
+     * @return the number of bytes removed.
+     */
+    public synchronized int read (byte[] dst, int off, int len) {
+
+	int n     = Math.min(len, count);
+	int first = Math.min(n, data.length - head);
+	System.arraycopy(data, head, dst, off, first);
+	System.arraycopy(data, 0, dst, off + first, n - first);
+	head   = (head + n) % data.length;
+	count -= n;
+
+	return n;
+
+    } // read ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove every buffered byte, without waiting.
+     *
+     * @return the bytes removed.
+     */
+    public synchronized byte[] readAll () {
+
+	byte[] all = new byte[count];
+	read(all, 0, all.length);
+
+	return all;
+
+    } // readAll ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Wait until at least a number of bytes is buffered, the buffer is closed,
+     * or a timeout passes.
+     *
+     * @param minBytes The number of bytes awaited.
+     * @param timeout  The longest time to wait, in nanoseconds, or
+     *                 <code>Long.MAX_VALUE</code> to wait indefinitely.
+     * @return whether at least that many bytes are buffered.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized boolean await (int minBytes, long timeout)
+	throws InterruptedException {
+
+	long start = System.nanoTime();
+	while (count < minBytes && !closed) {
+	    if (timeout == Long.MAX_VALUE) {
+		wait();
+		continue;
+	    }
+	    long delay = timeout - (System.nanoTime() - start);
+	    if (delay <= 0) {
+		break;
+	    }
+	    wait(delay / 1_000_000, (int)(delay % 1_000_000));
+	}
+
+	return count >= minBytes;
+
+    } // await ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes buffered. */
+    public synchronized int available () {
+
+	return count;
+
+    } // available ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Accept no more bytes, and release any waiting readers.  Bytes already
+     * buffered may still be read.
+     */
+    public synchronized void close () {
+
+	closed = true;
+	notifyAll();
+
+    } // close ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return whether the buffer has been closed. */
+    public synchronized boolean isClosed () {
+
+	return closed;
+
+    } // isClosed ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Move the buffered bytes, in order, to the start of a larger array.
+     *
+     * @param needed The number of bytes that the new array must hold.
+     */
+    private void grow (int needed) {
+
+	byte[] larger = new byte[Math.max(needed, data.length * 2)];
+	int    first  = Math.min(count, data.length - head);
+	System.arraycopy(data, head, larger, 0, first);
+	System.arraycopy(data, 0, larger, first, count - first);
+	data = larger;
+	head = 0;
+
+    } // grow ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The buffered bytes, starting at the head and wrapping around. */
+    private byte[]  data;
+
+    /** The index of the first buffered byte. */
+    private int     head   = 0;
+
+    /** The number of bytes buffered. */
+    private int     count  = 0;
+
+    /** Whether the buffer has been closed. */
+    private boolean closed = false;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class ByteRingBuffer
+// =============================================================================
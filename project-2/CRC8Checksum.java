@@ -0,0 +1,54 @@
+// =============================================================================
+/**
+ * A frame checksum that is a CRC-8 with the generator 0x11D.
+ *
+ * @file   CRC8Checksum.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class CRC8Checksum extends FrameChecksum {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes that the check value occupies. */
+    public int size () {
+
+	return crc.size();
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the CRC-8 of a run of bytes.
+     *
+     * @param data The array holding the bytes.
+     * @param off  The index of the first byte.
+     * @param len  The number of bytes.
+     * @return the CRC.
+     */
+    public long compute (byte[] data, int off, int len) {
+
+	return crc.compute(data, off, len);
+
+    } // compute ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The CRC engine. */
+    private final Crc crc = Crc.CRC8;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class CRC8Checksum
+// =============================================================================
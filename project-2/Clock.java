@@ -0,0 +1,36 @@
+// =============================================================================
+/**
+ * A source of the current time, in nanoseconds, as read by data link layers
+ * for their timeouts and by media for their delays.  By default these read
+ * <code>System.nanoTime()</code>; a discrete-event simulation (see
+ * <code>EventSimulator</code>) substitutes its own virtual time.
+ *
+ * @file   Clock.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public interface Clock {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the current time, in nanoseconds.  Only differences between
+     *         times are meaningful.
+     */
+    public long nanoTime ();
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** The real time, as given by <code>System.nanoTime()</code>. */
+    public static final Clock SYSTEM = System::nanoTime;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // interface Clock
+// =============================================================================
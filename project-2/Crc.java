@@ -0,0 +1,405 @@
+// =============================================================================
+// IMPORTS
+
+import java.lang.reflect.Constructor;
+import java.util.zip.Checksum;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A table-driven cyclic redundancy check engine.  Each instance describes one
+ * CRC (its width, generator polynomial, initial value, bit order, and final
+ * XOR) and precomputes eight 256-entry tables, so that a byte array is
+ * processed a byte at a time, or, for longer runs, eight bytes at a time
+ * ("slicing-by-8"), rather than a bit at a time.  Instances are immutable and
+ * may be shared between threads.
+ *
+ * The common CRCs are provided as constants.  <code>CRC8</code> uses the
+ * generator <code>0x11D</code> long used by <code>CRCDataLinkLayer</code>.
+ * <code>CRC32</code> and <code>CRC32C</code> hand the work to the intrinsic
+ * implementations in <code>java.util.zip</code> where the running JVM has
+ * them.
+ *
+ * @file   Crc.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class Crc {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Describe a CRC and build its tables.
+     *
+     * @param width     The number of bits in the CRC, from 1 to 32.
+     * @param generator The generator polynomial, without its leading term, and
+     *                  not bit-reversed even for a reflected CRC.
+     * @param initial   The register value before any data is processed.
+     * @param reflected <code>true</code> if bytes are processed least
+     *                  significant bit first; <code>false</code> if most
+     *                  significant bit first.
+     * @param finalXor  The value XORed into the register to produce the CRC.
+     * @throws RuntimeException if the width is out of range.
+     */
+    public Crc (int     width,
+		int     generator,
+		int     initial,
+		boolean reflected,
+		int     finalXor) {
+
+	if (width < 1 || width > Integer.SIZE) {
+	    throw new RuntimeException("Invalid CRC width " + width);
+	}
+
+	this.width     = width;
+	this.reflected = reflected;
+	this.mask      = (width == Integer.SIZE) ? -1 : (1 << width) - 1;
+	this.finalXor  = finalXor & mask;
+	this.tables    = new int[SLICES][256];
+
+	// A reflected register holds the CRC in its low bits, reversed; a
+	// non-reflected one holds it left-aligned in its high bits.
+	if (reflected) {
+	    this.initial = Integer.reverse(initial & mask) >>> (Integer.SIZE - width);
+	    int poly     = Integer.reverse(generator & mask) >>> (Integer.SIZE - width);
+	    for (int i = 0; i < 256; i += 1) {
+		int crc = i;
+		for (int j = 0; j < Byte.SIZE; j += 1) {
+		    crc = ((crc & 1) != 0) ? (crc >>> 1) ^ poly : crc >>> 1;
+		}
+		tables[0][i] = crc;
+	    }
+	    for (int k = 1; k < SLICES; k += 1) {
+		for (int i = 0; i < 256; i += 1) {
+		    int previous = tables[k - 1][i];
+		    tables[k][i] = (previous >>> 8) ^ tables[0][previous & 0xff];
+		}
+	    }
+	} else {
+	    this.initial = (initial & mask) << (Integer.SIZE - width);
+	    int poly     = (generator & mask) << (Integer.SIZE - width);
+	    for (int i = 0; i < 256; i += 1) {
+		int crc = i << 24;
+		for (int j = 0; j < Byte.SIZE; j += 1) {
+		    crc = (crc < 0) ? (crc << 1) ^ poly : crc << 1;
+		}
+		tables[0][i] = crc;
+	    }
+	    for (int k = 1; k < SLICES; k += 1) {
+		for (int i = 0; i < 256; i += 1) {
+		    int previous = tables[k - 1][i];
+		    tables[k][i] = (previous << 8) ^ tables[0][previous >>> 24];
+		}
+	    }
+	}
+
+	this.intrinsic = null;
+
+    } // Crc ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Describe a CRC whose computation is handed to a
+     * <code>java.util.zip</code> implementation when one is available, and
+     * otherwise done by this engine's tables.
+     */
+    private Crc (int     width,
+		 int     generator,
+		 int     initial,
+		 boolean reflected,
+		 int     finalXor,
+		 String  intrinsicName) {
+
+	this(width, generator, initial, reflected, finalXor);
+	this.intrinsic = lookUp(intrinsicName);
+
+    } // Crc ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bits in the CRC. */
+    public int width () {
+
+	return width;
+
+    } // width ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of whole bytes needed to hold the CRC. */
+    public int size () {
+
+	return (width + Byte.SIZE - 1) / Byte.SIZE;
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the CRC of a run of bytes.
+     *
+     * @param data The array holding the bytes.
+     * @param off  The index of the first byte.
+     * @param len  The number of bytes.
+     * @return the CRC, in the low <code>width()</code> bits.
+     */
+    public long compute (byte[] data, int off, int len) {
+
+	// Prefer the JVM's own implementation when there is one.
+	if (intrinsic != null) {
+	    Checksum checksum = intrinsic.get();
+	    checksum.reset();
+	    checksum.update(data, off, len);
+	    return checksum.getValue();
+	}
+
+	int crc = reflected ? updateReflected(initial, data, off, len)
+	                    : updateNormal(initial, data, off, len);
+	if (!reflected) {
+	    crc >>>= (Integer.SIZE - width);
+	}
+
+	return (crc ^ finalXor) & (mask & 0xffffffffL);
+
+    } // compute ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the CRC of a whole array.
+     *
+     * @param data The bytes.
+     * @return the CRC, in the low <code>width()</code> bits.
+     */
+    public long compute (byte[] data) {
+
+	return compute(data, 0, data.length);
+
+    } // compute ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Store a CRC, most significant byte first.
+     *
+     * @param crc The CRC to store.
+     * @param dst The array into which to store it.
+     * @param off The index at which to store its first byte.
+     */
+    public void write (long crc, byte[] dst, int off) {
+
+	for (int i = size() - 1; i >= 0; i -= 1) {
+	    dst[off + i] = (byte)crc;
+	    crc >>>= Byte.SIZE;
+	}
+
+    } // write ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Read a CRC stored by <code>write()</code>.
+     *
+     * @param src The array holding it.
+     * @param off The index of its first byte.
+     * @return the CRC.
+     */
+    public long read (byte[] src, int off) {
+
+	long crc = 0;
+	for (int i = 0; i < size(); i += 1) {
+	    crc = (crc << Byte.SIZE) | (src[off + i] & 0xff);
+	}
+
+	return crc;
+
+    } // read ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run bytes through a left-aligned, most-significant-bit-first register.
+     */
+    private int updateNormal (int crc, byte[] data, int off, int len) {
+
+	int[] t0 = tables[0], t1 = tables[1], t2 = tables[2], t3 = tables[3];
+	int[] t4 = tables[4], t5 = tables[5], t6 = tables[6], t7 = tables[7];
+	int   end = off + len;
+
+	// Eight bytes at a time...
+	while (end - off >= SLICES) {
+	    int x = crc ^ (((data[off]     & 0xff) << 24) |
+			   ((data[off + 1] & 0xff) << 16) |
+			   ((data[off + 2] & 0xff) <<  8) |
+			    (data[off + 3] & 0xff));
+	    crc = t7[x >>> 24]            ^ t6[(x >>> 16) & 0xff] ^
+		  t5[(x >>> 8) & 0xff]    ^ t4[x & 0xff]          ^
+		  t3[data[off + 4] & 0xff] ^ t2[data[off + 5] & 0xff] ^
+		  t1[data[off + 6] & 0xff] ^ t0[data[off + 7] & 0xff];
+	    off += SLICES;
+	}
+
+	// ...then one at a time.
+	while (off < end) {
+	    crc = (crc << 8) ^ t0[((crc >>> 24) ^ data[off]) & 0xff];
+	    off += 1;
+	}
+
+	return crc;
+
+    } // updateNormal ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run bytes through a right-aligned, least-significant-bit-first register.
+     */
+    private int updateReflected (int crc, byte[] data, int off, int len) {
+
+	int[] t0 = tables[0], t1 = tables[1], t2 = tables[2], t3 = tables[3];
+	int[] t4 = tables[4], t5 = tables[5], t6 = tables[6], t7 = tables[7];
+	int   end = off + len;
+
+	// Eight bytes at a time...
+	while (end - off >= SLICES) {
+	    int x = crc ^ ((data[off]     & 0xff)        |
+			   ((data[off + 1] & 0xff) <<  8) |
+			   ((data[off + 2] & 0xff) << 16) |
+			   ((data[off + 3] & 0xff) << 24));
+	    crc = t7[x & 0xff]            ^ t6[(x >>> 8) & 0xff]  ^
+		  t5[(x >>> 16) & 0xff]   ^ t4[x >>> 24]          ^
+		  t3[data[off + 4] & 0xff] ^ t2[data[off + 5] & 0xff] ^
+		  t1[data[off + 6] & 0xff] ^ t0[data[off + 7] & 0xff];
+	    off += SLICES;
+	}
+
+	// ...then one at a time.
+	while (off < end) {
+	    crc = (crc >>> 8) ^ t0[(crc ^ data[off]) & 0xff];
+	    off += 1;
+	}
+
+	return crc;
+
+    } // updateReflected ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Find a <code>java.util.zip</code> checksum class by name, providing one
+     * reusable instance of it per thread.
+     *
+     * @param className The fully qualified class name.
+     * @return the per-thread instances, or <code>null</code> if the class is
+     *         not available in this JVM.
+     */
+    private static ThreadLocal<Checksum> lookUp (String className) {
+
+	try {
+	    final Constructor<?> constructor =
+		Class.forName(className).getConstructor();
+	    return ThreadLocal.withInitial(() -> {
+		    try {
+			return (Checksum)constructor.newInstance();
+		    } catch (ReflectiveOperationException e) {
+			throw new RuntimeException("Could not instantiate " +
+						   className);
+		    }
+		});
+	} catch (ReflectiveOperationException e) {
+	    return null;
+	}
+
+    } // lookUp ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The number of bits in the CRC. */
+    private final int     width;
+
+    /** Whether bytes are processed least significant bit first. */
+    private final boolean reflected;
+
+    /** The low <code>width</code> bits. */
+    private final int     mask;
+
+    /** The initial register value, aligned as the register is. */
+    private final int     initial;
+
+    /** The value XORed into the register to produce the CRC. */
+    private final int     finalXor;
+
+    /** The eight tables, the k-th giving the effect of a byte followed by k
+     *  zero bytes. */
+    private final int[][] tables;
+
+    /** The JVM's implementation of this CRC, if it is to be used. */
+    private ThreadLocal<Checksum> intrinsic;
+
+    /** The number of bytes processed together. */
+    private static final int SLICES = 8;
+
+    /** CRC-8 with the generator x^8 + x^4 + x^3 + x^2 + 1 (0x11D). */
+    public static final Crc CRC8       = new Crc(8, 0x1D, 0x00, false, 0x00);
+
+    /** CRC-16-CCITT (initial value 0xFFFF, most significant bit first). */
+    public static final Crc CRC16_CCITT = new Crc(16, 0x1021, 0xFFFF, false,
+						  0x0000);
+
+    /** CRC-32, as used by Ethernet and zip. */
+    public static final Crc CRC32      = new Crc(32, 0x04C11DB7, 0xFFFFFFFF,
+						 true, 0xFFFFFFFF,
+						 "java.util.zip.CRC32");
+
+    /** CRC-32C (Castagnoli), as used by iSCSI and SCTP. */
+    public static final Crc CRC32C     = new Crc(32, 0x1EDC6F41, 0xFFFFFFFF,
+						 true, 0xFFFFFFFF,
+						 "java.util.zip.CRC32C");
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Crc
+// =============================================================================
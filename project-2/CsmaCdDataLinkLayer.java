@@ -0,0 +1,345 @@
+// =============================================================================
+/**
+ * @file   CsmaCdDataLinkLayer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ *
+ * A data link layer for a shared medium (e.g., <code>SharedBusMedium</code>),
+ * using carrier sense multiple access with collision detection.  Frames are
+ * built and checked as by <code>ParityDataLinkLayer</code>.  Before sending a
+ * frame, the layer waits until no other client is transmitting; while
+ * sending, it checks for a collision after each word, and on one aborts the
+ * frame, sends a short jamming signal, and waits a random number of slot
+ * times before trying again.  The range of that number doubles with each
+ * collision of the same frame (binary exponential backoff), up to
+ * 2^<code>BACKOFF_LIMIT</code> - 1 slots; after <code>MAX_ATTEMPTS</code>
+ * attempts, the frame is dropped.  Each word is sent only once its
+ * predecessor has gone onto the wire (see <code>Medium.sendingUntil()</code>),
+ * so that a frame holds the bus for as long as the medium's bit rate says
+ * that it takes, and counts as sent only once its last word has gone without
+ * collision.
+ *
+ * The layer never waits within <code>transmit()</code>: it holds the frame,
+ * and each wait, for a slot while the carrier is sensed, for a word to go
+ * onto the wire, or for a backoff, is a deadline of the event loop, which
+ * keeps receiving meanwhile and takes no more data until the frame is sent
+ * or dropped.  Times are read from the
+ * layer's clock and backoffs drawn from the medium's seeded generator (see
+ * <code>Medium.draw()</code>), so the layer runs in virtual time, and
+ * reproducibly, within a simulation.  A frame's data counts as delivered
+ * once the frame is sent or dropped.
+ */
+public class CsmaCdDataLinkLayer extends ParityDataLinkLayer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the slot time, the unit of backoff.  It should match that of the
+     * medium.
+     *
+     * @param nanos The slot time, in nanoseconds.
+     * @throws RuntimeException if the slot time is not positive.
+     */
+    public void setSlotTime (long nanos) {
+
+	if (nanos <= 0) {
+	    throw new RuntimeException("Invalid slot time " + nanos);
+	}
+
+	slotTime = nanos;
+
+    } // setSlotTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of frames sent without collision. */
+    public long framesSent () {
+
+	return framesSent;
+
+    } // framesSent ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of frames dropped after too many collisions. */
+    public long framesDropped () {
+
+	return framesDropped;
+
+    } // framesDropped ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of collisions that aborted a frame. */
+    public long collisions () {
+
+	return collisions;
+
+    } // collisions ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Frame data as <code>ParityDataLinkLayer</code> does, noting how much
+     * data the frame carries, for <code>dataDelivered()</code>.
+     *
+     * @param data   The data to frame.
+     * @param framed The frame to which to append the framed data.
+     */
+    protected void createFrame (Frame data, Frame framed) {
+
+	heldData = data.length();
+	super.createFrame(data, framed);
+
+    } // createFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Take a frame to transmit by CSMA/CD, and make its first attempt.  The
+     * frame is held, and attempted again as needed from
+     * <code>checkTimeout()</code>, until it is sent or has been attempted
+     * <code>MAX_ATTEMPTS</code> times.
+     *
+     * @param frame The frame of bytes to send, which is copied.
+     */
+    protected void transmit (Frame frame) {
+
+	held = framePool.acquire();
+	held.add(frame);
+	attempts = 0;
+	sending  = false;
+	attempt();
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return <code>true</code> if no frame is held, so another may be sent.
+     */
+    protected boolean readyToSend () {
+
+	return held == null;
+
+    } // readyToSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return <code>true</code>, as data counts as delivered only once its
+     *         frame is sent or dropped.
+     */
+    protected boolean acknowledgesData () {
+
+	return true;
+
+    } // acknowledgesData ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Continue sending the held frame, or attempt it again, if its wait is
+     * over.
+     */
+    protected void checkTimeout () {
+
+	if (held != null && now() - retryAt >= 0) {
+	    if (sending) {
+		proceed();
+	    } else {
+		attempt();
+	    }
+	}
+
+    } // checkTimeout ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Attempt to send the held frame: wait a slot if another client is
+     * transmitting; otherwise start to send it.
+     */
+    private void attempt () {
+
+	// Wait for the carrier to clear, checking again a slot later.
+	if (physicalLayer.carrierSensed()) {
+	    waitUntil(now() + slotTime);
+	    return;
+	}
+
+	// Forget any collision from before this attempt.
+	attempts += 1;
+	physicalLayer.collisionDetected();
+	sent    = 0;
+	sending = true;
+	proceed();
+
+    } // attempt ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send the held frame's words, packed eight bytes at a time, until one
+     * is still going onto the wire, and then wait for it.  Once the last word
+     * has gone, the frame is sent; on a collision, jam and back off, or drop
+     * the frame after its last attempt.
+     */
+    private void proceed () {
+
+	byte[] bytes = held.array();
+	int    off   = held.offset();
+	int    end   = held.length();
+	while (!physicalLayer.collisionDetected()) {
+
+	    long until = physicalLayer.sendingUntil();
+	    if (until - now() > 0) {
+		waitUntil(until);
+		return;
+	    }
+	    if (sent == end) {
+		sending     = false;
+		framesSent += 1;
+		release();
+		return;
+	    }
+
+	    int  count = Math.min(end - sent, Long.BYTES);
+	    long word  = 0;
+	    for (int i = 0; i < count; i += 1) {
+		word = (word << Byte.SIZE) | (bytes[off + sent + i] & 0xff);
+	    }
+	    physicalLayer.send(word, count * Byte.SIZE);
+	    sent += count;
+
+	}
+
+	if (debug) {
+	    System.out.printf("CsmaCdDataLinkLayer.proceed(): collision " +
+			      "on attempt %d\n", attempts);
+	}
+	sending     = false;
+	collisions += 1;
+	physicalLayer.send(JAM_SIGNAL, JAM_BITS);
+	if (attempts == MAX_ATTEMPTS) {
+	    framesDropped += 1;
+	    release();
+	    return;
+	}
+	int slots = physicalLayer.draw(1 << Math.min(attempts, BACKOFF_LIMIT));
+	waitUntil(now() + slots * slotTime);
+
+    } // proceed ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Attempt the held frame again no sooner than a given time.
+     *
+     * @param time The time, as a value of <code>now()</code>.
+     */
+    private void waitUntil (long time) {
+
+	retryAt = time;
+	scheduleDeadline(retryAt);
+
+    } // waitUntil ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Be done with the held frame, sent or dropped, counting its data as
+     * delivered.
+     */
+    private void release () {
+
+	framePool.release(held);
+	held = null;
+	dataDelivered(heldData);
+
+    } // release ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The unit of backoff. */
+    private long          slotTime      = SharedBusMedium.DEFAULT_SLOT_TIME;
+
+    /** The frame being attempted, or <code>null</code> if none. */
+    private Frame         held;
+
+    /** The number of data bytes that the held frame carries. */
+    private int           heldData;
+
+    /** The number of attempts made to send the held frame. */
+    private int           attempts;
+
+    /** Whether the held frame is partly sent, rather than awaiting an
+     *  attempt. */
+    private boolean       sending;
+
+    /** The number of the held frame's bytes sent on this attempt. */
+    private int           sent;
+
+    /** The time after which the held frame may be attempted again, or may
+     *  continue to be sent. */
+    private long          retryAt;
+
+    /** The number of frames sent without collision. */
+    private volatile long framesSent    = 0;
+
+    /** The number of frames dropped after too many collisions. */
+    private volatile long framesDropped = 0;
+
+    /** The number of collisions that aborted a frame. */
+    private volatile long collisions    = 0;
+
+    /** The number of attempts to send a frame before dropping it. */
+    public static final int   MAX_ATTEMPTS  = 16;
+
+    /** The number of collisions after which the backoff range stops
+     *  doubling. */
+    public static final int   BACKOFF_LIMIT = 10;
+
+    /** The signal sent on detecting a collision, so that every sender
+     *  involved detects it too. */
+    private static final long JAM_SIGNAL    = 0xAAAAAAAAL;
+
+    /** The number of bits in the jamming signal. */
+    private static final int  JAM_BITS      = 32;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class CsmaCdDataLinkLayer
+// =============================================================================
@@ -1,12 +1,15 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Queue;
-import java.util.Iterator;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
 // =============================================================================
 
 
@@ -94,16 +97,62 @@ public abstract class DataLinkLayer {
 
 
 
+    // =========================================================================
+    /**
+     * Create the requested data link layer type, using the requested checksum
+     * to detect damaged frames, and return it.
+     *
+     * @param  type          The subclass of which to create an instance.
+     * @param  physicalLayer The physical layer by which to communicate.
+     * @param  host          The host for which this layer is communicating.
+     * @param  checksumType  The <code>FrameChecksum</code> subclass to use.
+     * @return The newly created data link layer.
+     * @throws RuntimeException if either type is not a valid subclass, or if
+     *                          the given physical layer doesn't exist (is
+     *                          <code>null</code>).
+     */
+    public static DataLinkLayer create (String        type,
+					PhysicalLayer physicalLayer,
+					Host          host,
+					String        checksumType) {
+
+	DataLinkLayer dataLinkLayer = create(type, physicalLayer, host);
+	dataLinkLayer.setChecksum(FrameChecksum.create(checksumType));
+
+	return dataLinkLayer;
+
+    } // create ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Default constructor.  Set up the buffers for sending and receiving.
      */
     public DataLinkLayer () {
 
-	// Create incoming buffer space.
-	bitBuffer     = new LinkedList<Boolean>();
-	receiveBuffer = new LinkedList<Byte>();
-	sendBuffer    = new ConcurrentLinkedQueue<Byte>();
+	// Create incoming buffer space.  Each sender's bytes are buffered
+	// apart, as they arrive.
+	byteScratch    = new byte[SCRATCH_SIZE];
+	receiveBuffer  = new Frame();
+	receiveBuffers = new Frame[0];
+	sendBuffer    = new SendBuffer(DEFAULT_LOW_WATERMARK,
+				       DEFAULT_HIGH_WATERMARK,
+				       this::wakeup);
+	pendingSends  = new ConcurrentLinkedQueue<PendingSend>();
+
+	// Create the frames reused by the event loop.
+	framePool     = new FramePool(Frame.DEFAULT_CAPACITY);
+	outgoingData  = new Frame();
+	outgoingFrame = new Frame();
+	incomingData  = new Frame();
+
+	// Create the queue of control frames awaiting transmission.
+	controlFrames = new ArrayDeque<Frame>();
+
+	// Create the queue of timeout deadlines.
+	deadlines     = new DeadlineQueue();
         
     } // DataLinkLayer ()
     // =========================================================================
@@ -136,38 +185,350 @@ public abstract class DataLinkLayer {
     /**
      * The event loop.  If there is buffered data to send, frame and transmit
      * it; if bits are received, process and deliver them one frame at a time.
+     * In event-driven mode (the default), the loop parks whenever an iteration
+     * finds nothing to do, until new data is sent, new bits arrive, or the
+     * earliest scheduled deadline passes.  Otherwise, it spins continuously.
      */
     public void go () {
 
         // Event loop.
+        loopThread  = Thread.currentThread();
         doEventLoop = true;
         while (doEventLoop) {
 
-            // If there is buffered data to send, then frame and send it.
-            if (sendBuffer.peek() != null) {
-                Queue<Byte> framedData = sendNextFrame();
-                if (framedData != null) {
-                    finishFrameSend(framedData);
-                }
-            }
+	    boolean progress = step();
+
+	    // If nothing happened, sleep until something might.
+	    if (!progress && eventDriven && !hasPendingSend() &&
+		controlFrames.isEmpty()) {
+		long deadline = deadlines.peek();
+		if (deadline == Long.MAX_VALUE) {
+		    LockSupport.park(this);
+		} else {
+		    long delay = deadline - now();
+		    if (delay > 0) {
+			LockSupport.parkNanos(this, delay);
+		    }
+		}
+	    }
 
-            // If there are received buffered bits, process them.
-            receive();
+        } // Event loop
+	loopThread = null;
 
-            // If there are received buffered bytes, try to process a frame.
-            if (receiveBuffer.peek() != null) {
-                Queue<Byte> receivedFrame = processFrame();
-                if (receivedFrame != null) {
-                    finishFrameReceive(receivedFrame);
-                }
-            }
+    } // go ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform one iteration of the event loop.
+     *
+     * @return <code>true</code> if any frame was sent, any bytes were received,
+     *         or any received bytes were consumed; <code>false</code> if the
+     *         iteration found nothing to do.
+     */
+    protected boolean step () {
+
+	boolean progress = false;
+
+	// Send any control frames (e.g., acknowledgments) ahead of the data.
+	Frame control;
+	while ((control = controlFrames.poll()) != null) {
+	    transmit(control);
+	    framePool.release(control);
+	    progress = true;
+	}
+
+	// If there is buffered data to send, then frame and send it.
+	if (hasPendingSend()) {
+	    Frame framedData = sendNextFrame();
+	    if (framedData != null) {
+		finishFrameSend(framedData);
+		progress = true;
+	    }
+	}
+
+	// If there are received buffered bits, process them.
+	progress |= receive();
+
+	// If there are received buffered bytes, try to process a frame from
+	// each sender's, presenting it as the receive buffer.
+	for (Frame buffered : receiveBuffers) {
+	    if (buffered != null && !buffered.isEmpty()) {
+		int length    = buffered.length();
+		receiveBuffer = buffered;
+		if (processFrame(incomingData)) {
+		    finishFrameReceive(incomingData);
+		}
+		progress |= (buffered.length() != length);
+	    }
+	}
+
+	// Check whether a timeout action needs to be taken.  Deadlines that
+	// have passed have served their purpose of waking the loop.
+	deadlines.removeExpired(now());
+	checkTimeout();
+
+	return progress;
+
+    } // step ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform one iteration of the event loop on behalf of a caller that drives
+     * this layer itself (e.g., an <code>EventSimulator</code>) instead of
+     * running <code>go()</code>.
+     *
+     * @return <code>true</code> if the iteration did anything.
+     * @see    hasWork()
+     */
+    public boolean poll () {
+
+	woken = false;
+
+	return step();
+
+    } // poll ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether a caller driving this layer with <code>poll()</code>
+     * should poll it again before time moves on: it has data or control
+     * frames that it may send, or it has been woken (e.g., by arriving bits)
+     * since it was last polled.
+     *
+     * @return <code>true</code> if there may be work to do now.
+     */
+    public boolean hasWork () {
+
+	return woken || hasPendingSend() || !controlFrames.isEmpty();
+
+    } // hasWork ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the earliest time, by this layer's clock, at which it must next
+     *         check its timeouts; or <code>Long.MAX_VALUE</code> if none is
+     *         scheduled.
+     */
+    public long nextDeadline () {
+
+	return deadlines.peek();
+
+    } // nextDeadline ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return whether there is buffered data that may be sent now.
+     */
+    private boolean hasPendingSend () {
+
+	return !sendBuffer.isEmpty() && readyToSend();
+
+    } // hasPendingSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Wake the event loop if it is parked.  Called whenever there may be new
+     * work: data to send, bits received, or the loop being stopped.  Safe to
+     * call from any thread.
+     */
+    public void wakeup () {
+
+	woken = true;
+	Thread thread = loopThread;
+	if (thread != null) {
+	    LockSupport.unpark(thread);
+	}
+
+    } // wakeup ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Choose whether the event loop parks when idle or spins continuously.
+     *
+     * @param eventDriven <code>true</code> to park when idle.
+     */
+    public void setEventDriven (boolean eventDriven) {
+
+	this.eventDriven = eventDriven;
+	wakeup();
+
+    } // setEventDriven ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Choose the clock by which timeouts are measured, e.g., the virtual clock
+     * of an <code>EventSimulator</code>.  Set it before the layer is run.
+     *
+     * @param clock The clock to read.
+     * @throws RuntimeException if the clock is <code>null</code>.
+     */
+    public void setClock (Clock clock) {
+
+	if (clock == null) {
+	    throw new RuntimeException("Null clock");
+	}
+
+	this.clock = clock;
+
+    } // setClock ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the current time, in nanoseconds, by this layer's clock.
+     *         Subclasses measure all of their timeouts with it.
+     */
+    protected long now () {
+
+	return clock.nanoTime();
+
+    } // now ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Choose the code by which damaged frames are detected.  Both ends of a
+     * link must use the same one.  Subclasses that check their frames use
+     * parity unless another is set.
+     *
+     * @param checksum The checksum to append to, and check on, each frame.
+     * @throws RuntimeException if the checksum is <code>null</code>.
+     */
+    public void setChecksum (FrameChecksum checksum) {
+
+	if (checksum == null) {
+	    throw new RuntimeException("Null checksum");
+	}
+
+	this.checksum = checksum;
+
+    } // setChecksum ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the most data bytes to place in each frame, and stop adapting the
+     * frame size.
+     *
+     * @param frameSize The frame size, from 1 to <code>FRAME_SIZE_LIMIT</code>.
+     * @throws RuntimeException if the frame size is out of range.
+     */
+    public void setFrameSize (int frameSize) {
+
+	if (frameSize < 1 || frameSize > FRAME_SIZE_LIMIT) {
+	    throw new RuntimeException("Invalid frame size " + frameSize);
+	}
+
+	this.frameSize  = frameSize;
+	this.frameSizer = null;
+
+    } // setFrameSize ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Choose whether the frame size adapts to the observed error rate, growing
+     * frames while few are lost and shrinking them as more are.  Adaptation
+     * starts from the current frame size.
+     *
+     * @param adaptive <code>true</code> to adapt the frame size.
+     */
+    public void setAdaptiveFrameSize (boolean adaptive) {
+
+	if (adaptive) {
+	    frameSizer = new FrameSizer(1, FRAME_SIZE_LIMIT, frameSize);
+	} else if (frameSizer != null) {
+	    frameSize  = frameSizer.size();
+	    frameSizer = null;
+	}
+
+    } // setAdaptiveFrameSize ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Bound the data buffered for sending.  Senders wait once the high
+     * watermark of bytes is buffered, until it drains to the low watermark.
+     *
+     * @param lowWatermark  The buffered bytes at which waiting senders resume.
+     * @param highWatermark The buffered bytes at which senders must wait.
+     * @throws RuntimeException if the watermarks are out of order.
+     */
+    public void setSendWatermarks (long lowWatermark, long highWatermark) {
+
+	sendBuffer.setWatermarks(lowWatermark, highWatermark);
+
+    } // setSendWatermarks ()
+    // =========================================================================
 
-    	    // Check whether a timeout action needs to be taken.
-    	    checkTimeout();
 
-        } // Event loop
 
-    } // go ()
+    // =========================================================================
+    /**
+     * Ask that the event loop call <code>checkTimeout()</code> no later than
+     * the given time.  Subclasses with timeouts must schedule each one, as an
+     * idle event-driven loop otherwise sleeps indefinitely.  Called only from
+     * the event loop.
+     *
+     * @param deadline The time, as a value of <code>now()</code>.
+     */
+    protected void scheduleDeadline (long deadline) {
+
+	deadlines.add(deadline);
+
+    } // scheduleDeadline ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Withdraw a deadline scheduled for a timeout that is no longer pending,
+     * e.g., as its timer has been stopped or restarted, so that the event
+     * loop (or a simulation) is not woken for it.  A deadline that has
+     * already passed need not be withdrawn.  Called only from the event loop.
+     *
+     * @param deadline The time, as passed to <code>scheduleDeadline()</code>.
+     */
+    protected void cancelDeadline (long deadline) {
+
+	deadlines.remove(deadline);
+
+    } // cancelDeadline ()
     // =========================================================================
 
 
@@ -179,6 +540,7 @@ public abstract class DataLinkLayer {
     public void stop () {
 
         doEventLoop = false;
+	wakeup();
 
     } // stop ()
     // =========================================================================
@@ -188,17 +550,20 @@ public abstract class DataLinkLayer {
     // =========================================================================
     /**
      * Send a sequence of bytes through the physical layer.  Expected to be
-     * called by the client.  Buffers the data; actual sending is triggered by
-     * the event loop.
+     * called by the client.  Buffers the data, without copying it, so the array
+     * must not be modified afterwards; actual sending is triggered by the event
+     * loop.  Waits while the buffer is full.
      *
-     * @param data The sequence of bytes to send.
+     * @param data The sequence of bytes to send; <code>null</code> sends
+     *             nothing.
+     * @throws RuntimeException if interrupted while waiting, in which case
+     *                          only some of the data may be sent.
      * @see   go()
      */
     public void send (byte[] data) {
 
-	// Add each byte to the sending buffer.
-	for (int i = 0; data != null && i < data.length; i += 1) {
-	    sendBuffer.add(data[i]);
+	if (data != null) {
+	    put(data, null);
 	}
 	
     }
@@ -206,35 +571,111 @@ public abstract class DataLinkLayer {
 
 
 
+    // =========================================================================
+    /**
+     * Send as much of a sequence of bytes as the buffer has room for, without
+     * waiting.  The bytes accepted must not be modified afterwards.
+     *
+     * @param data The sequence of bytes to send; <code>null</code> sends
+     *             nothing.
+     * @return the number of leading bytes accepted for sending.
+     */
+    public int trySend (byte[] data) {
+
+	if (data == null) {
+	    return 0;
+	}
+
+	return sendBuffer.offer(data, 0, data.length);
+
+    } // trySend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a sequence of bytes, waiting while the buffer is full as
+     * <code>send()</code> does, and learn when they have arrived.  The future
+     * is completed once the last of the bytes is acknowledged or, for layers
+     * that do not acknowledge data, transmitted.  It is completed by the event
+     * loop, so any actions depending on it should be brief.
+     *
+     * @param data The sequence of bytes to send; <code>null</code> sends
+     *             nothing.
+     * @return a future completed when the data has been delivered.
+     * @throws RuntimeException if interrupted while waiting.
+     */
+    public CompletableFuture<Void> sendAsync (byte[] data) {
+
+	CompletableFuture<Void> future = new CompletableFuture<Void>();
+	if (data == null || data.length == 0) {
+	    future.complete(null);
+	    return future;
+	}
+
+	// Register the future as the buffer reserves the data's place, so that
+	// futures are registered in the order of their data, and each before
+	// any of its data can be sent.
+	put(data, (end) -> pendingSends.add(new PendingSend(end, future)));
+
+	return future;
+
+    } // sendAsync ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Buffer data for sending, waiting for room as needed.
+     *
+     * @param data      The sequence of bytes to send.
+     * @param onReserve Given the stream position just past the data once
+     *                  its place is reserved, or <code>null</code>.
+     * @return the stream position just past the data.
+     * @throws RuntimeException if interrupted while waiting.
+     */
+    private long put (byte[] data, LongConsumer onReserve) {
+
+	try {
+	    return sendBuffer.put(data, 0, data.length, onReserve);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new RuntimeException("Interrupted while sending");
+	}
+
+    } // put ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Extract the next frame-worth of data from the sending buffer, frame it,
-     * and then send it.
+     * and then send it.  The returned frame is reused by the next call.
      *
      * @return the frame of bytes transmitted.
      */
-    protected Queue<Byte> sendNextFrame () {
+    protected Frame sendNextFrame () {
 
         if (sendBuffer.isEmpty()) {
             return null;
         }
         
     	// Extract a frame-worth of data from the sending buffer.
-    	int frameSize = ((sendBuffer.size() < MAX_FRAME_SIZE)
-    			 ? sendBuffer.size()
-    			 : MAX_FRAME_SIZE);
-
-    	Queue<Byte> data = new LinkedList<Byte>();
-    	for (int j = 0; j < frameSize; j += 1) {
-    	    data.add(sendBuffer.remove());
-    	}
+	outgoingData.clear();
+	int taken = sendBuffer.take(outgoingData, maxFrameSize());
 
     	// Create a frame from the data and transmit it.
-    	Queue<Byte> framedData = createFrame(data);
-    	transmit(framedData);
-
+	outgoingFrame.clear();
+	createFrame(outgoingData, outgoingFrame);
+	transmit(outgoingFrame);
+	if (!acknowledgesData()) {
+	    dataDelivered(taken);
+	}
 
-        return framedData;
+        return outgoingFrame;
 
     } // sendNextFrame ()
     // =========================================================================
@@ -243,27 +684,128 @@ public abstract class DataLinkLayer {
 
     // =========================================================================
     /**
-     * Transmit a sequence of bytes as bits.
+     * Determine the most data bytes to place in the next frame.  Subclasses
+     * whose frames can carry more (or must carry less) override this method.
      *
-     * @param data The sequence of bytes to send.
+     * @return the largest number of data bytes for the next frame.
      */
-    protected void transmit (Queue<Byte> data) {
+    protected int maxFrameSize () {
 
-	for (byte b : data) {
+	return (frameSizer != null) ? frameSizer.size() : frameSize;
 
-	    // Transmit one bit at a time, most to least significant.
-	    for (int i = Byte.SIZE - 1; i >= 0; i -= 1) {
+    } // maxFrameSize ()
+    // =========================================================================
 
-		// Grab the current bit...
-		boolean bit = ((1 << i) & b) != 0;
 
-		// ...and send it.
-		physicalLayer.send(bit);
 
-	    }
+    // =========================================================================
+    /**
+     * Record whether a sent frame arrived, so that adaptive frame sizing can
+     * follow the error rate.  Subclasses that learn the fate of their frames
+     * (e.g., by acknowledgments and timeouts) call this method.
+     *
+     * @param dataLength The number of data bytes that the frame carried.
+     * @param delivered  <code>true</code> if the frame was acknowledged;
+     *                   <code>false</code> if it was damaged or lost.
+     */
+    protected void recordFrame (int dataLength, boolean delivered) {
+
+	if (frameSizer != null) {
+	    frameSizer.record(dataLength, frameOverhead(), delivered);
+	}
+
+    } // recordFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether this layer learns of its data's arrival, and so calls
+     * <code>dataDelivered()</code> itself.  If not, data counts as delivered
+     * once it is transmitted.
+     *
+     * @return <code>true</code> if data is acknowledged.
+     */
+    protected boolean acknowledgesData () {
+
+	return false;
+
+    } // acknowledgesData ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record that the oldest data not yet known to be delivered has been,
+     * completing the futures of any <code>sendAsync()</code> calls whose data
+     * is now all delivered.  Layers that acknowledge data call this method, in
+     * order, as each frame's data is acknowledged.  Called only from the event
+     * loop.
+     *
+     * @param count The number of data bytes delivered.
+     */
+    protected void dataDelivered (int count) {
+
+	deliveredPosition += count;
 
+	PendingSend pending;
+	while ((pending = pendingSends.peek()) != null &&
+	       pending.end <= deliveredPosition) {
+	    pendingSends.poll();
+	    pending.future.complete(null);
 	}
 
+    } // dataDelivered ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Estimate the bytes added to each frame's data by its framing, for
+     * adaptive frame sizing.  By default, a start tag, a stop tag, and the
+     * checksum; subclasses with headers add theirs.
+     *
+     * @return the number of bytes of overhead per frame.
+     */
+    protected int frameOverhead () {
+
+	return 2 + checksum.size();
+
+    } // frameOverhead ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether the event loop may send the next frame of buffered
+     * data.  Subclasses that must wait (e.g., for an acknowledgment) override
+     * this method so that data simply stays buffered until they are ready.
+     *
+     * @return <code>true</code> if a frame may be sent now.
+     */
+    protected boolean readyToSend () {
+
+	return true;
+
+    } // readyToSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Transmit a frame of bytes as bits.
+     *
+     * @param frame The frame of bytes to send.
+     */
+    protected void transmit (Frame frame) {
+
+	physicalLayer.sendBits(frame.array(), frame.offset(), frame.length());
+
     } // transmit ()
     // =========================================================================
 
@@ -271,57 +813,95 @@ public abstract class DataLinkLayer {
 
     // =========================================================================
     /**
-     * Deliver a bit into this layer.  Expected to be called by the physical
-     * layer.  Accumulate bits into a buffer, and with each full byte received,
-     * accumulate those bits into a byte buffer.  Each byte added to the buffer
-     * is examined to determine whether a whole frame has been received, and if
-     * so, then processed.
+     * Send a framed control frame (e.g., an acknowledgment) on the priority
+     * path: it is transmitted at the start of the next step of the event loop,
+     * ahead of any buffered data, and regardless of whether data may be sent.
+     * Called only from the event loop.
      *
-     * @param bit The value to receive, where <code>false</code> indicates a
-     *            <code>0</code>, and <code>true</code> indicates a
-     *            <code>1</code>.
+     * @param framed The complete frame to send, which is copied.
      */
-    public void receive () {
+    protected void sendControl (Frame framed) {
 
-        // Transfer any available bits in the physical layer into our buffer.
-        Boolean bit = null;
-        while ((bit = physicalLayer.retrieve()) != null) {
-            bitBuffer.add(bit);
-        }
+	Frame copy = framePool.acquire();
+	copy.add(framed);
+	controlFrames.add(copy);
 
-	// If there are whole bytes of bits buffered, then transfer them to the
-	// byte buffer.
-	while (bitBuffer.size() >= Byte.SIZE) {
+    } // sendControl ()
+    // =========================================================================
 
-	    // Build up one byte from the bits...
-	    byte newByte = 0;
-	    for (int i = 0; i < Byte.SIZE; i += 1) {
-		bit = bitBuffer.remove();
-		newByte = (byte)((newByte << 1) | (bit ? 1 : 0));
-	    }
 
-	    // ...and add it to the byte buffer.
-	    receiveBuffer.add(newByte);
-	    if (debug) {
-		System.out.printf("DataLinkLayer.receive(): Got new byte = %c\n",
-				  newByte);
+
+    // =========================================================================
+    /**
+     * Collect the bits received by the physical layer.  Called by the event
+     * loop.  Accumulate the whole bytes from each sender into a byte buffer
+     * for that sender, apart from the others, so that frames sent at the same
+     * time by different senders are never spliced together.  Each buffer is
+     * then examined, as <code>receiveBuffer</code>, to determine whether a
+     * whole frame has been received, and if so, then processed.
+     *
+     * @return <code>true</code> if any bytes were received.
+     */
+    public boolean receive () {
+
+	boolean received = false;
+
+        // Transfer the whole bytes received from each sender into that
+        // sender's byte buffer, until its lane has no more.
+	for (int port = 0; port < physicalLayer.laneCount(); port += 1) {
+
+	    int count;
+	    while ((count = physicalLayer.retrieve(port, byteScratch, 0,
+						   byteScratch.length)) > 0) {
+		received = true;
+		receiveBuffer(port).add(byteScratch, 0, count);
+		if (debug) {
+		    for (int i = 0; i < count; i += 1) {
+			System.out.printf("DataLinkLayer.receive(): Got new byte = %c\n",
+					  byteScratch[i]);
+		    }
+		}
 	    }
 
 	}
 
+	return received;
+
     } // receive ()
     // =========================================================================
 
 
 
+    // =========================================================================
+    /**
+     * @param port A sender's port.
+     * @return the buffer of bytes received from that sender, created if need
+     *         be.
+     */
+    private Frame receiveBuffer (int port) {
+
+	if (port >= receiveBuffers.length) {
+	    receiveBuffers = Arrays.copyOf(receiveBuffers, port + 1);
+	}
+	if (receiveBuffers[port] == null) {
+	    receiveBuffers[port] = new Frame();
+	}
+
+	return receiveBuffers[port];
+
+    } // receiveBuffer ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Embed a raw sequence of bytes into a framed sequence.
      *
-     * @param  data The raw sequence of bytes to be framed.
-     * @return A complete frame.
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The empty frame into which to place the complete frame.
      */
-    abstract protected Queue<Byte> createFrame (Queue<Byte> data);
+    abstract protected void createFrame (Frame data, Frame framed);
     // =========================================================================
 
 
@@ -330,12 +910,14 @@ public abstract class DataLinkLayer {
     /**
      * Determine whether the byte buffer contains a complete frame.  If so,
      * extract its contents, removing all metadata and (if applicable) checking
-     * its correctness, then returning (if possible) the contained data.
+     * its correctness.
      *
-     * @return if possible, the extracted data from the frame; <code>null</code>
-     *         otherwise.
+     * @param  data The frame into which to place the extracted data.  Its
+     *              previous contents are discarded.
+     * @return <code>true</code> if a frame's data was extracted;
+     *         <code>false</code> otherwise.
      */
-    abstract protected Queue<Byte> processFrame ();
+    abstract protected boolean processFrame (Frame data);
     // =========================================================================
 
 
@@ -343,11 +925,12 @@ public abstract class DataLinkLayer {
     // =========================================================================
     /**
      * After sending a frame, do any bookkeeping (e.g., buffer the frame in case
-     * a resend is required).
+     * a resend is required).  The frame is reused after this method returns,
+     * so any contents to be kept must be copied.
      *
      * @param frame The framed data that was transmitted.
-     */ 
-    abstract protected void finishFrameSend (Queue<Byte> frame);
+     */
+    abstract protected void finishFrameSend (Frame frame);
     // =========================================================================
 
 
@@ -356,11 +939,11 @@ public abstract class DataLinkLayer {
     /**
      * After receiving a frame, do any bookkeeping (e.g., deliver the frame to
      * the client, if appropriate) and responding (e.g., send an
-     * acknowledgment).
+     * acknowledgment).  The frame is reused after this method returns.
      *
      * @param frame The frame of bytes received.
      */
-    abstract protected void finishFrameReceive (Queue<Byte> frame);
+    abstract protected void finishFrameReceive (Frame frame);
     // =========================================================================
 
 
@@ -376,26 +959,99 @@ public abstract class DataLinkLayer {
     
 
 
+    // =========================================================================
+    /**
+     * A <code>sendAsync()</code> call awaiting the delivery of its data.
+     */
+    private static class PendingSend {
+
+	PendingSend (long end, CompletableFuture<Void> future) {
+
+	    this.end    = end;
+	    this.future = future;
+
+	}
+
+	/** The stream position just past the call's data. */
+	final long                    end;
+
+	/** The future to complete once that position is delivered. */
+	final CompletableFuture<Void> future;
+
+    } // class PendingSend
+    // =========================================================================
+
+
+
     // =========================================================================
     // INSTANCE DATA MEMBERS
 
+    /** The code by which damaged frames are detected. */
+    protected FrameChecksum  checksum = new ParityChecksum();
+
+    /** The most data bytes to place in each frame, if not adapting. */
+    private   int            frameSize = MAX_FRAME_SIZE;
+
+    /** The chooser of frame sizes, if adapting to the error rate. */
+    private   FrameSizer     frameSizer;
+
     /** The physical layer used by this layer. */
     protected PhysicalLayer  physicalLayer;
 
     /** The host that is using this layer. */
     protected Host           client;
 
-    /** The buffer of bits recently received, building up the current byte. */
-    protected Queue<Boolean> bitBuffer;
+    /** Space into which whole received bytes are assembled. */
+    private   byte[]         byteScratch;
+
+    /** The buffer of bytes recently received from the sender whose frame is
+     *  being processed, building up its current frame. */
+    protected Frame          receiveBuffer;
 
-    /** The buffer of bytes recently received, building up the current frame. */
-    protected Queue<Byte>    receiveBuffer;
+    /** The buffers of bytes received, by sender's port. */
+    private   Frame[]        receiveBuffers;
 
     /** The buffer of data yet to be sent. */
-    protected Queue<Byte>    sendBuffer;
+    protected SendBuffer     sendBuffer;
+
+    /** The <code>sendAsync()</code> calls awaiting delivery, in order. */
+    private   Queue<PendingSend> pendingSends;
+
+    /** The stream position just past the data known to be delivered. */
+    private volatile long    deliveredPosition = 0;
+
+    /** Frames available to subclasses that must hold on to frames. */
+    protected FramePool      framePool;
+
+    /** The data of the frame being sent. */
+    private   Frame          outgoingData;
+
+    /** The framed bytes of the frame being sent. */
+    private   Frame          outgoingFrame;
+
+    /** The data extracted from the frame most recently received. */
+    private   Frame          incomingData;
+
+    /** Framed control frames to send ahead of buffered data. */
+    private   Queue<Frame>   controlFrames;
 
     /** Whether to continue the event loop. */
-    private   boolean        doEventLoop;
+    private volatile boolean doEventLoop;
+
+    /** Whether the event loop parks when idle rather than spinning. */
+    private volatile boolean eventDriven = true;
+
+    /** The thread running the event loop, if it is running. */
+    private volatile Thread  loopThread;
+
+    /** The times by which the event loop must next check for timeouts. */
+    private   DeadlineQueue  deadlines;
+
+    /** The clock by which timeouts are measured. */
+    private   Clock          clock = Clock.SYSTEM;
+
+    /** Whether the layer has been woken since it was last polled. */
+    private volatile boolean woken = false;
 
     // =========================================================================
 
@@ -404,9 +1060,24 @@ public abstract class DataLinkLayer {
     // =========================================================================
     // CLASS DATA MEMBERS
 
-    /** The maximum number of original data bytes that a frame may contain. */
+    /** The number of original data bytes that a frame may contain, unless
+     *  another frame size is set. */
     public static final int     MAX_FRAME_SIZE   = 8;
 
+    /** The largest frame size that may be set. */
+    public static final int     FRAME_SIZE_LIMIT = 1024;
+
+    /** The buffered bytes at which waiting senders resume, unless other
+     *  watermarks are set. */
+    public static final long    DEFAULT_LOW_WATERMARK  = 1L << 19;
+
+    /** The buffered bytes at which senders must wait, unless other watermarks
+     *  are set. */
+    public static final long    DEFAULT_HIGH_WATERMARK = 1L << 20;
+
+    /** The number of received bytes assembled from bits at a time. */
+    private static final int    SCRATCH_SIZE     = 256;
+
     /** Whether to emit debugging information. */
     public static final boolean debug            = false;
     // =========================================================================
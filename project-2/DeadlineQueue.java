@@ -0,0 +1,268 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A priority queue of deadlines, each a time in nanoseconds by the owner's
+ * <code>Clock</code>, kept as a binary min-heap of primitive
+ * <code>long</code>s.  An event loop uses it to learn how long it may sleep
+ * before some timeout must be checked.  A deadline no longer needed, e.g.,
+ * that of a timer stopped or restarted, is removed, so that the loop is not
+ * woken for it.  Deadlines are plain times, so removing one removes any single
+ * entry for that time; entries for the same time are interchangeable.
+ * Not thread safe; it is meant to be used only by the event loop's thread.
+ *
+ * @file   DeadlineQueue.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class DeadlineQueue {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     */
+    public DeadlineQueue () {
+
+	heap = new long[INITIAL_CAPACITY];
+	size = 0;
+
+    } // DeadlineQueue ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return whether there are no deadlines pending. */
+    public boolean isEmpty () {
+
+	return size == 0;
+
+    } // isEmpty ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of deadlines pending. */
+    public int size () {
+
+	return size;
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a deadline.
+     *
+     * @param deadline The time, in nanoseconds.
+     */
+    public void add (long deadline) {
+
+	if (size == heap.length) {
+	    heap = Arrays.copyOf(heap, size * 2);
+	}
+
+	// Sift the new deadline up from the bottom of the heap.
+	size += 1;
+	siftUp(size - 1, deadline);
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the earliest deadline, or <code>Long.MAX_VALUE</code> if there
+     *         are none.
+     */
+    public long peek () {
+
+	return (size == 0) ? Long.MAX_VALUE : heap[0];
+
+    } // peek ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove and return the earliest deadline.
+     *
+     * @return the earliest deadline, or <code>Long.MAX_VALUE</code> if there
+     *         are none.
+     */
+    public long poll () {
+
+	if (size == 0) {
+	    return Long.MAX_VALUE;
+	}
+
+	long earliest = heap[0];
+	size -= 1;
+
+	// Sift the last deadline down from the top of the heap.
+	siftDown(0, heap[size]);
+
+	return earliest;
+
+    } // poll ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove a deadline that is no longer needed.  The few deadlines pending
+     * are searched in turn.
+     *
+     * @param deadline The time, in nanoseconds.
+     * @return <code>true</code> if an entry for that time was removed;
+     *         <code>false</code> if there was none, e.g., as it had expired.
+     */
+    public boolean remove (long deadline) {
+
+	int i = 0;
+	while (i < size && heap[i] != deadline) {
+	    i += 1;
+	}
+	if (i == size) {
+	    return false;
+	}
+
+	// Fill the hole with the last deadline, sifting it whichever way it
+	// must go.
+	size -= 1;
+	if (i < size) {
+	    long last = heap[size];
+	    if (i > 0 && last - heap[(i - 1) / 2] < 0) {
+		siftUp(i, last);
+	    } else {
+		siftDown(i, last);
+	    }
+	}
+
+	return true;
+
+    } // remove ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove every deadline that has passed.
+     *
+     * @param now The current time, in nanoseconds.
+     * @return the number of deadlines removed.
+     */
+    public int removeExpired (long now) {
+
+	int removed = 0;
+	while (size > 0 && heap[0] - now <= 0) {
+	    poll();
+	    removed += 1;
+	}
+
+	return removed;
+
+    } // removeExpired ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Place a deadline in a hole in the heap, moving it up past any later
+     * ancestors.
+     *
+     * @param i        The index of the hole.
+     * @param deadline The deadline to place.
+     */
+    private void siftUp (int i, long deadline) {
+
+	while (i > 0) {
+	    int parent = (i - 1) / 2;
+	    if (heap[parent] - deadline <= 0) {
+		break;
+	    }
+	    heap[i] = heap[parent];
+	    i       = parent;
+	}
+	heap[i] = deadline;
+
+    } // siftUp ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Place a deadline in a hole in the heap, moving it down past any earlier
+     * descendants.
+     *
+     * @param i        The index of the hole.
+     * @param deadline The deadline to place.
+     */
+    private void siftDown (int i, long deadline) {
+
+	while (2 * i + 1 < size) {
+	    int child = 2 * i + 1;
+	    if (child + 1 < size && heap[child + 1] - heap[child] < 0) {
+		child += 1;
+	    }
+	    if (deadline - heap[child] <= 0) {
+		break;
+	    }
+	    heap[i] = heap[child];
+	    i       = child;
+	}
+	heap[i] = deadline;
+
+    } // siftDown ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The heap of deadlines. */
+    private long[] heap;
+
+    /** The number of deadlines in the heap. */
+    private int    size;
+
+    /** The initial number of deadlines for which there is space. */
+    private static final int INITIAL_CAPACITY = 16;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class DeadlineQueue
+// =============================================================================
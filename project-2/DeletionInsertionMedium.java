@@ -0,0 +1,270 @@
+// =============================================================================
+/**
+ * A medium that occasionally loses a bit, or adds a stray one.  Unlike a
+ * flipped bit, a lost or added bit shifts everything after it, so that a
+ * receiver must find the start of the next frame anew; it tests how a data
+ * link layer resynchronizes on its frame tags.
+ *
+ * Before each bit, with one probability a stray bit of random value is added,
+ * and with another the bit itself is lost.  The distance from each such event
+ * to the next is drawn from the geometric distribution, so that the cost is
+ * per event, not per bit, and the bits between events are delivered as
+ * blocks.  Draws are seeded (see <code>RandomMedium</code>).  Every receiver
+ * hears the same bits.
+ *
+ * As data link layers assemble bytes from an unbroken stream of bits, a
+ * single slip would misalign every later byte.  So, as a receiver regains
+ * byte synchronization on an idle line, the end of each frame (see
+ * <code>Medium.transmitBytes()</code>) is padded with <code>0</code> bits to
+ * the next byte boundary: a slip garbles the rest of its own frame, along
+ * with whatever the receiver makes of the padding, but not the frames after.
+ *
+ * @file   DeletionInsertionMedium.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class DeletionInsertionMedium extends RandomMedium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium with the default probabilities and an arbitrary seed.
+     */
+    public DeletionInsertionMedium () {
+
+	setProbabilities(DEFAULT_DELETION_PROBABILITY,
+			 DEFAULT_INSERTION_PROBABILITY);
+
+    } // DeletionInsertionMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the probabilities of losing and of adding a bit.  Set them before
+     * any client transmits.
+     *
+     * @param deletionProbability  The probability that each bit is lost.
+     * @param insertionProbability The probability that a stray bit is added
+     *                             before each bit.
+     * @throws RuntimeException if either probability, or their sum, is not
+     *                          from 0 to 1.
+     */
+    public synchronized void setProbabilities (double deletionProbability,
+					       double insertionProbability) {
+
+	double eventProbability = deletionProbability + insertionProbability;
+	logComplement(deletionProbability);
+	logComplement(insertionProbability);
+	this.logComplement = logComplement(eventProbability);
+	this.deletionShare = (eventProbability > 0)
+	    ? deletionProbability / eventProbability
+	    : 0;
+	resetNoise();
+
+    } // setProbabilities ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit from one client to the other clients, perhaps lost or
+     * preceded by a stray bit.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit    The value to be sent.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	transmitBlock(sender, bit ? 1 : 0, 1);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a word of packed bits from one client to the other clients, losing
+     * some bits and adding others.  The bits between events are delivered
+     * whole.
+     *
+     * @param sender The client physical layer sending the bits.
+     * @param bits   The packed bit values to send, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code> to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmitBlock (PhysicalLayer sender, long bits, int count) {
+
+	// Only registered clients may send.
+	if (!isRegistered(sender)) {
+	    throw new RuntimeException("Unregistered sender on the medium");
+	}
+
+	slip(sender, bits, count);
+
+    } // transmitBlock ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a frame from one client to the other clients, losing some bits and
+     * adding others, then pad it to a whole number of bytes.
+     *
+     * @param sender The client physical layer sending the frame.
+     * @param src    The bytes to send.
+     * @param off    The index of the first byte to send.
+     * @param len    The number of bytes to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmitBytes (PhysicalLayer sender,
+			       byte[]        src,
+			       int           off,
+			       int           len) {
+
+	// Only registered clients may send.
+	if (!isRegistered(sender)) {
+	    throw new RuntimeException("Unregistered sender on the medium");
+	}
+
+	// Send the frame a word at a time, counting the bits delivered...
+	long delivered = 0;
+	int  end       = off + len;
+	while (off < end) {
+	    int count = Math.min(end - off, Long.BYTES);
+	    delivered += slip(sender, pack(src, off, count), count * Byte.SIZE);
+	    off       += count;
+	}
+
+	// ...and realign the receivers on the next byte.
+	int shift = (int)Math.floorMod(delivered, (long)Byte.SIZE);
+	if (shift != 0) {
+	    deliver(sender, 0, Byte.SIZE - shift);
+	}
+
+    } // transmitBytes ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Deliver a word of packed bits, less those lost and plus those added.
+     *
+     * @param sender The client physical layer sending the bits.
+     * @param bits   The packed bit values to send, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code> to send.
+     * @return the number of bits delivered.
+     */
+    private int slip (PhysicalLayer sender, long bits, int count) {
+
+	Noise noise     = noise(sender);
+	int   delivered = count;
+	if (noise.gap == NO_GAP) {
+	    noise.gap = geometric(noise.random, logComplement);
+	}
+
+	// Skip from each event to the next, delivering the bits between.
+	int position = 0;
+	while (noise.gap < count - position) {
+
+	    int next = position + (int)noise.gap;
+	    deliver(sender, span(bits, count, position, next), next - position);
+	    position = next;
+
+	    if (noise.random.nextDouble() < deletionShare) {
+		if (debug) {
+		    System.out.println("DeletionInsertionMedium: Lost a bit");
+		}
+		position  += 1;
+		delivered -= 1;
+	    } else {
+		if (debug) {
+		    System.out.println("DeletionInsertionMedium: Added a bit");
+		}
+		deliver(sender, noise.random.nextBoolean() ? 1 : 0, 1);
+		delivered += 1;
+	    }
+	    noise.gap = geometric(noise.random, logComplement);
+
+	}
+	deliver(sender, span(bits, count, position, count), count - position);
+	noise.gap -= count - position;
+
+	return delivered;
+
+    } // slip ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Extract a run of bits from a word.
+     *
+     * @param bits  The packed bits, right-aligned.
+     * @param count The number of low-order bits of <code>bits</code> in use.
+     * @param from  The first bit of the run, counted in the order sent (most
+     *              significant first) from 0.
+     * @param to    The bit just past the run.
+     * @return the bits of the run, right-aligned.
+     */
+    private static long span (long bits, int count, int from, int to) {
+
+	int length = to - from;
+	if (length == 0) {
+	    return 0;
+	}
+	long mask = (length == Long.SIZE) ? -1L : (1L << length) - 1;
+
+	return (bits >>> (count - to)) & mask;
+
+    } // span ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The natural logarithm of the probability that no event precedes a
+     *  bit. */
+    private double            logComplement;
+
+    /** The share of events that lose a bit rather than add one. */
+    private double            deletionShare;
+
+    /** The probability that a bit is lost, unless another is set. */
+    public static final double DEFAULT_DELETION_PROBABILITY  = 1e-5;
+
+    /** The probability that a stray bit is added, unless another is set. */
+    public static final double DEFAULT_INSERTION_PROBABILITY = 1e-5;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class DeletionInsertionMedium
+// =============================================================================
@@ -0,0 +1,370 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A discrete-event simulation, running hosts and media on a single thread in
+ * virtual time, as fast as the processor allows.  Events (e.g., the arrival
+ * of bits sent over a <code>Link</code>) are kept in a priority queue by
+ * time, ties going to the event scheduled first.  At each moment, the
+ * simulation polls every host's data link layer until none has anything more
+ * to do; it then advances its clock straight to the next event or the next
+ * timeout deadline of any layer, whichever is sooner.  A timeout of seconds
+ * thus costs no real time, and, as nothing depends on thread scheduling, the
+ * same simulation always runs the same way.
+ *
+ * Hosts in a simulation are never run as threads, and their senders must
+ * not wait for room in the send buffer (see
+ * <code>DataLinkLayer.setSendWatermarks()</code>), as nothing else runs to
+ * drain it.
+ *
+ * @file   EventSimulator.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class EventSimulator implements Clock {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a medium to the simulation, so that it measures virtual time and
+     * schedules its deliveries as events.
+     *
+     * @param medium The medium.
+     */
+    public void add (Medium medium) {
+
+	medium.setSimulator(this);
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a host to the simulation, so that its data link layer is polled by
+     * the simulation and measures virtual time.
+     *
+     * @param host The host, which must not also be run as a thread.
+     */
+    public void add (Host host) {
+
+	DataLinkLayer layer = host.dataLinkLayer();
+	layer.setClock(this);
+	layers.add(layer);
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the current virtual time, in nanoseconds. */
+    public long nanoTime () {
+
+	return now;
+
+    } // nanoTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Schedule an action to be taken at a given virtual time.
+     *
+     * @param time   The time, in nanoseconds, no earlier than now.
+     * @param action The action to take.
+     * @throws RuntimeException if the time has already passed.
+     */
+    public void schedule (long time, Runnable action) {
+
+	if (time < now) {
+	    throw new RuntimeException("Event scheduled in the past: " + time +
+				       " < " + now);
+	}
+
+	events.add(new Event(time, sequence, action));
+	sequence += 1;
+
+    } // schedule ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Schedule the arrival of bits at a receiver, as media that delay their
+     * bits do.  The receiver matters only to simulations that divide their
+     * hosts among threads (see <code>ParallelEventSimulator</code>).
+     *
+     * @param receiver The physical layer at which the bits arrive.
+     * @param time     The time of arrival, in nanoseconds, no earlier than
+     *                 now.
+     * @param action   The delivery of the bits.
+     * @throws RuntimeException if the time has already passed.
+     */
+    public void schedule (PhysicalLayer receiver, long time, Runnable action) {
+
+	schedule(time, action);
+
+    } // schedule ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run the simulation until a condition holds, nothing remains to happen,
+     * or virtual time would pass a limit.
+     *
+     * @param done  The condition, checked whenever every layer is idle.
+     * @param limit The latest virtual time, in nanoseconds, to which to run.
+     * @return <code>true</code> if the condition holds.
+     */
+    public boolean run (BooleanSupplier done, long limit) {
+
+	while (true) {
+
+	    settle();
+	    if (done.getAsBoolean()) {
+		return true;
+	    }
+
+	    // Advance to whatever happens next.
+	    long next = nextTime();
+	    if (next == Long.MAX_VALUE || next > limit) {
+		return false;
+	    }
+	    advance(next);
+
+	}
+
+    } // run ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of events taken so far. */
+    public long eventsProcessed () {
+
+	return eventsProcessed;
+
+    } // eventsProcessed ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PROTECTED METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run everything that happens before a given time, leaving the clock at
+     * the last moment at which anything happened.  Used to run a part of a
+     * larger simulation one window of time at a time.
+     *
+     * @param end The time, in nanoseconds, at which to stop.
+     */
+    protected void runUntil (long end) {
+
+	while (true) {
+	    settle();
+	    long next = nextTime();
+	    if (next >= end) {
+		return;
+	    }
+	    advance(next);
+	}
+
+    } // runUntil ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the time at which something next happens: now, if any layer
+     *         has work; otherwise the time of the next event or layer
+     *         deadline, or <code>Long.MAX_VALUE</code> if there is none.
+     */
+    protected long nextTime () {
+
+	for (DataLinkLayer layer : layers) {
+	    if (layer.hasWork()) {
+		return now;
+	    }
+	}
+
+	long  next  = Long.MAX_VALUE;
+	Event event = events.peek();
+	if (event != null) {
+	    next = event.time;
+	}
+	for (DataLinkLayer layer : layers) {
+	    next = Math.min(next, layer.nextDeadline());
+	}
+
+	return next;
+
+    } // nextTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the data link layers of the hosts, in the order added. */
+    protected List<DataLinkLayer> layers () {
+
+	return layers;
+
+    } // layers ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Move the clock forward to a given time, and take every action then
+     * due, in order.
+     *
+     * @param time The time, in nanoseconds.
+     */
+    private void advance (long time) {
+
+	now = Math.max(now, time);
+
+	Event event;
+	while ((event = events.peek()) != null && event.time <= now) {
+	    events.poll();
+	    event.action.run();
+	    eventsProcessed += 1;
+	}
+
+    } // advance ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Poll the layers, round after round, until a round leaves none of them
+     * with anything to do at the current time.  Only layers that have work,
+     * that did something in the previous round, or whose deadlines have come
+     * are polled, so idle hosts cost little.  A layer may be given work
+     * (e.g., bits sent to it) by one polled after it, so each round ends by
+     * asking every layer whether it has work.
+     */
+    private void settle () {
+
+	if (again.length != layers.size()) {
+	    again = new boolean[layers.size()];
+	}
+
+	boolean busy;
+	do {
+	    busy = false;
+	    for (int i = 0; i < again.length; i += 1) {
+		DataLinkLayer layer = layers.get(i);
+		if (again[i] || layer.hasWork() ||
+		    layer.nextDeadline() - now <= 0) {
+		    again[i] = layer.poll();
+		    busy    |= again[i];
+		}
+	    }
+	    for (int i = 0; !busy && i < again.length; i += 1) {
+		busy = layers.get(i).hasWork();
+	    }
+	} while (busy);
+
+    } // settle ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * An action scheduled for a given time.
+     */
+    private static class Event implements Comparable<Event> {
+
+	Event (long time, long sequence, Runnable action) {
+
+	    this.time     = time;
+	    this.sequence = sequence;
+	    this.action   = action;
+
+	}
+
+	/** Order by time, and events at the same time by scheduling. */
+	public int compareTo (Event that) {
+
+	    int order = Long.compare(time, that.time);
+	    return (order != 0) ? order : Long.compare(sequence, that.sequence);
+
+	}
+
+	final long     time;
+	final long     sequence;
+	final Runnable action;
+
+    } // class Event
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The current virtual time, in nanoseconds. */
+    private long                      now             = 0;
+
+    /** The number of events scheduled so far, to order simultaneous ones. */
+    private long                      sequence        = 0;
+
+    /** The number of events taken so far. */
+    private long                      eventsProcessed = 0;
+
+    /** The actions yet to be taken, by time. */
+    private final PriorityQueue<Event> events         = new PriorityQueue<Event>();
+
+    /** The data link layers of the hosts, in the order added. */
+    private final List<DataLinkLayer> layers          =
+	new ArrayList<DataLinkLayer>();
+
+    /** Whether each layer did something when last polled, by layer. */
+    private boolean[]                 again           = new boolean[0];
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class EventSimulator
+// =============================================================================
@@ -0,0 +1,71 @@
+// =============================================================================
+/**
+ * A frame checksum that is Fletcher-16: two running sums modulo 255.
+ *
+ * @file   Fletcher16Checksum.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class Fletcher16Checksum extends FrameChecksum {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes that the check value occupies. */
+    public int size () {
+
+	return 2;
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the Fletcher-16 of a run of bytes.  The modulus is taken only
+     * once per block of bytes small enough that the sums cannot overflow.
+     *
+     * @param data The array holding the bytes.
+     * @param off  The index of the first byte.
+     * @param len  The number of bytes.
+     * @return the checksum.
+     */
+    public long compute (byte[] data, int off, int len) {
+
+	int a   = 0;
+	int b   = 0;
+	int end = off + len;
+	while (off < end) {
+	    int blockEnd = Math.min(end, off + BLOCK_SIZE);
+	    for (; off < blockEnd; off += 1) {
+		a += data[off] & 0xff;
+		b += a;
+	    }
+	    a %= MODULUS;
+	    b %= MODULUS;
+	}
+
+	return (b << 8) | a;
+
+    } // compute ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The modulus of both sums. */
+    private static final int MODULUS    = 255;
+
+    /** The most bytes that may be summed before the sums could overflow. */
+    private static final int BLOCK_SIZE = 4096;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Fletcher16Checksum
+// =============================================================================
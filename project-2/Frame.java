@@ -0,0 +1,343 @@
+// =============================================================================
+// IMPORTS
+
+import java.nio.ByteBuffer;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A reusable, growable run of bytes within a backing array, used for the data
+ * and framed contents of frames and for the received-byte buffer of a data
+ * link layer.  Bytes are appended at the end and discarded from the front; the
+ * backing array is compacted or grown only when needed, so a frame that is
+ * cleared and refilled allocates nothing once it has reached its working size.
+ *
+ * A frame is not thread safe; each is meant to be used by a single data link
+ * layer's event loop.
+ *
+ * @file   Frame.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class Frame {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create an empty frame with a default capacity.
+     */
+    public Frame () {
+
+	this(DEFAULT_CAPACITY);
+
+    } // Frame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create an empty frame.
+     *
+     * @param capacity The initial size of the backing array.
+     */
+    public Frame (int capacity) {
+
+	data   = new byte[Math.max(1, capacity)];
+	offset = 0;
+	length = 0;
+
+    } // Frame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the backing array. */
+    public byte[] array () {
+
+	return data;
+
+    } // array ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the index in the backing array of the first byte. */
+    public int offset () {
+
+	return offset;
+
+    } // offset ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes in the frame. */
+    public int length () {
+
+	return length;
+
+    } // length ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return whether the frame contains no bytes. */
+    public boolean isEmpty () {
+
+	return length == 0;
+
+    } // isEmpty ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param  index The position, relative to the start of the frame.
+     * @return the byte at the given position.
+     * @throws IndexOutOfBoundsException if the position is not in the frame.
+     */
+    public byte get (int index) {
+
+	if (index < 0 || index >= length) {
+	    throw new IndexOutOfBoundsException("Frame index " + index);
+	}
+
+	return data[offset + index];
+
+    } // get ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Replace the byte at a given position.
+     *
+     * @param  index The position, relative to the start of the frame.
+     * @param  b     The new value.
+     * @throws IndexOutOfBoundsException if the position is not in the frame.
+     */
+    public void set (int index, byte b) {
+
+	if (index < 0 || index >= length) {
+	    throw new IndexOutOfBoundsException("Frame index " + index);
+	}
+
+	data[offset + index] = b;
+
+    } // set ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Empty the frame, keeping its backing array.
+     */
+    public void clear () {
+
+	offset = 0;
+	length = 0;
+
+    } // clear ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append one byte.
+     *
+     * @param b The byte to append.
+     */
+    public void add (byte b) {
+
+	makeRoom(1);
+	data[offset + length] = b;
+	length += 1;
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append a run of bytes.
+     *
+     * @param src The array holding the bytes to append.
+     * @param off The index of the first byte to append.
+     * @param len The number of bytes to append.
+     */
+    public void add (byte[] src, int off, int len) {
+
+	makeRoom(len);
+	System.arraycopy(src, off, data, offset + length, len);
+	length += len;
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append the whole contents of another frame.
+     *
+     * @param other The frame whose bytes to append.
+     */
+    public void add (Frame other) {
+
+	add(other.data, other.offset, other.length);
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove a number of leading bytes.
+     *
+     * @param count The number of bytes to remove from the front.
+     * @throws IndexOutOfBoundsException if the frame holds fewer bytes.
+     */
+    public void discard (int count) {
+
+	if (count < 0 || count > length) {
+	    throw new IndexOutOfBoundsException("Frame discard " + count);
+	}
+
+	offset += count;
+	length -= count;
+	if (length == 0) {
+	    offset = 0;
+	}
+
+    } // discard ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Shorten the frame by removing trailing bytes.
+     *
+     * @param newLength The number of leading bytes to keep.
+     * @throws IndexOutOfBoundsException if the frame is already shorter.
+     */
+    public void truncate (int newLength) {
+
+	if (newLength < 0 || newLength > length) {
+	    throw new IndexOutOfBoundsException("Frame truncate " + newLength);
+	}
+
+	length = newLength;
+
+    } // truncate ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return a newly allocated array holding a copy of the frame's bytes.
+     */
+    public byte[] toByteArray () {
+
+	byte[] copy = new byte[length];
+	System.arraycopy(data, offset, copy, 0, length);
+	return copy;
+
+    } // toByteArray ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return a buffer that shares the frame's bytes, positioned at the start
+     *         of the frame and limited to its end.  The view is valid only
+     *         until the frame is next modified.
+     */
+    public ByteBuffer asByteBuffer () {
+
+	return ByteBuffer.wrap(data, offset, length).slice();
+
+    } // asByteBuffer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Ensure that there is space to append some number of bytes, first by
+     * sliding the contents to the start of the array, and then by growing it.
+     *
+     * @param extra The number of bytes about to be appended.
+     */
+    private void makeRoom (int extra) {
+
+	if (offset + length + extra <= data.length) {
+	    return;
+	}
+
+	// Grow the array if sliding alone would not make enough room.
+	byte[] target = data;
+	if (length + extra > data.length) {
+	    int capacity = Math.max(data.length * 2, length + extra);
+	    target = new byte[capacity];
+	}
+
+	System.arraycopy(data, offset, target, 0, length);
+	data   = target;
+	offset = 0;
+
+    } // makeRoom ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The backing array. */
+    private byte[]     data;
+
+    /** The index in the backing array of the first byte. */
+    private int        offset;
+
+    /** The number of bytes in the frame. */
+    private int        length;
+
+    /** The capacity of a frame created without one being given. */
+    public static final int DEFAULT_CAPACITY = 64;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Frame
+// =============================================================================
@@ -0,0 +1,158 @@
+// =============================================================================
+/**
+ * An error-detecting code appended to the data of each frame.  A data link
+ * layer asks its checksum to append a check value when it builds a frame, and
+ * to verify and remove it when it extracts one, so that the cost and strength
+ * of error detection can be chosen per link rather than fixed per layer.
+ * Implementations work directly on byte ranges, and are stateless, so one
+ * instance may be shared.
+ *
+ * @file   FrameChecksum.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public abstract class FrameChecksum {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create the requested checksum type and return it.
+     *
+     * @param  type The checksum, named by its class without the
+     *              <code>Checksum</code> suffix: <code>Parity</code>,
+     *              <code>CRC8</code>, <code>CRC16</code>, <code>CRC32</code>,
+     *              <code>CRC32C</code>, <code>Adler32</code>,
+     *              <code>Fletcher16</code>, or <code>Internet</code>.
+     * @return The newly created checksum.
+     * @throws RuntimeException if the given type is not a valid subclass.
+     */
+    public static FrameChecksum create (String type) {
+
+	// Look up the class by name.
+	String   className     = type + "Checksum";
+	Class<?> checksumClass = null;
+	try {
+	    checksumClass = Class.forName(className);
+	} catch (ClassNotFoundException e) {
+	    throw new RuntimeException("Unknown checksum subclass " + className);
+	}
+
+	// Make one of these objects, and then see if it really is a
+	// FrameChecksum subclass.
+	Object o = null;
+	try {
+	    o = checksumClass.getDeclaredConstructor().newInstance();
+	} catch (ReflectiveOperationException e) {
+	    throw new RuntimeException("Could not instantiate " + className);
+	}
+	FrameChecksum checksum = null;
+	try {
+	    checksum = (FrameChecksum)o;
+	} catch (ClassCastException e) {
+	    throw new RuntimeException(className +
+				       " is not a subclass of FrameChecksum");
+	}
+
+	return checksum;
+
+    } // create ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes that the check value occupies. */
+    abstract public int size ();
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the check value of a run of bytes.
+     *
+     * @param data The array holding the bytes.
+     * @param off  The index of the first byte.
+     * @param len  The number of bytes.
+     * @return the check value, in the low <code>8 * size()</code> bits.
+     */
+    abstract public long compute (byte[] data, int off, int len);
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the check value of a frame's bytes.
+     *
+     * @param data The frame.
+     * @return the check value.
+     */
+    public long compute (Frame data) {
+
+	return compute(data.array(), data.offset(), data.length());
+
+    } // compute ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append to a frame the check value of its current contents, most
+     * significant byte first.
+     *
+     * @param data The frame to extend.
+     */
+    public void append (Frame data) {
+
+	long value = compute(data);
+	for (int i = size() - 1; i >= 0; i -= 1) {
+	    data.add((byte)(value >>> (i * Byte.SIZE)));
+	}
+
+    } // append ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Remove the check value from the end of a frame and determine whether it
+     * matches the remaining contents.
+     *
+     * @param data The frame, ending with its check value.
+     * @return <code>true</code> if the frame is intact; <code>false</code> if
+     *         it is damaged or too short to hold a check value.
+     */
+    public boolean check (Frame data) {
+
+	int length = data.length() - size();
+	if (length < 0) {
+	    return false;
+	}
+
+	long received = 0;
+	for (int i = length; i < data.length(); i += 1) {
+	    received = (received << Byte.SIZE) | (data.get(i) & 0xff);
+	}
+	data.truncate(length);
+
+	return received == compute(data);
+
+    } // check ()
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class FrameChecksum
+// =============================================================================
@@ -0,0 +1,153 @@
+// =============================================================================
+/**
+ * A medium that occasionally loses a whole frame, but never damages one.  It
+ * tests a data link layer's timeouts and retransmission apart from its error
+ * detection.
+ *
+ * A frame is a run of bytes that a physical layer sends at once (see
+ * <code>Medium.transmitBytes()</code>); each is lost with the same
+ * probability, drawn from the sender's seeded generator (see
+ * <code>RandomMedium</code>).  Bits sent one word at a time are always
+ * delivered.
+ *
+ * @file   FrameDropMedium.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class FrameDropMedium extends RandomMedium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium with the default drop probability and an arbitrary
+     * seed.
+     */
+    public FrameDropMedium () {
+
+	setDropProbability(DEFAULT_DROP_PROBABILITY);
+
+    } // FrameDropMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the probability that each frame is lost.
+     *
+     * @param dropProbability The probability, from 0 to 1.
+     * @throws RuntimeException if the probability is out of range.
+     */
+    public void setDropProbability (double dropProbability) {
+
+	logComplement(dropProbability);
+	this.dropProbability = dropProbability;
+
+    } // setDropProbability ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit from one client to the other clients.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit    The value to be sent.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	transmitBlock(sender, bit ? 1 : 0, 1);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a word of packed bits, intact, from one client to the other
+     * clients.
+     *
+     * @param sender The client physical layer sending the bits.
+     * @param bits   The packed bit values to send, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code> to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmitBlock (PhysicalLayer sender, long bits, int count) {
+
+	// Only registered clients may send.
+	if (!isRegistered(sender)) {
+	    throw new RuntimeException("Unregistered sender on the medium");
+	}
+
+	deliver(sender, bits, count);
+
+    } // transmitBlock ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a frame from one client to the other clients, or, with some
+     * probability, lose the whole of it.
+     *
+     * @param sender The client physical layer sending the frame.
+     * @param src    The bytes to send.
+     * @param off    The index of the first byte to send.
+     * @param len    The number of bytes to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmitBytes (PhysicalLayer sender,
+			       byte[]        src,
+			       int           off,
+			       int           len) {
+
+	// Only registered clients may send.
+	if (!isRegistered(sender)) {
+	    throw new RuntimeException("Unregistered sender on the medium");
+	}
+
+	if (noise(sender).random.nextDouble() < dropProbability) {
+	    if (debug) {
+		System.out.println("FrameDropMedium.transmitBytes(): Lost " +
+				   len + " bytes");
+	    }
+	    return;
+	}
+
+	super.transmitBytes(sender, src, off, len);
+
+    } // transmitBytes ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The probability that a frame is lost. */
+    private volatile double    dropProbability;
+
+    /** The probability that a frame is lost, unless another is set. */
+    public static final double DEFAULT_DROP_PROBABILITY = 0.01;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class FrameDropMedium
+// =============================================================================
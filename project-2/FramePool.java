@@ -0,0 +1,97 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.ArrayDeque;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A free list of frames, so that a data link layer that needs to hold frames
+ * for a while (e.g., for retransmission) can reuse their backing arrays rather
+ * than allocating new ones.  Like the frames themselves, a pool is meant to be
+ * used by a single event loop and is not thread safe.
+ *
+ * @file   FramePool.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class FramePool {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     *
+     * @param frameCapacity The initial capacity of each newly created frame.
+     */
+    public FramePool (int frameCapacity) {
+
+	this.frameCapacity = frameCapacity;
+	free               = new ArrayDeque<Frame>();
+
+    } // FramePool ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return an empty frame, reused if one is available.
+     */
+    public Frame acquire () {
+
+	Frame frame = free.poll();
+	if (frame == null) {
+	    frame = new Frame(frameCapacity);
+	}
+
+	return frame;
+
+    } // acquire ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Return a frame to the pool.  The caller must not use it afterwards.
+     *
+     * @param frame The frame to return; <code>null</code> is ignored.
+     */
+    public void release (Frame frame) {
+
+	if (frame != null) {
+	    frame.clear();
+	    free.push(frame);
+	}
+
+    } // release ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The initial capacity of newly created frames. */
+    private final int              frameCapacity;
+
+    /** The frames available for reuse. */
+    private final ArrayDeque<Frame> free;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class FramePool
+// =============================================================================
@@ -0,0 +1,174 @@
+// =============================================================================
+/**
+ * Chooses how many data bytes to place in each frame so as to maximize
+ * goodput.  Longer frames spread the fixed framing overhead over more data,
+ * but are more likely to be damaged and sent again.  The sizer keeps moving
+ * averages of the fraction of frames lost and of their length, infers from
+ * them the probability that any one byte is damaged, and picks the size that
+ * maximizes the expected data delivered per byte sent.
+ *
+ * With a per-byte error probability q (and a = -ln(1 - q)) and H bytes of
+ * overhead per frame, the expected goodput of L data bytes per frame is
+ * proportional to L / (L + H) * e^(-a (L + H)), which is greatest at
+ * L = (sqrt(H^2 + 4H / a) - H) / 2.  Frames shrink to that size at once, but
+ * grow toward it only by an eighth per frame recorded, since many frames may
+ * be sent at a new size before any of them is known to have been lost.
+ *
+ * @file   FrameSizer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class FrameSizer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a sizer.
+     *
+     * @param minSize     The fewest data bytes per frame, at least 1.
+     * @param maxSize     The most data bytes per frame.
+     * @param initialSize The data bytes per frame until errors are observed.
+     * @throws RuntimeException if the sizes are out of order.
+     */
+    public FrameSizer (int minSize, int maxSize, int initialSize) {
+
+	if (minSize < 1 || maxSize < minSize ||
+	    initialSize < minSize || initialSize > maxSize) {
+	    throw new RuntimeException("Invalid frame sizes " + minSize + ", " +
+				       maxSize + ", " + initialSize);
+	}
+
+	this.minSize = minSize;
+	this.maxSize = maxSize;
+	this.size    = initialSize;
+
+    } // FrameSizer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of data bytes to place in the next frame. */
+    public int size () {
+
+	return size;
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record the fate of a frame, and choose the size of frames to come.
+     *
+     * @param dataLength The number of data bytes that the frame carried.
+     * @param overhead   The number of bytes of framing around the data.
+     * @param delivered  <code>true</code> if the frame was acknowledged;
+     *                   <code>false</code> if it was damaged or lost.
+     */
+    public void record (int dataLength, int overhead, boolean delivered) {
+
+	int framedLength = dataLength + overhead;
+	lossRate      += WEIGHT * ((delivered ? 0.0 : 1.0) - lossRate);
+	averageLength  = (averageLength == 0.0)
+	               ? framedLength
+	               : averageLength + WEIGHT * (framedLength - averageLength);
+	this.overhead  = overhead;
+
+	int growth = Math.max(1, size / GROWTH_DIVISOR);
+	size = Math.max(minSize, Math.min(Math.min(maxSize, size + growth),
+					  optimalSize()));
+
+    } // record ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the moving average of the fraction of frames lost. */
+    public double lossRate () {
+
+	return lossRate;
+
+    } // lossRate ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the number of data bytes per frame that maximizes goodput, given
+     *         the observed loss rate.
+     */
+    private int optimalSize () {
+
+	// Infer -ln(1 - q), for per-byte error probability q, from the loss
+	// rate of frames of the average length.
+	double perByte = -Math.log1p(-Math.min(lossRate, MAX_LOSS_RATE)) /
+	                 averageLength;
+	if (perByte <= 0.0) {
+	    return maxSize;
+	}
+
+	double h       = Math.max(overhead, 1);
+	double optimum = (Math.sqrt(h * h + 4.0 * h / perByte) - h) / 2.0;
+
+	return (int)Math.min(optimum, maxSize);
+
+    } // optimalSize ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The fewest data bytes per frame. */
+    private final int minSize;
+
+    /** The most data bytes per frame. */
+    private final int maxSize;
+
+    /** The data bytes per frame currently chosen. */
+    private int       size;
+
+    /** The most recent overhead bytes per frame. */
+    private int       overhead      = 0;
+
+    /** The moving average of the fraction of frames lost. */
+    private double    lossRate      = 0.0;
+
+    /** The moving average of the framed length of a frame. */
+    private double    averageLength = 0.0;
+
+    /** The weight given to each new frame in the moving averages. */
+    private static final double WEIGHT         = 1.0 / 16.0;
+
+    /** The inverse of the largest fraction by which the size grows per
+     *  frame recorded. */
+    private static final int    GROWTH_DIVISOR = 8;
+
+    /** The loss rate beyond which the estimate is not trusted further. */
+    private static final double MAX_LOSS_RATE  = 0.99;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class FrameSizer
+// =============================================================================
@@ -0,0 +1,217 @@
+// =============================================================================
+/**
+ * A medium whose errors come in bursts, following the Gilbert-Elliott model.
+ * Each sender's channel is, at each bit, in a good state or a bad state; after
+ * each bit, it leaves the good state with one probability and the bad state
+ * with another, and in each state it flips bits with a probability of that
+ * state's own.  The default parameters give rare bursts, about ten bits long,
+ * in which half of the bits are flipped.
+ *
+ * The time spent in each state, and the distance from each flip to the next
+ * within it, are drawn directly from the geometric distribution, so that the
+ * cost is per burst and per error, not per bit.  Any probability may be 0 or
+ * 1: a channel that never leaves a state stays in it for good.  Draws are
+ * seeded (see <code>RandomMedium</code>).  Every receiver hears the same
+ * damaged bits.
+ *
+ * @file   GilbertElliottMedium.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class GilbertElliottMedium extends RandomMedium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium with the default parameters and an arbitrary seed.
+     */
+    public GilbertElliottMedium () {
+
+	setParameters(DEFAULT_GOOD_TO_BAD,
+		      DEFAULT_BAD_TO_GOOD,
+		      DEFAULT_GOOD_ERROR,
+		      DEFAULT_BAD_ERROR);
+
+    } // GilbertElliottMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the parameters of the model.  Set them before any client transmits.
+     *
+     * @param goodToBad The probability, after each bit in the good state, of
+     *                  moving to the bad state.
+     * @param badToGood The probability, after each bit in the bad state, of
+     *                  moving to the good state.
+     * @param goodError The probability of flipping each bit in the good state.
+     * @param badError  The probability of flipping each bit in the bad state.
+     * @throws RuntimeException if any probability is not from 0 to 1.
+     */
+    public synchronized void setParameters (double goodToBad,
+					    double badToGood,
+					    double goodError,
+					    double badError) {
+
+	logStay[GOOD]  = logComplement(goodToBad);
+	logStay[BAD]   = logComplement(badToGood);
+	logIntact[GOOD] = logComplement(goodError);
+	logIntact[BAD]  = logComplement(badError);
+	resetNoise();
+
+    } // setParameters ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit from one client to the other clients, perhaps flipped.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit    The value to be sent.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	transmitBlock(sender, bit ? 1 : 0, 1);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a word of packed bits from one client to the other clients, the
+     * bits flipped as the sender's channel dictates.
+     *
+     * @param sender The client physical layer sending the bits.
+     * @param bits   The packed bit values to send, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code> to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmitBlock (PhysicalLayer sender, long bits, int count) {
+
+	// Only registered clients may send.
+	if (!isRegistered(sender)) {
+	    throw new RuntimeException("Unregistered sender on the medium");
+	}
+	Noise noise = noise(sender);
+
+	// Take the word a run at a time, each run within one state.
+	int position = 0;
+	while (position < count) {
+
+	    if (noise.sojourn == NO_GAP) {
+		noise.sojourn = sojourn(noise);
+	    } else if (noise.sojourn == 0) {
+		noise.bad     = !noise.bad;
+		noise.gap     = NO_GAP;
+		noise.sojourn = sojourn(noise);
+	    }
+
+	    int run = (int)Math.min(count - position, noise.sojourn);
+	    bits ^= skipToFlips(noise, logIntact[state(noise)],
+				count, position, position + run);
+	    position      += run;
+	    noise.sojourn -= run;
+
+	}
+
+	deliver(sender, bits, count);
+
+    } // transmitBlock ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Draw the number of bits for which a sender's channel stays in its
+     * current state: the bit that entered it, and those until it leaves.
+     *
+     * @param noise A sender's progress.
+     * @return the number of bits, at least 1, or <code>Long.MAX_VALUE</code>
+     *         if the channel never leaves the state.
+     */
+    private long sojourn (Noise noise) {
+
+	long stay = geometric(noise.random, logStay[state(noise)]);
+
+	return (stay < Long.MAX_VALUE) ? stay + 1 : Long.MAX_VALUE;
+
+    } // sojourn ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param noise A sender's progress.
+     * @return the index of its channel's state, <code>GOOD</code> or
+     *         <code>BAD</code>.
+     */
+    private static int state (Noise noise) {
+
+	return noise.bad ? BAD : GOOD;
+
+    } // state ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The logarithm of the probability of staying in each state after a
+     *  bit, by state. */
+    private final double[] logStay   = new double[2];
+
+    /** The logarithm of the probability of a bit not flipping in each
+     *  state, by state. */
+    private final double[] logIntact = new double[2];
+
+    /** The index of the good state. */
+    private static final int GOOD = 0;
+
+    /** The index of the bad state. */
+    private static final int BAD  = 1;
+
+    /** The probability of entering a burst after each good bit, unless
+     *  others are set. */
+    public static final double DEFAULT_GOOD_TO_BAD = 1e-4;
+
+    /** The probability of leaving a burst after each bad bit, unless others
+     *  are set. */
+    public static final double DEFAULT_BAD_TO_GOOD = 0.1;
+
+    /** The probability of flipping a good bit, unless others are set. */
+    public static final double DEFAULT_GOOD_ERROR  = 1e-6;
+
+    /** The probability of flipping a bad bit, unless others are set. */
+    public static final double DEFAULT_BAD_ERROR   = 0.5;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class GilbertElliottMedium
+// =============================================================================
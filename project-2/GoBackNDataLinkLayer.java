@@ -0,0 +1,421 @@
+// =============================================================================
+/**
+ * @file   GoBackNDataLinkLayer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ *
+ * A data link layer that uses the framing and checksum of
+ * <code>PARDataLinkLayer</code>, but that keeps a window of frames in flight
+ * rather than stopping to wait after each one.  Each frame carries a type and
+ * a sequence number.  The receiver accepts only the next frame in sequence and
+ * acknowledges cumulatively with the sequence number that it next expects.  A
+ * single timer covers the oldest unacknowledged frame; when it expires, every
+ * frame in the window is sent again (Go-Back-N).
+ */
+public class GoBackNDataLinkLayer extends PARDataLinkLayer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     */
+    public GoBackNDataLinkLayer () {
+
+	window       = new Frame[SEQUENCE_SPACE];
+	windowSize   = DEFAULT_WINDOW_SIZE;
+	sentAt       = new long[SEQUENCE_SPACE];
+	wasResent    = new boolean[SEQUENCE_SPACE];
+	controlData  = new Frame(HEADER_SIZE);
+	controlFrame = new Frame();
+	resendFrame  = new Frame();
+
+    } // GoBackNDataLinkLayer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the number of frames that may be sent without yet being
+     * acknowledged.
+     *
+     * @param windowSize The window size, from 1 to <code>MAX_WINDOW_SIZE</code>.
+     * @throws RuntimeException if the window size is out of range.
+     */
+    public void setWindowSize (int windowSize) {
+
+	if (windowSize < 1 || windowSize > MAX_WINDOW_SIZE) {
+	    throw new RuntimeException("Invalid window size " + windowSize);
+	}
+
+	this.windowSize = windowSize;
+
+    } // setWindowSize ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Refuse piggybacking, as this layer sends its own acknowledgments and
+     * never carries them on data frames.
+     *
+     * @param piggybacking Must be <code>false</code>.
+     * @throws RuntimeException if piggybacking is requested.
+     */
+    public void setPiggybacking (boolean piggybacking) {
+
+	if (piggybacking) {
+	    throw new RuntimeException("Go-Back-N does not piggyback acknowledgments");
+	}
+
+    } // setPiggybacking ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Refuse an acknowledgment delay, as this layer never holds an
+     * acknowledgment back.
+     *
+     * @param millis Ignored.
+     * @throws RuntimeException always.
+     */
+    public void setAckDelay (long millis) {
+
+	throw new RuntimeException("Go-Back-N does not delay acknowledgments");
+
+    } // setAckDelay ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Prefix the data with a header holding the frame type and the next
+     * sequence number, then frame it.  A copy of the data is held in the window
+     * until it is acknowledged.
+     *
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The empty frame into which to place the complete frame.
+     */
+    protected void createFrame (Frame data, Frame framed) {
+
+	Frame copy = framePool.acquire();
+	copy.add(data);
+	window[nextSequence]    = copy;
+	sentAt[nextSequence]    = now();
+	wasResent[nextSequence] = false;
+
+	frameWithHeader(DATA_TYPE, nextSequence, copy, framed);
+	nextSequence = (nextSequence + 1) % SEQUENCE_SPACE;
+
+    } // createFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Extract the next complete, undamaged frame, if any.  Damaged frames are
+     * simply dropped; the sender's timer recovers from them.
+     *
+     * @param  data The frame into which to place the extracted frame, header
+     *              included.
+     * @return <code>true</code> if the buffer contained a complete, undamaged
+     *         frame with a header; <code>false</code> otherwise.
+     */
+    protected boolean processFrame (Frame data) {
+
+	return extract(data) == FRAME_INTACT && data.length() >= HEADER_SIZE;
+
+    } // processFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A new frame may be sent only while the window has room.
+     *
+     * @return <code>true</code> if a frame may be sent now.
+     */
+    protected boolean readyToSend () {
+
+	return outstanding() < windowSize;
+
+    } // readyToSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * After sending a frame, start the timer if it is the only one in flight.
+     *
+     * @param frame The framed data that was transmitted.
+     */
+    protected void finishFrameSend (Frame frame) {
+
+	if (outstanding() == 1) {
+	    restartTimer();
+	}
+
+    } // finishFrameSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * After receiving a frame, either slide the window forward for an
+     * acknowledgment, or, for data, deliver it if it is the next in sequence
+     * and acknowledge cumulatively.
+     *
+     * @param frame The frame received, header included.
+     */
+    protected void finishFrameReceive (Frame frame) {
+
+	byte type     = frame.get(0);
+	int  sequence = frame.get(1) & 0xff;
+
+	if (type == ACK_TYPE) {
+	    acknowledge(sequence);
+	} else if (type == DATA_TYPE) {
+
+	    // Deliver only the frame expected next; drop any other.
+	    if (sequence == expectedSequence) {
+		frame.discard(HEADER_SIZE);
+		client.receive(frame.array(), frame.offset(), frame.length());
+		expectedSequence = (expectedSequence + 1) % SEQUENCE_SPACE;
+	    }
+
+	    // Acknowledge everything received in order so far.
+	    sendAck(expectedSequence);
+
+	}
+
+    } // finishFrameReceive ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * If the timer has expired, send every unacknowledged frame again.
+     */
+    protected void checkTimeout () {
+
+	if (outstanding() == 0 || now() - timerDeadline < 0) {
+	    return;
+	}
+
+	if (debug) {
+	    System.out.println("GoBackNDataLinkLayer.checkTimeout(): resending");
+	}
+	recordFrame(window[baseSequence].length(), false);
+	retransmissionTimer.backoff();
+
+	for (int i = baseSequence;
+	     i != nextSequence;
+	     i = (i + 1) % SEQUENCE_SPACE) {
+
+	    wasResent[i] = true;
+	    resendFrame.clear();
+	    frameWithHeader(DATA_TYPE, i, window[i], resendFrame);
+	    transmit(resendFrame);
+
+	}
+	restartTimer();
+
+    } // checkTimeout ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of header bytes in a frame. */
+    protected int headerSize () {
+
+	return HEADER_SIZE;
+
+    } // headerSize ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Slide the window forward to a cumulative acknowledgment, releasing the
+     * acknowledged frames.  Acknowledgments that lie outside the window are
+     * ignored.
+     *
+     * @param next The sequence number that the receiver next expects.
+     */
+    private void acknowledge (int next) {
+
+	int acked = (next - baseSequence + SEQUENCE_SPACE) % SEQUENCE_SPACE;
+	if (acked == 0 || acked > outstanding()) {
+	    return;
+	}
+
+	// Time the round trip of the newest frame acknowledged, unless it was
+	// resent.
+	int newest = (next - 1 + SEQUENCE_SPACE) % SEQUENCE_SPACE;
+	if (!wasResent[newest]) {
+	    retransmissionTimer.sample(now() - sentAt[newest]);
+	} else {
+	    retransmissionTimer.progress();
+	}
+
+	while (baseSequence != next) {
+	    recordFrame(window[baseSequence].length(), true);
+	    dataDelivered(window[baseSequence].length());
+	    framePool.release(window[baseSequence]);
+	    window[baseSequence] = null;
+	    baseSequence = (baseSequence + 1) % SEQUENCE_SPACE;
+	}
+
+	// Time the new oldest frame, if there is one.
+	cancelDeadline(timerDeadline);
+	if (outstanding() > 0) {
+	    restartTimer();
+	}
+
+    } // acknowledge ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Immediately transmit an acknowledgment frame.
+     *
+     * @param next The sequence number that this receiver next expects.
+     */
+    private void sendAck (int next) {
+
+	controlData.clear();
+	controlFrame.clear();
+	frameWithHeader(ACK_TYPE, next, controlData, controlFrame);
+	transmit(controlFrame);
+
+    } // sendAck ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Frame data preceded by a header.
+     *
+     * @param type     The frame type.
+     * @param sequence The sequence number.
+     * @param data     The data to follow the header.
+     * @param framed   The frame to which to append the complete frame.
+     */
+    private void frameWithHeader (byte type, int sequence, Frame data,
+				  Frame framed) {
+
+	headerData.clear();
+	headerData.add(type);
+	headerData.add((byte)sequence);
+	headerData.add(data);
+	frame(headerData, framed);
+
+    } // frameWithHeader ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Start the timer anew for the oldest unacknowledged frame.
+     */
+    private void restartTimer () {
+
+	timerDeadline = now() + retransmissionTimer.timeout();
+	scheduleDeadline(timerDeadline);
+
+    } // restartTimer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of frames sent but not yet acknowledged. */
+    private int outstanding () {
+
+	return (nextSequence - baseSequence + SEQUENCE_SPACE) % SEQUENCE_SPACE;
+
+    } // outstanding ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The unacknowledged data, indexed by sequence number. */
+    private final Frame[] window;
+
+    /** The data of a control frame (empty apart from its header). */
+    private final Frame   controlData;
+
+    /** Space in which to frame control frames. */
+    private final Frame   controlFrame;
+
+    /** Space in which to frame resent data frames. */
+    private final Frame   resendFrame;
+
+    /** Space in which to assemble a header and its data. */
+    private final Frame   headerData = new Frame();
+
+    /** The number of frames that may be unacknowledged at once. */
+    private int           windowSize;
+
+    /** When each frame in the window was most recently sent. */
+    private final long[]  sentAt;
+
+    /** Which frames in the window have been sent more than once. */
+    private final boolean[] wasResent;
+
+    /** The sequence number of the oldest unacknowledged frame. */
+    private int           baseSequence     = 0;
+
+    /** The sequence number of the next frame to send. */
+    private int           nextSequence     = 0;
+
+    /** The sequence number of the next frame to deliver. */
+    private int           expectedSequence = 0;
+
+    /** When the oldest unacknowledged frame times out. */
+    private long          timerDeadline;
+
+    /** The type of a frame carrying data. */
+    private static final byte DATA_TYPE           = 0;
+
+    /** The type of a frame carrying a cumulative acknowledgment. */
+    private static final byte ACK_TYPE            = 1;
+
+    /** The bytes of header (type and sequence number) in every frame. */
+    private static final int  HEADER_SIZE         = 2;
+
+    /** The number of distinct sequence numbers. */
+    private static final int  SEQUENCE_SPACE      = 256;
+
+    /** The largest window for which sequence numbers remain unambiguous. */
+    public  static final int  MAX_WINDOW_SIZE     = SEQUENCE_SPACE - 1;
+
+    /** The window size used unless another is set. */
+    public  static final int  DEFAULT_WINDOW_SIZE = 16;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class GoBackNDataLinkLayer
+// =============================================================================
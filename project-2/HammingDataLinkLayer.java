@@ -0,0 +1,202 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * @file   HammingDataLinkLayer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ *
+ * A data link layer that corrects errors rather than only detecting them.  It
+ * frames and acknowledges as <code>PARDataLinkLayer</code> does, but encodes
+ * each half-byte of the data and checksum as an extended Hamming (8,4) code
+ * byte (SECDED: single error correction, double error detection).  A flipped
+ * bit in a code byte is corrected in place on receipt; only a frame with a
+ * double error, or with a checksum that still fails after correction, is
+ * treated as damaged and sent again.
+ *
+ * No code byte is a tag, nor is within one flipped bit of a tag, so the
+ * encoded data never needs escaping and a single error never breaks the
+ * framing.
+ */
+public class HammingDataLinkLayer extends PARDataLinkLayer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Encode the data and its checksum, one code byte per half-byte.
+     *
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The frame to which to append the encoded bytes.
+     */
+    protected void encode (Frame data, Frame framed) {
+
+	for (int i = 0; i < data.length(); i += 1) {
+	    encodeByte(data.get(i), framed);
+	}
+
+	long check = checksum.compute(data);
+	for (int i = checksum.size() - 1; i >= 0; i -= 1) {
+	    encodeByte((byte)(check >>> (i * Byte.SIZE)), framed);
+	}
+
+    } // encode ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Decode the code bytes in place, correcting any single error in each,
+     * and then verify the checksum.
+     *
+     * @param data The code bytes of a frame, replaced by the original data.
+     * @return <code>true</code> if the data is intact after correction;
+     *         <code>false</code> if the frame is damaged beyond repair.
+     */
+    protected boolean decode (Frame data) {
+
+	// Every byte is carried by two code bytes.
+	if (data.length() % 2 != 0) {
+	    return false;
+	}
+
+	int corrected = 0;
+	for (int i = 0; i < data.length(); i += 2) {
+
+	    byte high = DECODE[data.get(i)     & 0xff];
+	    byte low  = DECODE[data.get(i + 1) & 0xff];
+	    if (high == UNCORRECTABLE || low == UNCORRECTABLE) {
+		if (debug) {
+		    System.out.println("HammingDataLinkLayer.decode(): " +
+				       "uncorrectable error");
+		}
+		return false;
+	    }
+	    if (ENCODE[high] != data.get(i)) {
+		corrected += 1;
+	    }
+	    if (ENCODE[low] != data.get(i + 1)) {
+		corrected += 1;
+	    }
+
+	    data.set(i / 2, (byte)((high << 4) | low));
+
+	}
+	data.truncate(data.length() / 2);
+
+	if (debug && corrected > 0) {
+	    System.out.printf("HammingDataLinkLayer.decode(): corrected %d\n",
+			      corrected);
+	}
+
+	return checksum.check(data);
+
+    } // decode ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append the two code bytes for a byte, high half first.
+     *
+     * @param b      The byte to encode.
+     * @param framed The frame being built.
+     */
+    private void encodeByte (byte b, Frame framed) {
+
+	addEscaped(ENCODE[(b >>> 4) & 0xf], framed);
+	addEscaped(ENCODE[b & 0xf], framed);
+
+    } // encodeByte ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the code byte for a half-byte: the four data bits in the high
+     * half, then three Hamming parity bits, then a parity bit over the other
+     * seven.
+     *
+     * @param nibble The half-byte to encode.
+     * @return the code byte.
+     */
+    private static byte codeOf (int nibble) {
+
+	int d0 = nibble & 1;
+	int d1 = (nibble >>> 1) & 1;
+	int d2 = (nibble >>> 2) & 1;
+	int d3 = (nibble >>> 3) & 1;
+	int p1 = d0 ^ d1 ^ d3;
+	int p2 = d0 ^ d2 ^ d3;
+	int p3 = d1 ^ d2 ^ d3;
+
+	int code = (nibble << 4) | (p1 << 3) | (p2 << 2) | (p3 << 1);
+	code |= Integer.bitCount(code) & 1;
+
+	return (byte)code;
+
+    } // codeOf ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Build the table decoding every possible received byte: a code byte, or
+     * one a single flipped bit away from one, decodes to its half-byte; any
+     * other is uncorrectable.
+     *
+     * @return the decoding table.
+     */
+    private static byte[] buildDecodeTable () {
+
+	byte[] table = new byte[256];
+	Arrays.fill(table, UNCORRECTABLE);
+	for (int nibble = 0; nibble < ENCODE.length; nibble += 1) {
+	    int code = ENCODE[nibble] & 0xff;
+	    table[code] = (byte)nibble;
+	    for (int bit = 0; bit < Byte.SIZE; bit += 1) {
+		table[code ^ (1 << bit)] = (byte)nibble;
+	    }
+	}
+
+	return table;
+
+    } // buildDecodeTable ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The decoding of a byte with two or more errors. */
+    private static final byte   UNCORRECTABLE = -1;
+
+    /** The code byte for each half-byte. */
+    private static final byte[] ENCODE = new byte[16];
+    static {
+	for (int nibble = 0; nibble < ENCODE.length; nibble += 1) {
+	    ENCODE[nibble] = codeOf(nibble);
+	}
+    }
+
+    /** The half-byte for each received byte, or <code>UNCORRECTABLE</code>. */
+    private static final byte[] DECODE = buildDecodeTable();
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class HammingDataLinkLayer
+// =============================================================================
@@ -1,8 +1,13 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.Queue;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 // =============================================================================
 
 
@@ -10,6 +15,16 @@ import java.util.LinkedList;
 // =============================================================================
 /**
  * A single host, comprising a single network stack, connected to a medium.
+ * Received bytes are buffered until the client retrieves them, either by
+ * polling, by waiting for some number to arrive, or through a stream or
+ * channel.  Any thread may retrieve them.
+ *
+ * A host on a switched network (see <code>Switch</code>) is given an
+ * address, and sends with <code>sendTo()</code>, which places each message
+ * behind an address header: the destination address, the source address, and
+ * the length of the message (two bytes, most significant first).  Such a host
+ * strips the headers from what it receives, and, like a network interface,
+ * keeps only the messages addressed to it or broadcast.
  *
  * @file   Host.java
  * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
@@ -35,13 +50,57 @@ public class Host implements Runnable {
 						  this.physicalLayer,
 						  this);
 
-	this.buffer = new LinkedList<Byte>();
+	this.buffer = new ByteRingBuffer(INITIAL_BUFFER_CAPACITY);
 
     } // Host ()
     // =========================================================================
 
 
 
+    // =========================================================================
+    /**
+     * Create a host whose data link layer detects damaged frames with the
+     * given checksum.
+     *
+     * @param medium            The medium to which to attach.
+     * @param dataLinkLayerType The type of data link layer to use.
+     * @param checksumType      The type of <code>FrameChecksum</code> to use.
+     */
+    public Host (Medium medium, String dataLinkLayerType, String checksumType) {
+
+	this(medium, dataLinkLayerType);
+	this.dataLinkLayer.setChecksum(FrameChecksum.create(checksumType));
+
+    } // Host ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the data link layer of this host, so that its settings (e.g.,
+     *         frame size) may be adjusted before the host is run.
+     */
+    public DataLinkLayer dataLinkLayer () {
+
+	return dataLinkLayer;
+
+    } // dataLinkLayer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the physical layer of this host, by which it is attached. */
+    public PhysicalLayer physicalLayer () {
+
+	return physicalLayer;
+
+    } // physicalLayer ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Begin this host as an independent thread.  The event loop in
@@ -60,10 +119,13 @@ public class Host implements Runnable {
     // =========================================================================
     /**
      * End the event loop in the data link layer, thus ending this hosts' thread.
+     * Bytes already received may still be retrieved, but no more will arrive,
+     * so readers waiting for more are released.
      */
     public void stop () {
 
         dataLinkLayer.stop();
+	buffer.close();
         
     } // stop ()
     // =========================================================================
@@ -72,7 +134,8 @@ public class Host implements Runnable {
 
     // =========================================================================
     /**
-     * Send a sequence of bytes.
+     * Send a sequence of bytes, waiting while the data link layer's send
+     * buffer is full.  The array must not be modified afterwards.
      *
      * @param data The sequence of bytes to send.
      */
@@ -85,6 +148,113 @@ public class Host implements Runnable {
 
 
 
+    // =========================================================================
+    /**
+     * Give this host an address, so that it sends and receives addressed
+     * messages.
+     *
+     * @param address The address, from 0 to <code>BROADCAST - 1</code>.
+     * @throws RuntimeException if the address is out of range.
+     */
+    public void setAddress (int address) {
+
+	if (address < 0 || address >= BROADCAST) {
+	    throw new RuntimeException("Invalid host address " + address);
+	}
+
+	this.address = address;
+
+    } // setAddress ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return this host's address, or <code>NO_ADDRESS</code> if none. */
+    public int address () {
+
+	return address;
+
+    } // address ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a sequence of bytes to another host on a switched network, as
+     * messages of at most <code>MAX_MESSAGE_SIZE</code> bytes, each behind an
+     * address header.  Waits while the send buffer is full.
+     *
+     * @param destination The address of the receiving host, or
+     *                    <code>BROADCAST</code>.
+     * @param data        The sequence of bytes to send.
+     * @throws RuntimeException if this host has no address, or the
+     *                          destination is out of range.
+     */
+    public void sendTo (int destination, byte[] data) {
+
+	if (address == NO_ADDRESS) {
+	    throw new RuntimeException("Host has no address");
+	}
+	if (destination < 0 || destination > BROADCAST) {
+	    throw new RuntimeException("Invalid destination " + destination);
+	}
+
+	int offset = 0;
+	do {
+	    int    length  = Math.min(data.length - offset, MAX_MESSAGE_SIZE);
+	    byte[] message = new byte[ADDRESS_HEADER_SIZE + length];
+	    message[0] = (byte)destination;
+	    message[1] = (byte)address;
+	    message[2] = (byte)(length >>> Byte.SIZE);
+	    message[3] = (byte)length;
+	    System.arraycopy(data, offset, message, ADDRESS_HEADER_SIZE, length);
+	    dataLinkLayer.send(message);
+	    offset += length;
+	} while (offset < data.length);
+
+    } // sendTo ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send as much of a sequence of bytes as there is room for, without
+     * waiting.  The bytes accepted must not be modified afterwards.
+     *
+     * @param data The sequence of bytes to send.
+     * @return the number of leading bytes accepted for sending.
+     */
+    public int trySend (byte[] data) {
+
+	return dataLinkLayer.trySend(data);
+
+    } // trySend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a sequence of bytes, waiting while the send buffer is full, and
+     * learn when they have arrived.  The array must not be modified
+     * afterwards.
+     *
+     * @param data The sequence of bytes to send.
+     * @return a future completed once the data has been acknowledged (or, if
+     *         the data link layer does not acknowledge data, transmitted).
+     */
+    public CompletableFuture<Void> sendAsync (byte[] data) {
+
+	return dataLinkLayer.sendAsync(data);
+
+    } // sendAsync ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Receive bytes from the lower layer.  Buffer those until they are
@@ -94,9 +264,58 @@ public class Host implements Runnable {
      */
     public void receive (byte[] data) {
 
-	// Add the bytes into the buffer.
-	for (int i = 0; i < data.length; i += 1) {
-	    buffer.add(data[i]);
+	receive(data, 0, data.length);
+	
+    } // receive ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Receive a run of bytes from the lower layer.  Buffer those until they are
+     * retrieved.  The caller may reuse the array once this method returns.
+     *
+     * @param data   The array holding the data received.
+     * @param offset The index of the first byte received.
+     * @param length The number of bytes received.
+     */
+    public void receive (byte[] data, int offset, int length) {
+
+	if (address == NO_ADDRESS) {
+	    buffer.write(data, offset, length);
+	    return;
+	}
+
+	// Messages may be split across any number of calls, so parse them
+	// incrementally: first each header, then its message.
+	int end = offset + length;
+	while (offset < end) {
+	    if (headerFill < ADDRESS_HEADER_SIZE) {
+		header[headerFill] = data[offset];
+		headerFill += 1;
+		offset     += 1;
+		if (headerFill == ADDRESS_HEADER_SIZE) {
+		    int destination  = header[0] & 0xff;
+		    messageRemaining = ((header[2] & 0xff) << Byte.SIZE) |
+			               (header[3] & 0xff);
+		    acceptingMessage = (destination == address ||
+					destination == BROADCAST);
+		    if (messageRemaining == 0) {
+			headerFill = 0;
+		    }
+		}
+	    } else {
+		int count = Math.min(end - offset, messageRemaining);
+		if (acceptingMessage) {
+		    buffer.write(data, offset, count);
+		}
+		offset           += count;
+		messageRemaining -= count;
+		if (messageRemaining == 0) {
+		    headerFill = 0;
+		}
+	    }
 	}
 	
     } // receive ()
@@ -106,23 +325,137 @@ public class Host implements Runnable {
 
     // =========================================================================
     /**
-     * Retrieve and return any bytes that have been received and buffered.
+     * Retrieve and return any bytes that have been received and buffered,
+     * without waiting.
      *
      * @return the buffered bytes.
      */
     public byte[] retrieve () {
 
-	// Remove the bytes from the buffer, adding them to a newly formed array
-	// to be returned.
-	byte[] received = new byte[buffer.size()];
-	for (int i = 0; i < received.length; i += 1) {
-	    received[i] = buffer.remove();
+	return buffer.readAll();
+	
+    } // retrieve ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Wait until at least a number of bytes has been received and buffered,
+     * or until a timeout passes or the host is stopped, and then retrieve and
+     * return every buffered byte.
+     *
+     * @param minBytes The number of bytes to wait for.
+     * @param timeout  The longest time to wait.
+     * @return the buffered bytes, which are fewer than requested if the wait
+     *         ended early.
+     * @throws RuntimeException if interrupted while waiting.
+     */
+    public byte[] retrieve (int minBytes, Duration timeout) {
+
+	long nanos;
+	try {
+	    nanos = timeout.toNanos();
+	} catch (ArithmeticException e) {
+	    nanos = Long.MAX_VALUE;
 	}
 
-	return received;
-	
+	try {
+	    buffer.await(minBytes, nanos);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new RuntimeException("Interrupted while retrieving");
+	}
+
+	return buffer.readAll();
+
     } // retrieve ()
     // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of received bytes buffered, without waiting. */
+    public int available () {
+
+	return buffer.available();
+
+    } // available ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return a stream of the received bytes.  Reading waits for at least one
+     *         byte to arrive, and reaches the end of the stream once the host
+     *         is stopped and its buffered bytes are read.  The stream shares
+     *         the buffer with <code>retrieve()</code>.
+     */
+    public InputStream inputStream () {
+
+	return inputStream;
+
+    } // inputStream ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return a channel of the received bytes, behaving as
+     *         <code>inputStream()</code> does.
+     */
+    public ReadableByteChannel channel () {
+
+	return Channels.newChannel(inputStream);
+
+    } // channel ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A view of the receive buffer as a stream.
+     */
+    private class ReceiveStream extends InputStream {
+
+	@Override
+	public int read () throws IOException {
+
+	    byte[] one = new byte[1];
+	    return (read(one, 0, 1) < 0) ? -1 : (one[0] & 0xff);
+
+	}
+
+	@Override
+	public int read (byte[] b, int off, int len) throws IOException {
+
+	    if (len == 0) {
+		return 0;
+	    }
+	    try {
+		if (!buffer.await(1, Long.MAX_VALUE)) {
+		    return -1;
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new InterruptedIOException("Interrupted while reading");
+	    }
+	    return buffer.read(b, off, len);
+
+	}
+
+	@Override
+	public int available () {
+
+	    return buffer.available();
+
+	}
+
+    } // class ReceiveStream
+    // =========================================================================
     
 
 
@@ -130,16 +463,50 @@ public class Host implements Runnable {
     // DATA MEMBERS
 
     /** The medium to which this host is connect. */
-    private Medium        medium;
+    private Medium         medium;
 
     /** The physical layer in this host's network stack. */
-    private PhysicalLayer physicalLayer;
+    private PhysicalLayer  physicalLayer;
 
     /** The data link layer in this host's network stack. */
-    private DataLinkLayer dataLinkLayer;
+    private DataLinkLayer  dataLinkLayer;
 
     /** The buffered bytes received via the network stack. */
-    private Queue<Byte>   buffer;
+    private ByteRingBuffer buffer;
+
+    /** This host's address, or <code>NO_ADDRESS</code> if it has none. */
+    private int            address          = NO_ADDRESS;
+
+    /** The address header being received. */
+    private final byte[]   header           = new byte[ADDRESS_HEADER_SIZE];
+
+    /** The number of bytes of the address header received so far. */
+    private int            headerFill       = 0;
+
+    /** The number of bytes of the current message yet to be received. */
+    private int            messageRemaining = 0;
+
+    /** Whether the current message is addressed to this host. */
+    private boolean        acceptingMessage = false;
+
+    /** The stream view of the buffered bytes. */
+    private final InputStream inputStream = new ReceiveStream();
+
+    /** The number of received bytes that may be buffered before the buffer
+     *  must grow. */
+    private static final int INITIAL_BUFFER_CAPACITY = 4096;
+
+    /** The address of no host, for a host that has none. */
+    public static final int NO_ADDRESS          = -1;
+
+    /** The destination address of a message for every host. */
+    public static final int BROADCAST           = 0xff;
+
+    /** The number of bytes in an address header. */
+    public static final int ADDRESS_HEADER_SIZE = 4;
+
+    /** The most bytes that a message may carry. */
+    public static final int MAX_MESSAGE_SIZE    = 0xffff;
 
     /** Whether to emit debugging information. */
     private static final boolean debug = false;
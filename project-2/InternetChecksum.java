@@ -0,0 +1,62 @@
+// =============================================================================
+/**
+ * A frame checksum that is the Internet checksum (RFC 1071): the one's
+ * complement of the one's complement sum of the data as 16-bit words.
+ *
+ * @file   InternetChecksum.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class InternetChecksum extends FrameChecksum {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes that the check value occupies. */
+    public int size () {
+
+	return 2;
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the Internet checksum of a run of bytes.  An odd final byte is
+     * treated as though followed by a zero byte.
+     *
+     * @param data The array holding the bytes.
+     * @param off  The index of the first byte.
+     * @param len  The number of bytes.
+     * @return the checksum.
+     */
+    public long compute (byte[] data, int off, int len) {
+
+	// Sum the big-endian 16-bit words, deferring the carries.
+	long sum = 0;
+	int  end = off + len;
+	for (; off + 1 < end; off += 2) {
+	    sum += ((data[off] & 0xff) << 8) | (data[off + 1] & 0xff);
+	}
+	if (off < end) {
+	    sum += (data[off] & 0xff) << 8;
+	}
+
+	// Fold the carries back in.
+	while ((sum >>> 16) != 0) {
+	    sum = (sum & 0xffff) + (sum >>> 16);
+	}
+
+	return ~sum & 0xffff;
+
+    } // compute ()
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class InternetChecksum
+// =============================================================================
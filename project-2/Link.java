@@ -0,0 +1,148 @@
+// =============================================================================
+/**
+ * A point-to-point medium joining exactly two clients, with a limited
+ * bandwidth and a propagation delay (see <code>Medium.setTiming()</code>).
+ * Each word sent leaves its sender only once the words sent before it in that
+ * direction have been serialized onto the link at its bandwidth, and arrives
+ * a propagation delay later.
+ *
+ * Each link delivers its words on a timing wheel of its own, so independent
+ * links progress in parallel.  Within a discrete-event simulation, it instead
+ * schedules each delivery as an event, and senders never wait.
+ *
+ * @file   Link.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class Link extends Medium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a link with the default bandwidth and propagation delay.
+     */
+    public Link () {
+
+	this(DEFAULT_BANDWIDTH, DEFAULT_DELAY);
+
+    } // Link ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a link.
+     *
+     * @param bandwidth The number of bits per second that the link carries in
+     *                  each direction.
+     * @param delay     The propagation delay, in nanoseconds.
+     * @throws RuntimeException if the bandwidth is not positive or the delay
+     *                          is negative.
+     */
+    public Link (long bandwidth, long delay) {
+
+	setTiming(bandwidth, delay, UNLIMITED);
+
+    } // Link ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Register one of the link's two clients.
+     *
+     * @param client The physical layer of a stack to connect to this link.
+     * @return the client's port, 0 or 1.
+     * @throws RuntimeException if the link already has two other clients.
+     */
+    public synchronized int register (PhysicalLayer client) {
+
+	if (clients.length == 2 && clients[0] != client &&
+	    clients[1] != client) {
+	    throw new RuntimeException("A link joins only two clients");
+	}
+
+	return super.register(client);
+
+    } // register ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit from one end of the link to the other.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit    The value to be sent.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          link.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	transmitBlock(sender, bit ? 1 : 0, 1);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a word of packed bits from one end of the link to the other, to
+     * arrive once it has been serialized and has propagated.  Bits sent
+     * before the other end is attached are lost.
+     *
+     * @param sender The client physical layer sending the bits.
+     * @param bits   The packed bit values to send, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code> to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          link.
+     */
+    public void transmitBlock (PhysicalLayer sender, long bits, int count) {
+
+	// Only registered clients may send.
+	if (!isRegistered(sender)) {
+	    throw new RuntimeException("Unregistered sender on the link");
+	}
+	PhysicalLayer[] ends = clients;
+	if (ends.length < 2) {
+	    return;
+	}
+	PhysicalLayer receiver = ends[1 - sender.port()];
+
+	// Serialize the word behind those before it in this direction, and
+	// deliver it once it has propagated.
+	deliver(sender, receiver, bits, count, depart(sender, count));
+
+    } // transmitBlock ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The bandwidth unless another is given: 100 Mbit/s. */
+    public static final long  DEFAULT_BANDWIDTH = 100_000_000L;
+
+    /** The propagation delay unless another is given: 5 microseconds (about
+     *  a kilometre of cable). */
+    public static final long  DEFAULT_DELAY     = 5_000L;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Link
+// =============================================================================
@@ -1,20 +1,17 @@
-// =============================================================================
-// IMPORTS
-
-import java.util.Iterator;
-// =============================================================================
-
-
-
 // =============================================================================
 /**
  * A medium that occassionally flips a bit.
  *
+ * Flips are seeded (see <code>RandomMedium</code>).  By default the medium
+ * skips ahead: it draws the number of bits until the next flip from the
+ * geometric distribution, rather than rolling a die for every bit, so that at
+ * low error rates generating noise costs per error, not per bit.
+ *
  * @file   LowNoiseMedium.java
  * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
  * @date   September 2018, original September 2004
  */
-public class LowNoiseMedium extends Medium {
+public class LowNoiseMedium extends RandomMedium {
 // =============================================================================
 
 
@@ -25,6 +22,73 @@ public class LowNoiseMedium extends Medium {
 
 
 
+    // =========================================================================
+    /**
+     * Create a medium with the default error probability and an arbitrary
+     * seed.
+     */
+    public LowNoiseMedium () {
+
+	setErrorProbability(DEFAULT_ERROR_PROBABILITY);
+
+    } // LowNoiseMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium.
+     *
+     * @param errorProbability The probability that each bit is flipped.
+     * @param seed             The seed from which all flips are drawn.
+     * @throws RuntimeException if the probability is not from 0 to 1.
+     */
+    public LowNoiseMedium (double errorProbability, long seed) {
+
+	setErrorProbability(errorProbability);
+	setSeed(seed);
+
+    } // LowNoiseMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the probability that each bit is flipped.  Set it before any client
+     * transmits.
+     *
+     * @param errorProbability The probability, from 0 to 1.
+     * @throws RuntimeException if the probability is out of range.
+     */
+    public synchronized void setErrorProbability (double errorProbability) {
+
+	this.logComplement    = logComplement(errorProbability);
+	this.errorProbability = errorProbability;
+	resetNoise();
+
+    } // setErrorProbability ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Choose whether to skip ahead to each flip, or to roll for every bit.
+     * Both give each bit the same chance of flipping.
+     *
+     * @param skipAhead <code>true</code> to skip ahead.
+     */
+    public void setSkipAhead (boolean skipAhead) {
+
+	this.skipAhead = skipAhead;
+
+    } // setSkipAhead ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Send a bit from one client to the other clients.  With some probability,
@@ -39,31 +103,85 @@ public class LowNoiseMedium extends Medium {
      */
     public void transmit (PhysicalLayer sender, boolean bit) {
 
+	transmitBlock(sender, bit ? 1 : 0, 1);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a word of packed bits from one client to the other clients.  Each
+     * bit is flipped with the same probability as in <code>transmit()</code>,
+     * and, as there, flips accumulate as the word passes each client.
+     *
+     * @param sender The client physical layer sending the bits.
+     * @param bits   The packed bit values to send, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code> to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmitBlock (PhysicalLayer sender, long bits, int count) {
+
 	// Only registered clients may send.
-	if (!clients.contains(sender)) {
+	if (!isRegistered(sender)) {
 	    throw new RuntimeException("Unregistered sender on the medium");
 	}
-	
-	// Deliver the bit to each client that is not the sender.
-	Iterator<PhysicalLayer> clientIterator = clients.iterator();
-	while (clientIterator.hasNext()) {
-	    
-	    // With low probability, flip this bit.
-	    if (Math.random() < errorProbability) {
-		if (debug) {
-		    System.out.println("LowNoiseMedium.transmit(): Flipped bit!");
-		}
-		bit = !bit;
+	Noise noise   = noise(sender);
+	long  arrival = depart(sender, count);
+
+	// Deliver the word to each client that is not the sender, in the
+	// receiver's lane for this sender, when it arrives.
+	for (PhysicalLayer receiver : clients) {
+
+	    // With low probability, flip each bit.
+	    long flips = skipAhead
+		? skipToFlips(noise, logComplement, count, 0, count)
+		: rollFlips(noise, count);
+	    if (debug && flips != 0) {
+		System.out.println("LowNoiseMedium.transmitBlock(): Flipped " +
+				   Long.bitCount(flips) + " bits!");
 	    }
+	    bits ^= flips;
 
-	    PhysicalLayer receiver = clientIterator.next();
 	    if (receiver != sender) {
-		receiver.receive(bit);
+		deliver(sender, receiver, bits, count, arrival);
 	    }
 
 	}
 
-    } // transmit ()
+    } // transmitBlock ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Choose the bits of a word to flip by rolling for each one.
+     *
+     * @param noise The sender's generator.
+     * @param count The number of bits in the word.
+     * @return a mask of the bits to flip.
+     */
+    private long rollFlips (Noise noise, int count) {
+
+	long flips = 0;
+	for (int i = 0; i < count; i += 1) {
+	    if (noise.random.nextDouble() < errorProbability) {
+		flips |= 1L << i;
+	    }
+	}
+
+	return flips;
+
+    } // rollFlips ()
     // =========================================================================
 
 
@@ -72,7 +190,16 @@ public class LowNoiseMedium extends Medium {
     // DATA MEMBERS
 
     // The probablity that a bit will flip.
-    private static final double errorProbability = 0.001;
+    private double            errorProbability;
+
+    /** The natural logarithm of the probability that a bit does not flip. */
+    private double            logComplement;
+
+    /** Whether to skip ahead to each flip rather than roll for every bit. */
+    private volatile boolean  skipAhead = true;
+
+    /** The probability that a bit will flip, unless another is set. */
+    public static final double DEFAULT_ERROR_PROBABILITY = 0.001;
     // =========================================================================
 
 
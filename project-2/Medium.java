@@ -1,9 +1,9 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 // =============================================================================
@@ -14,6 +14,19 @@ import java.lang.reflect.InvocationTargetException;
 /**
  * A medium carries bits from one physical layer to others.
  *
+ * Each client is assigned a port, its index in an array of clients that is
+ * copied whenever a client registers.  Transmitting threads thus read the
+ * registry without locking, and check a sender by its port in constant time,
+ * however many clients are attached.
+ *
+ * By default a medium delivers each bit the instant that it is sent.  Given a
+ * bit rate, a propagation delay and a queue capacity (see
+ * <code>setTiming()</code>), it instead serializes each sender's bits behind
+ * those it sent before, at the bit rate, and delivers them a propagation
+ * delay after they have been serialized, dropping those that find the
+ * sender's queue full.  Deliveries are scheduled as events in a simulation,
+ * and on a timing wheel (see <code>TimingWheel</code>) in real time.
+ *
  * @file   Medium.java
  * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
  * @date   September 2018, original September 2004
@@ -70,7 +83,7 @@ public abstract class Medium {
     // =========================================================================
     public Medium () {
 
-	clients = new LinkedList<PhysicalLayer>();
+	clients = new PhysicalLayer[0];
 
     } // Medium ()
     // =========================================================================
@@ -79,23 +92,55 @@ public abstract class Medium {
 
     // =========================================================================
     /**
-     * Register the given client as connected to the medium.  If the client is
-     * already registered, do nothing (no multiple registrations).
+     * Register the given client as connected to the medium, assigning it a
+     * port.  If the client is already registered, do nothing (no multiple
+     * registrations).
      *
      * @param client The physical layer of a stack to connect to this medium.
+     * @return the client's port.
      */
-    public void register (PhysicalLayer client) {
+    public synchronized int register (PhysicalLayer client) {
 
 	// Only add this client if it is not already registered.
-	if (!clients.contains(client)) {
-	    clients.add(client);
+	for (int port = 0; port < clients.length; port += 1) {
+	    if (clients[port] == client) {
+		return port;
+	    }
 	}
 
+	PhysicalLayer[] larger = Arrays.copyOf(clients, clients.length + 1);
+	larger[clients.length] = client;
+	clients  = larger;
+	nextFree = Arrays.copyOf(nextFree, clients.length);
+	carry    = Arrays.copyOf(carry, clients.length);
+
+	return clients.length - 1;
+
     } // register ()
     // =========================================================================
 
 
 
+    // =========================================================================
+    /**
+     * Determine whether a client is registered with this medium, by its port.
+     *
+     * @param client The physical layer to check.
+     * @return <code>true</code> if it is registered.
+     */
+    protected boolean isRegistered (PhysicalLayer client) {
+
+	PhysicalLayer[] registered = clients;
+	int             port       = client.port();
+
+	return port >= 0 && port < registered.length &&
+	       registered[port] == client;
+
+    } // isRegistered ()
+    // =========================================================================
+
+
+
     // =========================================================================
     // Send a bit from one physical layer to others.
     abstract public void transmit (PhysicalLayer sender, boolean bit);
@@ -103,11 +148,464 @@ public abstract class Medium {
 
 
 
+    // =========================================================================
+    /**
+     * Send a word of packed bits from one physical layer to others.  The bits
+     * are right-aligned and are carried most significant first.  By default,
+     * each bit is passed to <code>transmit()</code> in turn; subclasses should
+     * override this method to carry the whole word at once.
+     *
+     * @param sender The client physical layer sending the bits.
+     * @param bits   The packed bit values to send.
+     * @param count  The number of low-order bits of <code>bits</code> to send.
+     */
+    public void transmitBlock (PhysicalLayer sender, long bits, int count) {
+
+	for (int i = count - 1; i >= 0; i -= 1) {
+	    transmit(sender, ((bits >>> i) & 1) != 0);
+	}
+
+    } // transmitBlock ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a run of bytes from one physical layer to others, each byte most
+     * significant bit first.  A data link layer sends each frame as one run.
+     * By default, the bytes are packed eight at a time into words, each passed
+     * to <code>transmitBlock()</code>; subclasses that treat frames as wholes
+     * (e.g., losing them) override this method.
+     *
+     * @param sender The client physical layer sending the bytes.
+     * @param src    The bytes to send.
+     * @param off    The index of the first byte to send.
+     * @param len    The number of bytes to send.
+     */
+    public void transmitBytes (PhysicalLayer sender,
+			       byte[]        src,
+			       int           off,
+			       int           len) {
+
+	int end = off + len;
+	while (off < end) {
+
+	    // Pack up to eight bytes into one word, and hand the whole word on.
+	    int count = Math.min(end - off, Long.BYTES);
+	    transmitBlock(sender, pack(src, off, count), count * Byte.SIZE);
+	    off += count;
+
+	}
+
+    } // transmitBytes ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Pack bytes into a word, the first most significant.
+     *
+     * @param src   The bytes.
+     * @param off   The index of the first byte to pack.
+     * @param count The number of bytes to pack, at most eight.
+     * @return the packed bytes, right-aligned.
+     */
+    protected static long pack (byte[] src, int off, int count) {
+
+	long word = 0;
+	for (int i = 0; i < count; i += 1) {
+	    word = (word << Byte.SIZE) | (src[off + i] & 0xff);
+	}
+
+	return word;
+
+    } // pack ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether another client is transmitting, as a client would
+     * sense the carrier before transmitting.  By default, clients do not share
+     * a carrier, so none is ever sensed.
+     *
+     * @param client The client sensing the carrier.
+     * @return <code>true</code> if another client is transmitting.
+     */
+    public boolean carrierSensed (PhysicalLayer client) {
+
+	return false;
+
+    } // carrierSensed ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether a client's transmission has collided with another
+     * since the client last asked, clearing the indication.  By default,
+     * transmissions never collide.
+     *
+     * @param client The client that is transmitting.
+     * @return <code>true</code> if it has collided.
+     */
+    public boolean collisionDetected (PhysicalLayer client) {
+
+	return false;
+
+    } // collisionDetected ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Draw a number at random on behalf of a client, e.g., to choose how long
+     * to back off after a collision.  By default, a medium draws nothing at
+     * random, and on it transmissions never collide.
+     *
+     * @param client The client drawing the number.
+     * @param bound  The number of values from which to draw, from 0.
+     * @return the number drawn.
+     * @throws RuntimeException always, by default.
+     */
+    public int draw (PhysicalLayer client, int bound) {
+
+	throw new RuntimeException("This medium draws nothing at random");
+
+    } // draw ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set how fast the medium carries bits, and how far.  Set it before any
+     * client transmits.
+     *
+     * @param bandwidth     The number of bits per second that each sender may
+     *                      send, or <code>UNLIMITED</code>.
+     * @param delay         The propagation delay, in nanoseconds.
+     * @param queueCapacity The number of bits that may wait to be serialized
+     *                      behind those being sent, beyond which more are
+     *                      dropped, or <code>UNLIMITED</code>.
+     * @throws RuntimeException if the bandwidth or queue capacity is not
+     *                          positive, or the delay is negative.
+     */
+    public void setTiming (long bandwidth, long delay, long queueCapacity) {
+
+	if (bandwidth <= 0 || delay < 0 || queueCapacity <= 0) {
+	    throw new RuntimeException("Invalid bandwidth " + bandwidth +
+				       ", delay " + delay +
+				       " or queue capacity " + queueCapacity);
+	}
+
+	this.bandwidth     = bandwidth;
+	this.delay         = delay;
+	this.queueCapacity = queueCapacity;
+	this.timed         = (bandwidth != UNLIMITED || delay != 0);
+
+    } // setTiming ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bits per second that each sender may send. */
+    public long bandwidth () {
+
+	return bandwidth;
+
+    } // bandwidth ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the propagation delay, in nanoseconds. */
+    public long delay () {
+
+	return delay;
+
+    } // delay ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bits that may wait behind those being sent. */
+    public long queueCapacity () {
+
+	return queueCapacity;
+
+    } // queueCapacity ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bits dropped so far for want of queue space. */
+    public long dropped () {
+
+	return dropped.get();
+
+    } // dropped ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run this medium within a discrete-event simulation, measuring time by
+     * its virtual clock.  Media that delay their bits schedule each delivery
+     * as an event rather than waiting for it.  Set it before any client
+     * transmits.
+     *
+     * @param simulator The simulation in which to run.
+     */
+    public void setSimulator (EventSimulator simulator) {
+
+	this.simulator = simulator;
+
+    } // setSimulator ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the current time, in nanoseconds: virtual, if this medium runs
+     *         within a simulation, and real otherwise.
+     */
+    protected long now () {
+
+	return (simulator != null) ? simulator.nanoTime() : System.nanoTime();
+
+    } // now ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Serialize a word behind those that the sender sent before it, and find
+     * when it arrives.  In real time, a sender that gets more than
+     * <code>MAX_BACKLOG</code> ahead of the medium waits.
+     *
+     * @param sender The client physical layer sending the word.
+     * @param count  The number of bits in the word.
+     * @return the time of the word's arrival, in nanoseconds;
+     *         <code>IMMEDIATE</code> if the medium is untimed; or
+     *         <code>DROPPED</code> if the sender's queue is full.
+     */
+    protected long depart (PhysicalLayer sender, int count) {
+
+	if (!timed) {
+	    return IMMEDIATE;
+	}
+
+	// The word starts once the sender's earlier words have been sent,
+	// unless too many wait before it.  Only the sender's thread touches
+	// its entries.
+	long[] free  = nextFree;
+	long[] part  = carry;
+	int    port  = sender.port();
+	long   now   = now();
+	long   start = Math.max(now, free[port]);
+	if (queueCapacity != UNLIMITED &&
+	    (double)(start - now) * bandwidth / NANOS_PER_SECOND + count >
+	    queueCapacity) {
+	    dropped.addAndGet(count);
+	    return DROPPED;
+	}
+	if (bandwidth == UNLIMITED) {
+	    free[port] = start;
+	} else {
+
+	    // Carry the fraction of a nanosecond that the word leaves over
+	    // to the next, so that whole nanoseconds lost to division do not
+	    // add up; a sender that has fallen idle starts afresh.
+	    long work  = count * NANOS_PER_SECOND +
+		         ((start == free[port]) ? part[port] : 0);
+	    free[port] = start + work / bandwidth;
+	    part[port] = work % bandwidth;
+
+	}
+
+	// Keep the sender from running too far ahead of the medium.
+	long ahead = start - now;
+	if (simulator == null && ahead > MAX_BACKLOG) {
+	    LockSupport.parkNanos(ahead - MAX_BACKLOG);
+	}
+
+	return free[port] + delay;
+
+    } // depart ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Find when a sender's latest word finishes going onto the medium, so
+     * that the sender may pace its words to the medium's bit rate.
+     *
+     * @param sender The client physical layer sending words.
+     * @return the time, in nanoseconds, at which the latest word found by
+     *         <code>depart()</code> will have been wholly sent; or
+     *         <code>now()</code> if it already has, or the medium is untimed.
+     */
+    public long sendingUntil (PhysicalLayer sender) {
+
+	long now   = now();
+	long until = nextFree[sender.port()];
+
+	return (timed && until - now > 0) ? until : now;
+
+    } // sendingUntil ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Deliver a word to a receiver when it arrives: at once, as an event in
+     * a simulation, or on the medium's timing wheel.  Within a simulation,
+     * the receiver's lane grows rather than waiting for room, since the
+     * simulation's thread is also the one that would make it: a sender may
+     * put any amount on a medium without a bit rate in one virtual instant.
+     *
+     * @param sender   The client physical layer that sent the word.
+     * @param receiver The client physical layer at which it arrives.
+     * @param bits     The packed bit values, right-aligned.
+     * @param count    The number of low-order bits of <code>bits</code>.
+     * @param arrival  The time of arrival, as found by <code>depart()</code>.
+     */
+    protected void deliver (PhysicalLayer sender,
+			    PhysicalLayer receiver,
+			    long          bits,
+			    int           count,
+			    long          arrival) {
+
+	if (arrival == DROPPED) {
+	    return;
+	} else if (simulator != null && arrival == IMMEDIATE) {
+	    receiver.receiveScheduled(sender, bits, count);
+	} else if (simulator != null) {
+	    simulator.schedule(receiver, arrival,
+			       () -> receiver.receiveScheduled(sender, bits,
+							       count));
+	} else if (arrival == IMMEDIATE) {
+	    receiver.receiveBlock(sender, bits, count);
+	} else {
+	    wheel().add(arrival,
+			() -> receiver.receiveBlock(sender, bits, count));
+	}
+
+    } // deliver ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a word of packed bits to each client that is not the sender, in
+     * the receiver's lane for this sender, when it arrives.
+     *
+     * @param sender The client physical layer that sent the bits.
+     * @param bits   The packed bit values, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code> to
+     *               deliver; nothing is delivered if 0.
+     */
+    protected void deliver (PhysicalLayer sender, long bits, int count) {
+
+	if (count == 0) {
+	    return;
+	}
+
+	long arrival = depart(sender, count);
+	for (PhysicalLayer receiver : clients) {
+	    if (receiver != sender) {
+		deliver(sender, receiver, bits, count, arrival);
+	    }
+	}
+
+    } // deliver ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the medium's timing wheel, started on first use. */
+    private synchronized TimingWheel wheel () {
+
+	if (wheel == null) {
+	    wheel = new TimingWheel(getClass().getName());
+	}
+
+	return wheel;
+
+    } // wheel ()
+    // =========================================================================
+
+
+
     // =========================================================================
     // DATA MEMBERS
 
-    /** The physical layer clients connected to the medium. */
-    protected Collection<PhysicalLayer> clients;    
+    /** The simulation in which this medium runs, if any. */
+    protected EventSimulator simulator;
+
+    /** The physical layer clients connected to the medium, indexed by port.
+     *  Replaced, never modified, when a client registers. */
+    protected volatile PhysicalLayer[] clients;
+
+    /** When each sender, by port, is next free to send.  Replaced when a
+     *  client registers. */
+    private volatile long[]  nextFree      = new long[0];
+
+    /** The fraction of a nanosecond by which each sender, by port, is free
+     *  later than <code>nextFree</code> says, in units of one over the
+     *  bandwidth.  Replaced when a client registers. */
+    private volatile long[]  carry         = new long[0];
+
+    /** The number of bits per second that each sender may send. */
+    private long             bandwidth     = UNLIMITED;
+
+    /** The propagation delay, in nanoseconds. */
+    private long             delay         = 0;
+
+    /** The number of bits that may wait behind those being sent. */
+    private long             queueCapacity = UNLIMITED;
+
+    /** Whether bits take any time to arrive. */
+    private boolean          timed         = false;
+
+    /** The number of bits dropped for want of queue space. */
+    private final AtomicLong dropped       = new AtomicLong();
+
+    /** The timing wheel delivering bits in real time, once needed. */
+    private TimingWheel      wheel;
+
+    /** The number of nanoseconds in a second. */
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /** How far, in nanoseconds, a sender may get ahead of the medium in real
+     *  time before it must wait. */
+    private static final long MAX_BACKLOG      = 10_000_000L;
+
+    /** The arrival of a word on an untimed medium. */
+    protected static final long IMMEDIATE      = Long.MIN_VALUE;
+
+    /** The arrival of a word dropped for want of queue space. */
+    protected static final long DROPPED        = Long.MIN_VALUE + 1;
+
+    /** A bandwidth or queue capacity without limit. */
+    public static final long    UNLIMITED      = Long.MAX_VALUE;
 
     /** Whether to emit debugging information. */
     protected static final boolean debug = false;
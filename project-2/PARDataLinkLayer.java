@@ -1,24 +1,37 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.ConcurrentLinkedQueue;
 // =============================================================================
 
 
 // =============================================================================
 /**
- * @file   ParityDataLinkLayer.java
+ * @file   PARDataLinkLayer.java
  * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
  * @date   February 2020
  *
  * A data link layer that uses start/stop tags and byte packing to frame the
- * data, and that performs error management with a parity bit.  It employs no
- * flow control; damaged frames are dropped.
+ * data, and that performs error management with a checksum (by default, a
+ * parity bit).  It employs positive acknowledgment with retransmission (PAR):
+ * each data frame must be acknowledged before the next is sent, and damaged
+ * frames prompt a resend request.
+ *
+ * Every frame begins with a header: a type and a sequence number, and, for a
+ * data frame, the length of its data.  An acknowledgment (ACK) or resend
+ * request (NAK) is only a header, and is sent on the priority path ahead of
+ * any buffered data.  The receiver delivers each sequence number once, but
+ * acknowledges duplicates, in case the earlier acknowledgment was lost.
+ *
+ * The timeout before a resend adapts to the observed round-trip time (see
+ * <code>RetransmissionTimer</code>), backing off after each expiry.
+ *
+ * With piggybacking enabled, an acknowledgment is instead held for a short
+ * delay, when data is waiting to leave in the other direction, so that its
+ * frame can carry it in its header; only if none does is a separate ACK sent.
+ * When no data frame can leave soon, the ACK is sent at once.
+ * Subclasses may reuse the framing through <code>frame()</code> and
+ * <code>extract()</code>.
  */
 public class PARDataLinkLayer extends DataLinkLayer {
 // =============================================================================
@@ -27,107 +40,316 @@ public class PARDataLinkLayer extends DataLinkLayer {
  
     // =========================================================================
     /**
-     * Embed a raw sequence of bytes into a framed sequence.
+     * Choose whether acknowledgments ride on outgoing data frames when they
+     * can.  Both ends of a link should agree, so that both send data promptly
+     * enough for the other's delayed acknowledgments.
      *
-     * @param  data The raw sequence of bytes to be framed.
-     * @return A complete frame.
+     * @param piggybacking <code>true</code> to piggyback acknowledgments.
      */
-    protected Queue<Byte> createFrame (Queue<Byte> data) {
-
-		// Calculate the parity.
-		byte parity = calculateParity(data);
-		
-		// Begin with the start tag.
-		Queue<Byte> framingData = new LinkedList<Byte>();
-		framingData.add(startTag);
-
-		//if waiting for previous frame acknowledgement
-    	if(waitingAck){
-    		//add data back to the start of sendbuffer
-    		Queue<Byte> temp = new ConcurrentLinkedQueue<Byte>();
-    		for(byte currentByte : data){
-    			temp.add(currentByte);
-    		}
-    		for(byte currentByte : sendBuffer){
-    			temp.add(currentByte);
-    		}
-    		sendBuffer = temp;
-
-    		Queue<Byte> emptyFrame = new LinkedList<Byte>();
-    		return emptyFrame;
-    	}
-
-		// Add each byte of original data.
-        for (byte currentByte : data) {
-
-
-		//System.out.printf("current byte %c\n", currentByte);
-	
-	    // If the current data byte is itself a metadata tag, then precede
-	    // it with an escape tag.
-	    if ((currentByte == startTag) ||
-		(currentByte == stopTag) ||
-		(currentByte == escapeTag)) {
-
-			framingData.add(escapeTag);
+    public void setPiggybacking (boolean piggybacking) {
 
-	    }
+	this.piggybacking = piggybacking;
+
+    } // setPiggybacking ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Fix the time to wait for an acknowledgment before resending, rather than
+     * adapting it to the observed round-trip time.
+     *
+     * @param millis The timeout, in milliseconds.
+     */
+    public void setTimeout (long millis) {
+
+	long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+	retransmissionTimer = new RetransmissionTimer(nanos, nanos, nanos);
+
+    } // setTimeout ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set how long an acknowledgment may wait for a data frame to carry it
+     * before it is sent on its own.
+     *
+     * @param millis The delay, in milliseconds.
+     */
+    public void setAckDelay (long millis) {
+
+	ackDelay = TimeUnit.MILLISECONDS.toNanos(millis);
+
+    } // setAckDelay ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Embed a raw sequence of bytes into a framed sequence, preceded by a data
+     * header.  A copy of the data is held in case a resend is required.
+     *
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The empty frame into which to place the complete frame.
+     */
+    protected void createFrame (Frame data, Frame framed) {
 
-	    // Add the data byte itself.
-	    framingData.add(currentByte);
+	framePool.release(frameCopy);
+	frameCopy = framePool.acquire();
+	frameCopy.add(data);
 
-    	}
-		
+	frameData(sendSequence, frameCopy, framed);
 
-		// Add the parity byte.
-		framingData.add(parity);
-		
-		// End with a stop tag.
-		framingData.add(stopTag);
+    } // createFrame ()
+    // =========================================================================
 
-		return framingData;
-		
-	    } // createFrame ()
-	// =========================================================================
 
 
-    
     // =========================================================================
     /**
      * Determine whether the received, buffered data constitutes a complete
      * frame.  If so, then remove the framing metadata and return the original
-     * data.  Note that any data preceding an escaped start tag is assumed to be
-     * part of a damaged frame, and is thus discarded.
+     * data, header included.  A damaged frame causes a resend request to be
+     * sent.
      *
-     * @return If the buffer contains a complete frame, the extracted, original
-     * data; <code>null</code> otherwise.
+     * @param  data The frame into which to place the extracted, original data.
+     * @return <code>true</code> if the buffer contained a complete, undamaged
+     *         frame; <code>false</code> otherwise.
      */
-    protected Queue<Byte> processFrame () {
+    protected boolean processFrame (Frame data) {
 
-	// Search for a start tag.  Discard anything prior to it.
-	boolean        startTagFound = false;
-	Queue<Byte> copy = new LinkedList<Byte>(receiveBuffer);
-	Iterator<Byte>             i = copy.iterator();
-	while (!startTagFound && i.hasNext()) {
-	    byte current = i.next();
-	    if (current != startTag) {
-		i.remove();
+	int result = extract(data);
+	if (result == FRAME_INTACT && !validHeader(data)) {
+	    result = FRAME_DAMAGED;
+	}
+	if (result == FRAME_DAMAGED) {
+	    sendControl(NAK_TYPE, expectedSequence);
+	}
+
+	return result == FRAME_INTACT;
+
+    } // processFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A new frame may be sent only when no data frame awaits acknowledgment.
+     *
+     * @return <code>true</code> if a frame may be sent now.
+     */
+    protected boolean readyToSend () {
+
+	return !waitingAck;
+
+    } // readyToSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * After sending a data frame, wait for its acknowledgment.
+     *
+     * @param frame The framed data that was transmitted.
+     */
+    protected void finishFrameSend (Frame frame) {
+
+	waitingAck = true;
+	resent     = false;
+	startTimer();
+
+    } // finishFrameSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * After receiving a frame, act on its type: an acknowledgment of the frame
+     * in flight frees the sender to send the next; a resend request for it
+     * sends it again; and data is delivered, if it is new, and acknowledged.
+     *
+     * @param frame The frame of bytes received, header included.
+     */
+    protected void finishFrameReceive (Frame frame) {
+
+	byte type     = frame.get(0);
+	int  sequence = frame.get(1) & 0xff;
+
+	if (type == ACK_TYPE) {
+
+	    acknowledge(sequence);
+
+	} else if (type == NAK_TYPE) {
+
+	    if (waitingAck && sequence == sendSequence) {
+		resend();
+	    }
+
+	} else if (type == DATA_TYPE || type == DATA_ACK_TYPE) {
+
+	    // First take any acknowledgment that the frame carries.
+	    int headerSize = DATA_HEADER_SIZE;
+	    if (type == DATA_ACK_TYPE) {
+		acknowledge(frame.get(2) & 0xff);
+		headerSize = DATA_ACK_HEADER_SIZE;
+	    }
+
+	    // Deliver only new data, but acknowledge even a duplicate.
+	    if (sequence == expectedSequence) {
+		client.receive(frame.array(),
+			       frame.offset() + headerSize,
+			       frame.length() - headerSize);
+		expectedSequence = (expectedSequence + 1) % SEQUENCE_SPACE;
+	    }
+	    if (piggybacking) {
+		delayAck(sequence);
 	    } else {
-		startTagFound = true;
+		sendControl(ACK_TYPE, sequence);
 	    }
+
 	}
 
+    } // finishFrameReceive ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether a timeout should occur and be processed.  This method
+     * is called regularly in the event loop, and should check whether too much
+     * time has passed since some kind of response is expected.
+     */
+    protected void checkTimeout () {
+
+	long now = now();
+
+	// If the sender has not received an acknowledgment in time, back off
+	// and resend.
+	if (waitingAck && now - timerDeadline >= 0) {
+	    retransmissionTimer.backoff();
+	    resend();
+	}
+
+	// If no data frame has carried a delayed acknowledgment, send it alone.
+	if (pendingAck >= 0 && now - ackDeadline >= 0) {
+	    sendControl(ACK_TYPE, pendingAck);
+	    pendingAck = NO_ACK;
+	}
+
+    } // checkTimeout ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Each frame also carries a header.
+     *
+     * @return the number of bytes of overhead per frame.
+     */
+    protected int frameOverhead () {
+
+	return super.frameOverhead() + headerSize();
+
+    } // frameOverhead ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the number of header bytes in a data frame.  Subclasses with
+     *         their own headers override this method.
+     */
+    protected int headerSize () {
+
+	return DATA_HEADER_SIZE;
+
+    } // headerSize ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return <code>true</code>, since data is delivered only once it is
+     *         acknowledged.
+     */
+    protected boolean acknowledgesData () {
+
+	return true;
+
+    } // acknowledgesData ()
+    // =========================================================================
+
+
+
+
+    // =========================================================================
+    /**
+     * Frame a raw sequence of bytes: a start tag, the encoded data, and a stop
+     * tag.
+     *
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The frame to which to append the complete frame.
+     */
+    protected void frame (Frame data, Frame framed) {
+
+	// Begin with the start tag.
+	framed.add(startTag);
+
+	// Add the data and whatever protects it.
+	encode(data, framed);
+
+	// End with a stop tag.
+	framed.add(stopTag);
+
+    } // frame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether the received, buffered data constitutes a complete
+     * frame.  If so, then remove it from the buffer, strip the framing
+     * metadata, and decode what remains.  Note that any data preceding an
+     * escaped start tag is assumed to be part of a damaged frame, and is thus
+     * discarded.
+     *
+     * @param  data The frame into which to place the extracted, original data.
+     * @return <code>FRAME_INTACT</code> if an undamaged frame was extracted;
+     *         <code>FRAME_DAMAGED</code> if a damaged frame was removed; or
+     *         <code>FRAME_NONE</code> if the buffer holds no complete frame.
+     */
+    protected int extract (Frame data) {
+
+	// Search for a start tag.  Discard anything prior to it.
+	int start = 0;
+	while (start < receiveBuffer.length() &&
+	       receiveBuffer.get(start) != startTag) {
+	    start += 1;
+	}
+	receiveBuffer.discard(start);
 
 	// If there is no start tag, then there is no frame.
-	if (!startTagFound) {
-	    return null;
+	if (receiveBuffer.isEmpty()) {
+	    return FRAME_NONE;
 	}
-	
+
 	// Try to extract data while waiting for an unescaped stop tag.
-        int                       index = 1;
-	LinkedList<Byte> extractedBytes = new LinkedList<Byte>();
-	boolean            stopTagFound = false;
-	while (!stopTagFound && i.hasNext()) {
+        int     index        = 1;
+	boolean stopTagFound = false;
+	data.clear();
+	while (!stopTagFound && index < receiveBuffer.length()) {
 
 	    // Grab the next byte.  If it is...
 	    //   (a) An escape tag: Skip over it and grab what follows as
@@ -137,236 +359,299 @@ public class PARDataLinkLayer extends DataLinkLayer {
 	    //   (c) A start tag:   All that precedes is damaged, so remove it
 	    //                      from the buffer and restart extraction.
 	    //   (d) Otherwise:     Take it as literal data.
-	    byte current = i.next();
+	    byte current = receiveBuffer.get(index);
             index += 1;
 	    if (current == escapeTag) {
-		if (i.hasNext()) {
-		    current = i.next();
+		if (index < receiveBuffer.length()) {
+		    data.add(receiveBuffer.get(index));
                     index += 1;
-		    extractedBytes.add(current);
 		} else {
 		    // An escape was the last byte available, so this is not a
 		    // complete frame.
-		    return null;
+		    return FRAME_NONE;
 		}
 	    } else if (current == stopTag) {
-		cleanBufferUpTo(index);
+		receiveBuffer.discard(index);
 		stopTagFound = true;
 	    } else if (current == startTag) {
-		cleanBufferUpTo(index - 1);
+		receiveBuffer.discard(index - 1);
                 index = 1;
-		extractedBytes = new LinkedList<Byte>();
+		data.clear();
 	    } else {
-		extractedBytes.add(current);
+		data.add(current);
 	    }
 
 	}
 
 	// If there is no stop tag, then the frame is incomplete.
 	if (!stopTagFound) {
-	    return null;
+	    return FRAME_NONE;
 	}
 
 	if (debug) {
-	    System.out.println("ParityDataLinkLayer.processFrame(): Got whole frame!");
+	    System.out.println("PARDataLinkLayer.extract(): Got whole frame!");
 	}
-        
-	// The final byte inside the frame is the parity.  Compare it to a
-	// recalculation.
-	byte receivedParity   = extractedBytes.remove(extractedBytes.size() - 1);
-	byte calculatedParity = calculateParity(extractedBytes);
-	if (receivedParity != calculatedParity) {
-	    //System.out.printf("ParityDataLinkLayer.processFrame():\tDamaged frame\n");
-	    Queue<Byte> temp = new ConcurrentLinkedQueue();
-	   	for(int j = 0; j < 8; j++){
-	   		temp.add((byte)'-');
-	   	}
-    	for(byte currentByte : sendBuffer){
-    		temp.add(currentByte);
-    	}
-    	sendBuffer = temp;
-    	waitingAck = false;
-	    return null;
+
+	return decode(data) ? FRAME_INTACT : FRAME_DAMAGED;
+
+    } // extract ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append the body of a frame: the data and then its checksum, with any tag
+     * bytes escaped.  Subclasses may encode the body differently, so long as
+     * <code>decode()</code> reverses it.
+     *
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The frame to which to append the encoded bytes.
+     */
+    protected void encode (Frame data, Frame framed) {
+
+	// Calculate the checksum.
+	long check = checksum.compute(data);
+
+	// Add each byte of original data.
+        for (int i = 0; i < data.length(); i += 1) {
+	    addEscaped(data.get(i), framed);
 	}
 
-	return extractedBytes;
+	// Add the checksum, most significant byte first.  Its bytes may
+	// collide with the tags, so they are escaped as well.
+	for (int i = checksum.size() - 1; i >= 0; i -= 1) {
+	    addEscaped((byte)(check >>> (i * Byte.SIZE)), framed);
+	}
 
-    } // processFrame ()
+    } // encode ()
     // =========================================================================
 
 
 
     // =========================================================================
     /**
-     * After sending a frame, do any bookkeeping (e.g., buffer the frame in case
-     * a resend is required).
+     * Recover the original data from the unescaped body of a frame.
      *
-     * @param frame The framed data that was transmitted.
-     */ 
-    protected void finishFrameSend (Queue<Byte> frame) {
-
-        // COMPLETE ME WITH FLOW CONTROL
-    	if(frame.size() == 0)
-    	{
-    		return;
-    	}
-      	frame.remove();
-        if(frame.peek() == (byte)'+'){
-        	//System.out.println("sending acknowledgement");
-        }
-        else if (frame.peek() == (byte)'-'){
-        	//System.out.println("sending resend request");
-        }
-        else{
-        	//System.out.println("sending data");
-        }
-
-		frameCopy = new LinkedList<Byte>();            	
-    	for(int i = 0; i < 8; i++){
-    		frameCopy.add(frame.remove());
-    	}
-    	waitingAck = true;
-    	sendTime = System.currentTimeMillis();
-        
-        
-    } // finishFrameSend ()
+     * @param data The body of a frame, replaced by the original data.
+     * @return <code>true</code> if the data is intact; <code>false</code> if
+     *         the frame is damaged.
+     */
+    protected boolean decode (Frame data) {
+
+	// The final bytes inside the frame are the checksum.  Compare it to a
+	// recalculation.
+	return checksum.check(data);
+
+    } // decode ()
     // =========================================================================
 
 
 
     // =========================================================================
     /**
-     * After receiving a frame, do any bookkeeping (e.g., deliver the frame to
-     * the client, if appropriate) and responding (e.g., send an
-     * acknowledgment).
+     * Frame data preceded by a data header: its type, sequence number, any
+     * delayed acknowledgment that it can carry, and its length.
      *
-     * @param frame The frame of bytes received.
+     * @param sequence The sequence number.
+     * @param data     The data to follow the header.
+     * @param framed   The frame to which to append the complete frame.
      */
-    protected void finishFrameReceive (Queue<Byte> frame) {
-
-        // COMPLETE ME WITH FLOW CONTROL
-    	//if receiver receiving waiting frame
-       
-        //if sender receiving acknowledgement frame
-        if(frame.peek() == (byte)'+'){
-        	//System.out.println("receiving acknowledgement");
-        	waitingAck = false;
-        }
-        //if sender receiving resend request
-        else if(frame.peek() == (byte)'-'){
-        	//System.out.println("receiving resend request");
-        	Queue<Byte> temp = new ConcurrentLinkedQueue<Byte>();
-    		for(byte currentByte : frameCopy){
-    			temp.add(currentByte);
-    			//System.out.printf("returning to queue: %c\n", currentByte);
-    		}
-    		for(byte currentByte : sendBuffer){
-    			temp.add(currentByte);
-    		}
-    		sendBuffer = temp;
-    		waitingAck = false;
-        }
-        else{ //receiver receiving frame
-        	//System.out.println("receiving data");
-        	waitingAck = false;
-        	Queue<Byte> temp = new LinkedList<Byte>(); 
-    		for(int j = 0; j < 8; j++){
-   				temp.add((byte)'+');
-	   		}
-	    	for(byte currentByte : sendBuffer){
-	    		temp.add(currentByte);
-	    	}
-	    	sendBuffer = temp;
-        	       	
-       
-        	// Deliver frame to the client.
-	        byte[] deliverable = new byte[frame.size()];
-	        for (int i = 0; i < deliverable.length; i += 1) {
-	        	//System.out.printf("delivering: %c\n", frame.peek());
-	            deliverable[i] = frame.remove();
-	        }
-
-	        client.receive(deliverable);
-        }
-        
-        
-    } // finishFrameReceive ()
+    private void frameData (int sequence, Frame data, Frame framed) {
+
+	headerData.clear();
+	if (pendingAck >= 0) {
+	    headerData.add(DATA_ACK_TYPE);
+	    headerData.add((byte)sequence);
+	    headerData.add((byte)pendingAck);
+	    pendingAck = NO_ACK;
+	    cancelDeadline(ackDeadline);
+	} else {
+	    headerData.add(DATA_TYPE);
+	    headerData.add((byte)sequence);
+	}
+	headerData.add((byte)(data.length() >>> Byte.SIZE));
+	headerData.add((byte)data.length());
+	headerData.add(data);
+	frame(headerData, framed);
+
+    } // frameData ()
     // =========================================================================
 
 
 
     // =========================================================================
     /**
-     * Determine whether a timeout should occur and be processed.  This method
-     * is called regularly in the event loop, and should check whether too much
-     * time has passed since some kind of response is expected.
+     * Send a control frame, which is only a header, on the priority path.
+     *
+     * @param type     The frame type.
+     * @param sequence The sequence number.
      */
-    protected void checkTimeout () {
+    private void sendControl (byte type, int sequence) {
 
-        // COMPLETE ME WITH FLOW CONTROL
-       	//System.out.println("waitingAck: " + waitingAck + " time: " + (System.currentTimeMillis() - sendTime));
-
-        //if sender has not received acknowledgement and timeout
-    	if(waitingAck && System.currentTimeMillis() - sendTime > 2000){
-    		//System.out.println("timeout!");
-    		Queue<Byte> temp = new ConcurrentLinkedQueue<Byte>();
-    		for(byte currentByte : frameCopy){
-    			temp.add(currentByte);
-    			//System.out.printf("returning to queue: %c\n", currentByte);
-    		}
-    		for(byte currentByte : sendBuffer){
-    			temp.add(currentByte);
-    		}
-    		sendBuffer = temp;
-    		waitingAck = false;
-       	}
- 
+	headerData.clear();
+	headerData.add(type);
+	headerData.add((byte)sequence);
+	controlFrame.clear();
+	frame(headerData, controlFrame);
+	sendControl(controlFrame);
 
-    } // checkTimeout ()
+    } // sendControl ()
     // =========================================================================
 
 
 
     // =========================================================================
     /**
-     * For a sequence of bytes, determine its parity.
+     * Determine whether the header of an extracted frame is well formed: a
+     * known type, and, for data, a length that matches.
      *
-     * @param data The sequence of bytes over which to calculate.
-     * @return <code>1</code> if the parity is odd; <code>0</code> if the parity
-     *         is even.
+     * @param data The extracted frame, header included.
+     * @return <code>true</code> if the header is valid.
      */
-    private byte calculateParity (Queue<Byte> data) {
+    private boolean validHeader (Frame data) {
 
-	int parity = 0;
-	for (byte b : data) {
-	    for (int j = 0; j < Byte.SIZE; j += 1) {
-		if (((1 << j) & b) != 0) {
-		    parity ^= 1;
-		}
+	if (data.length() < CONTROL_HEADER_SIZE) {
+	    return false;
+	}
+
+	byte type = data.get(0);
+	if (type == ACK_TYPE || type == NAK_TYPE) {
+	    return data.length() == CONTROL_HEADER_SIZE;
+	}
+	int headerSize;
+	if (type == DATA_TYPE) {
+	    headerSize = DATA_HEADER_SIZE;
+	} else if (type == DATA_ACK_TYPE) {
+	    headerSize = DATA_ACK_HEADER_SIZE;
+	} else {
+	    return false;
+	}
+	if (data.length() < headerSize) {
+	    return false;
+	}
+	int length = ((data.get(headerSize - 2) & 0xff) << Byte.SIZE) |
+	             (data.get(headerSize - 1) & 0xff);
+
+	return length == data.length() - headerSize;
+
+    } // validHeader ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Accept an acknowledgment, which frees the sender to send the next frame
+     * if it names the frame in flight.
+     *
+     * @param sequence The sequence number acknowledged.
+     */
+    private void acknowledge (int sequence) {
+
+	if (waitingAck && sequence == sendSequence) {
+	    cancelDeadline(timerDeadline);
+	    if (!resent) {
+		retransmissionTimer.sample(now() - sendTime);
+	    } else {
+		retransmissionTimer.progress();
 	    }
+	    recordFrame(frameCopy.length(), true);
+	    dataDelivered(frameCopy.length());
+	    framePool.release(frameCopy);
+	    frameCopy    = null;
+	    waitingAck   = false;
+	    sendSequence = (sendSequence + 1) % SEQUENCE_SPACE;
 	}
 
-	return (byte)parity;
-	
-    } // calculateParity ()
+    } // acknowledge ()
     // =========================================================================
-    
+
 
 
     // =========================================================================
     /**
-     * Remove a leading number of elements from the receive buffer.
+     * Hold an acknowledgment for the next data frame to carry, sending any
+     * earlier one still held right away.  If no data frame can leave soon
+     * (one is still awaiting its own acknowledgment, or there is no data to
+     * send), send the acknowledgment right away too, as holding it would only
+     * stall the sender.
      *
-     * @param index The index of the position up to which the bytes are to be
-     *              removed.
+     * @param sequence The sequence number to acknowledge.
      */
-    private void cleanBufferUpTo (int index) {
+    private void delayAck (int sequence) {
 
-        for (int i = 0; i < index; i += 1) {
-            receiveBuffer.remove();
+	if (pendingAck >= 0) {
+	    cancelDeadline(ackDeadline);
+	    if (pendingAck != sequence) {
+		sendControl(ACK_TYPE, pendingAck);
+	    }
+	    pendingAck = NO_ACK;
+	}
+	if (waitingAck || sendBuffer.isEmpty()) {
+	    sendControl(ACK_TYPE, sequence);
+	    return;
 	}
+	pendingAck  = sequence;
+	ackDeadline = now() + ackDelay;
+	scheduleDeadline(ackDeadline);
 
-    } // cleanBufferUpTo ()
+    } // delayAck ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send the unacknowledged data frame again, and restart its timer.  Its
+     * acknowledgment can no longer be timed unambiguously.
+     */
+    private void resend () {
+
+	resent = true;
+	cancelDeadline(timerDeadline);
+	recordFrame(frameCopy.length(), false);
+	resendFrame.clear();
+	frameData(sendSequence, frameCopy, resendFrame);
+	transmit(resendFrame);
+	startTimer();
+
+    } // resend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Start the timer for the data frame in flight.
+     */
+    private void startTimer () {
+
+	sendTime      = now();
+	timerDeadline = sendTime + retransmissionTimer.timeout();
+	scheduleDeadline(timerDeadline);
+
+    } // startTimer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append a byte to a frame, preceded by an escape tag if it is itself a
+     * metadata tag.
+     *
+     * @param b      The byte to append.
+     * @param framed The frame being built.
+     */
+    protected void addEscaped (byte b, Frame framed) {
+
+	if ((b == startTag) || (b == stopTag) || (b == escapeTag)) {
+	    framed.add(escapeTag);
+	}
+	framed.add(b);
+
+    } // addEscaped ()
     // =========================================================================
 
 
@@ -383,23 +668,99 @@ public class PARDataLinkLayer extends DataLinkLayer {
     /** The escape tag. */
     private final byte escapeTag = (byte)'\\';
 
-    /**acknowledgement boolean*/
-    private boolean waitingAck = false;
+    /** Space in which to assemble a header and its data. */
+    private final Frame headerData   = new Frame();
+
+    /** Space in which to frame control frames. */
+    private final Frame controlFrame = new Frame();
+
+    /** Space in which to frame resent data frames. */
+    private final Frame resendFrame  = new Frame();
+
+    /** Whether a sent data frame awaits acknowledgment. */
+    private boolean waitingAck       = false;
+
+    /** Copy of the unacknowledged data, in case of resend. */
+    private Frame   frameCopy;
+
+    /** The sequence number of the data frame being sent. */
+    private int     sendSequence     = 0;
+
+    /** The sequence number of the next data frame to deliver. */
+    private int     expectedSequence = 0;
+
+    /** When the unacknowledged frame was most recently sent. */
+    private long    sendTime;
+
+    /** Whether the unacknowledged frame has been sent more than once. */
+    private boolean resent           = false;
+
+    /** When the unacknowledged frame times out. */
+    private long    timerDeadline;
 
-    /*copy of frame in case of resend*/
-    private Queue<Byte> frameCopy;
+    /** The chooser of timeouts, shared with subclasses. */
+    protected RetransmissionTimer retransmissionTimer =
+	new RetransmissionTimer();
 
-    /*time of frame send*/
-    private long sendTime;
+    /** Whether acknowledgments wait to ride on outgoing data frames. */
+    private boolean piggybacking     = false;
 
-    /*terminate*/
-    private boolean finished = false;
+    /** The nanoseconds that an acknowledgment may wait for a data frame. */
+    private long    ackDelay         =
+	TimeUnit.MILLISECONDS.toNanos(DEFAULT_ACK_DELAY);
+
+    /** The sequence number awaiting acknowledgment, or <code>NO_ACK</code>. */
+    private int     pendingAck       = NO_ACK;
+
+    /** When the delayed acknowledgment must be sent on its own. */
+    private long    ackDeadline;
+
+    /** The milliseconds that an acknowledgment may be delayed, unless
+     *  another delay is set. */
+    public static final long DEFAULT_ACK_DELAY = 1;
+
+    /** The result of extraction when the buffer holds no complete frame. */
+    protected static final int FRAME_NONE    = 0;
+
+    /** The result of extraction when a damaged frame was removed. */
+    protected static final int FRAME_DAMAGED = 1;
+
+    /** The result of extraction when an undamaged frame was extracted. */
+    protected static final int FRAME_INTACT  = 2;
+
+    /** The type of a frame carrying data. */
+    private static final byte DATA_TYPE = 0;
+
+    /** The type of an acknowledgment. */
+    private static final byte ACK_TYPE  = 1;
+
+    /** The type of a resend request. */
+    private static final byte NAK_TYPE  = 2;
+
+    /** The type of a frame carrying data and an acknowledgment. */
+    private static final byte DATA_ACK_TYPE = 3;
+
+    /** The bytes of header (type and sequence number) in a control frame. */
+    private static final int  CONTROL_HEADER_SIZE = 2;
+
+    /** The bytes of header (type, sequence number, and length) in a data
+     *  frame. */
+    private static final int  DATA_HEADER_SIZE    = 4;
+
+    /** The bytes of header (type, sequence number, acknowledgment, and
+     *  length) in a data frame carrying an acknowledgment. */
+    private static final int  DATA_ACK_HEADER_SIZE = 5;
+
+    /** The value of <code>pendingAck</code> when none is held. */
+    private static final int  NO_ACK              = -1;
+
+    /** The number of distinct sequence numbers. */
+    private static final int  SEQUENCE_SPACE      = 256;
     // =========================================================================
 
 
 
 
 // =============================================================================
-} // class ParityDataLinkLayer
+} // class PARDataLinkLayer
 // =============================================================================
-
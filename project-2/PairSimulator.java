@@ -0,0 +1,144 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Random;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * Measures how a large simulation scales across threads.  Based on
+ * command-line arguments, it joins pairs of hosts by links, has both hosts of
+ * every pair send the same amount of data to each other at once, and
+ * simulates the whole in virtual time, either on one thread
+ * (<code>EventSimulator</code>) or divided among several
+ * (<code>ParallelEventSimulator</code>).  Hosts are dealt to the partitions
+ * round robin, so the two hosts of a pair lie in different partitions.  It
+ * reports the virtual and real time taken.
+ *
+ * @file   PairSimulator.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class PairSimulator {
+// =============================================================================
+
+
+    // =========================================================================
+    /**
+     * The entry point.  Interpret the command-line arguments, aborting if they
+     * are invalid.  Set up the hosts and run the measurement.
+     *
+     * @param args The command-line arguments.
+     */
+    public static void main (String[] args) {
+
+	// Check the number of arguments passed.
+	if (args.length != 3 && args.length != 4) {
+
+	    System.err.println("Usage: java PairSimulator " +
+			       "<pair count> "              +
+			       "<bytes per host> "          +
+			       "<thread count, or 0> "      +
+			       "[<data link layer type>]");
+	    System.exit(1);
+
+	}
+
+	// Assign names to the arguments.
+	int    pairCount         = Integer.parseInt(args[0]);
+	int    bytesPerHost      = Integer.parseInt(args[1]);
+	int    threadCount       = Integer.parseInt(args[2]);
+	String dataLinkLayerType = (args.length == 4) ? args[3] : "PAR";
+	if (pairCount < 1 || bytesPerHost < 1 || threadCount < 0) {
+	    throw new RuntimeException("Need at least one pair and one byte");
+	}
+
+	// Join each pair by a link, in one simulation.
+	EventSimulator simulation = (threadCount == 0)
+	    ? new EventSimulator()
+	    : new ParallelEventSimulator(threadCount);
+	Host[] hosts = new Host[2 * pairCount];
+	for (int i = 0; i < hosts.length; i += 2) {
+	    Link link = new Link(Link.DEFAULT_BANDWIDTH, LINK_DELAY);
+	    simulation.add(link);
+	    for (int j = i; j < i + 2; j += 1) {
+		hosts[j] = new Host(link, dataLinkLayerType, "CRC32");
+		hosts[j].dataLinkLayer().setSendWatermarks(Long.MAX_VALUE - 1,
+							   Long.MAX_VALUE);
+		simulation.add(hosts[j]);
+	    }
+	}
+
+	measure(simulation, hosts, bytesPerHost);
+
+    } // main
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Have every host send its data at once, run the simulation until all of
+     * it has arrived, and report the results.
+     *
+     * @param simulation   The simulation.
+     * @param hosts        The hosts in it.
+     * @param bytesPerHost The number of bytes for each host to send.
+     */
+    private static void measure (EventSimulator simulation,
+				 Host[]         hosts,
+				 int            bytesPerHost) {
+
+	byte[] data = new byte[bytesPerHost];
+	new Random(SEED).nextBytes(data);
+	for (Host host : hosts) {
+	    host.send(data);
+	}
+
+	long    start    = System.nanoTime();
+	boolean finished = simulation.run(() -> {
+		for (Host host : hosts) {
+		    if (host.available() < data.length) {
+			return false;
+		    }
+		}
+		return true;
+	    }, VIRTUAL_TIME_LIMIT);
+	long    elapsed  = System.nanoTime() - start;
+
+	System.out.printf("Hosts:        %d\n", hosts.length);
+	System.out.printf("Finished:     %b\n", finished);
+	System.out.printf("Virtual time: %.3f ms\n",
+			  simulation.nanoTime() / 1e6);
+	System.out.printf("Real time:    %.3f ms\n", elapsed / 1e6);
+	System.out.printf("Events:       %d\n", simulation.eventsProcessed());
+	if (simulation instanceof ParallelEventSimulator) {
+	    System.out.printf("Windows:      %d\n",
+			      ((ParallelEventSimulator)simulation).windows());
+	}
+
+    } // measure()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The propagation delay of every link: 1 millisecond. */
+    private static final long LINK_DELAY         = 1_000_000L;
+
+    /** The longest virtual time, in nanoseconds, to simulate: an hour. */
+    private static final long VIRTUAL_TIME_LIMIT = 3600 * 1_000_000_000L;
+
+    /** The seed of the data sent, so that every run sends the same. */
+    private static final long SEED               = 2020;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class PairSimulator
+// =============================================================================
@@ -0,0 +1,512 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.BooleanSupplier;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A discrete-event simulation divided among threads.  Its hosts are divided
+ * among partitions (logical processes), each an <code>EventSimulator</code>
+ * of its own run by a worker thread.  Partitions interact only through
+ * media with a propagation delay (see <code>Medium.setTiming()</code>), such
+ * as <code>Link</code>s, which gives the lookahead: nothing sent at time t
+ * can reach another partition before t plus the shortest delay of any medium
+ * between partitions.
+ *
+ * The partitions are kept in step conservatively, by windows of time.  From
+ * the earliest time at which anything happens anywhere, each partition runs,
+ * independently, everything that happens within one lookahead; bits sent
+ * across partitions in that window cannot arrive within it, and are held.  At
+ * a barrier, the held bits are handed to their partitions, in partition
+ * order, and the next window begins.  As nothing depends on thread
+ * scheduling, the same simulation always runs the same way.
+ *
+ * Hosts sharing a medium without a propagation delay (which delivers
+ * instantly) must be placed in the same partition.
+ *
+ * @file   ParallelEventSimulator.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class ParallelEventSimulator extends EventSimulator {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     *
+     * @param partitionCount The number of partitions, and of worker threads.
+     * @throws RuntimeException if there is not at least one partition.
+     */
+    public ParallelEventSimulator (int partitionCount) {
+
+	if (partitionCount < 1) {
+	    throw new RuntimeException("Invalid partition count " +
+				       partitionCount);
+	}
+
+	partitions = new Partition[partitionCount];
+	for (int i = 0; i < partitionCount; i += 1) {
+	    partitions[i] = new Partition(i, partitionCount);
+	}
+
+    } // ParallelEventSimulator ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a medium to the simulation.
+     *
+     * @param medium The medium.
+     */
+    public void add (Medium medium) {
+
+	medium.setSimulator(this);
+	media.add(medium);
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a host to the simulation, in the partition after that of the
+     * previous host, round robin.
+     *
+     * @param host The host, which must not also be run as a thread.
+     */
+    public void add (Host host) {
+
+	add(host, hostCount % partitions.length);
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Add a host to the simulation, in a given partition.
+     *
+     * @param host      The host, which must not also be run as a thread.
+     * @param partition The index of the partition.
+     * @throws RuntimeException if there is no such partition.
+     */
+    public void add (Host host, int partition) {
+
+	if (partition < 0 || partition >= partitions.length) {
+	    throw new RuntimeException("Invalid partition " + partition);
+	}
+
+	partitions[partition].add(host);
+	owners.put(host.physicalLayer(), partitions[partition]);
+	hostCount += 1;
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the current virtual time, in nanoseconds: that of the calling
+     *         worker's partition, or, from any other thread, the latest time
+     *         that any partition has reached.
+     */
+    public long nanoTime () {
+
+	Partition partition = current.get();
+
+	return (partition != null) ? partition.nanoTime() : reached;
+
+    } // nanoTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Schedule an action to be taken at a given virtual time, in the calling
+     * worker's partition, or the first partition from any other thread.
+     *
+     * @param time   The time, in nanoseconds.
+     * @param action The action to take.
+     * @throws RuntimeException if the time has already passed.
+     */
+    public void schedule (long time, Runnable action) {
+
+	Partition partition = current.get();
+	if (partition == null) {
+	    partition = partitions[0];
+	}
+
+	partition.schedule(time, action);
+
+    } // schedule ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Schedule the arrival of bits at a receiver, in the receiver's partition.
+     * Arrivals in another partition are held until the end of the window.
+     *
+     * @param receiver The physical layer at which the bits arrive.
+     * @param time     The time of arrival, in nanoseconds.
+     * @param action   The delivery of the bits.
+     * @throws RuntimeException if the arrival falls within the current window
+     *                          of another partition, which the lookahead
+     *                          should rule out.
+     */
+    public void schedule (PhysicalLayer receiver, long time, Runnable action) {
+
+	Partition source = current.get();
+	Partition target = owners.get(receiver);
+	if (target == null) {
+	    schedule(time, action);
+	    return;
+	}
+	if (source == null || source == target) {
+	    target.schedule(time, action);
+	    return;
+	}
+
+	if (time < windowEnd) {
+	    throw new RuntimeException("Arrival at " + time + " within the " +
+				       "window ending " + windowEnd);
+	}
+	source.outbox[target.index].add(new Arrival(time, action));
+
+    } // schedule ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run the simulation until a condition holds, nothing remains to happen,
+     * or virtual time would pass a limit.  The condition is checked between
+     * windows, so the simulation may run up to a lookahead past the moment
+     * at which it first holds.
+     *
+     * @param done  The condition.
+     * @param limit The latest virtual time, in nanoseconds, to which to run.
+     * @return <code>true</code> if the condition holds.
+     * @throws RuntimeException if partitions share a medium that has no
+     *                          lookahead, or a worker fails.
+     */
+    public boolean run (BooleanSupplier done, long limit) {
+
+	lookahead = lookahead();
+	this.done  = done;
+	this.limit = limit;
+	finished   = false;
+	failure    = null;
+	nextWindow();
+
+	CyclicBarrier barrier = new CyclicBarrier(partitions.length,
+						  this::nextWindow);
+	Thread[]      workers = new Thread[partitions.length];
+	for (int i = 0; i < workers.length; i += 1) {
+	    Partition partition = partitions[i];
+	    workers[i] = new Thread(() -> work(partition, barrier),
+				    "Partition " + i);
+	    workers[i].start();
+	}
+	for (Thread worker : workers) {
+	    try {
+		worker.join();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new RuntimeException("Interrupted while simulating");
+	    }
+	}
+
+	if (failure != null) {
+	    throw failure;
+	}
+
+	return done.getAsBoolean();
+
+    } // run ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of events taken so far, in all partitions. */
+    public long eventsProcessed () {
+
+	long total = 0;
+	for (Partition partition : partitions) {
+	    total += partition.eventsProcessed();
+	}
+
+	return total;
+
+    } // eventsProcessed ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of partitions. */
+    public int partitionCount () {
+
+	return partitions.length;
+
+    } // partitionCount ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of windows run so far. */
+    public long windows () {
+
+	return windows;
+
+    } // windows ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run one partition, a window at a time, until the simulation finishes.
+     * Run by the partition's worker thread.
+     *
+     * @param partition The partition.
+     * @param barrier   The barrier that ends each window.
+     */
+    private void work (Partition partition, CyclicBarrier barrier) {
+
+	current.set(partition);
+	try {
+	    while (!finished) {
+		partition.runUntil(windowEnd);
+		barrier.await();
+	    }
+	} catch (InterruptedException | BrokenBarrierException e) {
+	    // Another worker failed.
+	} catch (RuntimeException e) {
+	    failure = e;
+	    barrier.reset();
+	} finally {
+	    current.remove();
+	}
+
+    } // work ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Between windows, with every worker waiting: hand held arrivals to their
+     * partitions, and either set the end of the next window or decide that
+     * the simulation is finished.
+     */
+    private void nextWindow () {
+
+	long next = Long.MAX_VALUE;
+	for (Partition partition : partitions) {
+	    for (Partition source : partitions) {
+		for (Arrival arrival : source.outbox[partition.index]) {
+		    partition.schedule(arrival.time, arrival.action);
+		}
+		source.outbox[partition.index].clear();
+	    }
+	    next    = Math.min(next, partition.nextTime());
+	    reached = Math.max(reached, partition.nanoTime());
+	}
+
+	if (done.getAsBoolean() || next == Long.MAX_VALUE || next > limit) {
+	    finished = true;
+	    return;
+	}
+
+	if (lookahead <= limit - next) {
+	    windowEnd = next + lookahead;
+	} else {
+	    windowEnd = (limit == Long.MAX_VALUE) ? limit : limit + 1;
+	}
+	windows  += 1;
+
+    } // nextWindow ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Find the lookahead: the shortest propagation delay of any medium
+     * between partitions.
+     *
+     * @return the lookahead, in nanoseconds, or <code>Long.MAX_VALUE</code>
+     *         if no medium joins partitions.
+     * @throws RuntimeException if a medium without a delay joins partitions.
+     */
+    private long lookahead () {
+
+	long shortest = Long.MAX_VALUE;
+	for (Medium medium : media) {
+
+	    Partition first = null;
+	    boolean   spans = false;
+	    for (PhysicalLayer client : medium.clients) {
+		Partition owner = owners.get(client);
+		if (first == null) {
+		    first = owner;
+		} else if (owner != null && owner != first) {
+		    spans = true;
+		}
+	    }
+	    if (!spans) {
+		continue;
+	    }
+
+	    long delay = medium.delay();
+	    if (delay <= 0) {
+		throw new RuntimeException("A medium without delay joins " +
+					   "partitions");
+	    }
+	    shortest = Math.min(shortest, delay);
+
+	}
+
+	return shortest;
+
+    } // lookahead ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A partition: a part of the simulation run by one worker, which holds
+     * the arrivals that it sends to other partitions until the window ends.
+     */
+    private static class Partition extends EventSimulator {
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	Partition (int index, int partitionCount) {
+
+	    this.index  = index;
+	    this.outbox = new List[partitionCount];
+	    for (int i = 0; i < partitionCount; i += 1) {
+		outbox[i] = new ArrayList<Arrival>();
+	    }
+
+	}
+
+	/** The index of this partition. */
+	final int             index;
+
+	/** The arrivals held for each partition, by index. */
+	final List<Arrival>[] outbox;
+
+    } // class Partition
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Bits held for another partition, due to arrive at a given time.
+     */
+    private static class Arrival {
+
+	Arrival (long time, Runnable action) {
+
+	    this.time   = time;
+	    this.action = action;
+
+	}
+
+	final long     time;
+	final Runnable action;
+
+    } // class Arrival
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The partitions, by index. */
+    private final Partition[]                    partitions;
+
+    /** The partition owning each host, by its physical layer. */
+    private final Map<PhysicalLayer, Partition>  owners =
+	new IdentityHashMap<PhysicalLayer, Partition>();
+
+    /** The media added. */
+    private final List<Medium>                   media  =
+	new ArrayList<Medium>();
+
+    /** The partition of each worker thread. */
+    private final ThreadLocal<Partition>         current =
+	new ThreadLocal<Partition>();
+
+    /** The number of hosts added. */
+    private int                                  hostCount = 0;
+
+    /** The shortest delay of any medium between partitions. */
+    private long                                 lookahead;
+
+    /** The condition on which to finish the current run. */
+    private BooleanSupplier                      done;
+
+    /** The latest time to which to run. */
+    private long                                 limit;
+
+    /** The time before which everything in the current window happens. */
+    private volatile long                        windowEnd;
+
+    /** The latest time that any partition has reached. */
+    private volatile long                        reached  = 0;
+
+    /** Whether the current run is finished. */
+    private volatile boolean                     finished;
+
+    /** The failure of a worker, if any. */
+    private volatile RuntimeException            failure;
+
+    /** The number of windows run. */
+    private long                                 windows  = 0;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class ParallelEventSimulator
+// =============================================================================
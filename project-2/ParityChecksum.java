@@ -0,0 +1,52 @@
+// =============================================================================
+/**
+ * A frame checksum that is a single parity bit, held in a byte: the cheapest
+ * check, detecting any odd number of flipped bits.
+ *
+ * @file   ParityChecksum.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class ParityChecksum extends FrameChecksum {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes that the check value occupies. */
+    public int size () {
+
+	return 1;
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * For a sequence of bytes, determine its parity.
+     *
+     * @param data The array holding the bytes.
+     * @param off  The index of the first byte.
+     * @param len  The number of bytes.
+     * @return <code>1</code> if the parity is odd; <code>0</code> if the parity
+     *         is even.
+     */
+    public long compute (byte[] data, int off, int len) {
+
+	int parity = 0;
+	for (int i = off; i < off + len; i += 1) {
+	    parity ^= data[i];
+	}
+
+	return Integer.bitCount(parity & 0xff) & 1;
+
+    } // compute ()
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class ParityChecksum
+// =============================================================================
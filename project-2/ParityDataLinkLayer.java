@@ -1,13 +1,3 @@
-// =============================================================================
-// IMPORTS
-
-import java.util.Arrays;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
-// =============================================================================
-
-
 // =============================================================================
 /**
  * @file   ParityDataLinkLayer.java
@@ -15,8 +5,8 @@ import java.util.Queue;
  * @date   February 2020
  *
  * A data link layer that uses start/stop tags and byte packing to frame the
- * data, and that performs error management with a parity bit.  It employs no
- * flow control; damaged frames are dropped.
+ * data, and that performs error management with a checksum (by default, a
+ * parity bit).  It employs no flow control; damaged frames are dropped.
  */
 public class ParityDataLinkLayer extends DataLinkLayer {
 // =============================================================================
@@ -27,44 +17,33 @@ public class ParityDataLinkLayer extends DataLinkLayer {
     /**
      * Embed a raw sequence of bytes into a framed sequence.
      *
-     * @param  data The raw sequence of bytes to be framed.
-     * @return A complete frame.
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The empty frame into which to place the complete frame.
      */
-    protected Queue<Byte> createFrame (Queue<Byte> data) {
+    protected void createFrame (Frame data, Frame framed) {
 
-	// Calculate the parity.
-	byte parity = calculateParity(data);
+	// Calculate the checksum.
+	long check = checksum.compute(data);
 	
 	// Begin with the start tag.
-	Queue<Byte> framingData = new LinkedList<Byte>();
-	framingData.add(startTag);
+	framed.add(startTag);
 
 	// Add each byte of original data.
-        for (byte currentByte : data) {
-
-	    // If the current data byte is itself a metadata tag, then precede
-	    // it with an escape tag.
-	    if ((currentByte == startTag) ||
-		(currentByte == stopTag) ||
-		(currentByte == escapeTag)) {
+        for (int i = 0; i < data.length(); i += 1) {
 
-		framingData.add(escapeTag);
-
-	    }
-
-	    // Add the data byte itself.
-	    framingData.add(currentByte);
+	    addEscaped(data.get(i), framed);
 
 	}
 
-	// Add the parity byte.
-	framingData.add(parity);
+	// Add the checksum, most significant byte first.  Its bytes may
+	// collide with the tags, so they are escaped as well.
+	for (int i = checksum.size() - 1; i >= 0; i -= 1) {
+	    addEscaped((byte)(check >>> (i * Byte.SIZE)), framed);
+	}
 	
 	// End with a stop tag.
-	framingData.add(stopTag);
+	framed.add(stopTag);
 
-	return framingData;
-	
     } // createFrame ()
     // =========================================================================
 
@@ -77,33 +56,30 @@ public class ParityDataLinkLayer extends DataLinkLayer {
      * data.  Note that any data preceding an escaped start tag is assumed to be
      * part of a damaged frame, and is thus discarded.
      *
-     * @return If the buffer contains a complete frame, the extracted, original
-     * data; <code>null</code> otherwise.
+     * @param  data The frame into which to place the extracted, original data.
+     * @return <code>true</code> if the buffer contained a complete, undamaged
+     *         frame; <code>false</code> otherwise.
      */
-    protected Queue<Byte> processFrame () {
+    protected boolean processFrame (Frame data) {
 
 	// Search for a start tag.  Discard anything prior to it.
-	boolean        startTagFound = false;
-	Iterator<Byte>             i = receiveBuffer.iterator();
-	while (!startTagFound && i.hasNext()) {
-	    byte current = i.next();
-	    if (current != startTag) {
-		i.remove();
-	    } else {
-		startTagFound = true;
-	    }
+	int start = 0;
+	while (start < receiveBuffer.length() &&
+	       receiveBuffer.get(start) != startTag) {
+	    start += 1;
 	}
+	receiveBuffer.discard(start);
 
 	// If there is no start tag, then there is no frame.
-	if (!startTagFound) {
-	    return null;
+	if (receiveBuffer.isEmpty()) {
+	    return false;
 	}
 	
 	// Try to extract data while waiting for an unescaped stop tag.
-        int                       index = 1;
-	LinkedList<Byte> extractedBytes = new LinkedList<Byte>();
-	boolean            stopTagFound = false;
-	while (!stopTagFound && i.hasNext()) {
+        int     index        = 1;
+	boolean stopTagFound = false;
+	data.clear();
+	while (!stopTagFound && index < receiveBuffer.length()) {
 
 	    // Grab the next byte.  If it is...
 	    //   (a) An escape tag: Skip over it and grab what follows as
@@ -113,50 +89,47 @@ public class ParityDataLinkLayer extends DataLinkLayer {
 	    //   (c) A start tag:   All that precedes is damaged, so remove it
 	    //                      from the buffer and restart extraction.
 	    //   (d) Otherwise:     Take it as literal data.
-	    byte current = i.next();
+	    byte current = receiveBuffer.get(index);
             index += 1;
 	    if (current == escapeTag) {
-		if (i.hasNext()) {
-		    current = i.next();
+		if (index < receiveBuffer.length()) {
+		    data.add(receiveBuffer.get(index));
                     index += 1;
-		    extractedBytes.add(current);
 		} else {
 		    // An escape was the last byte available, so this is not a
 		    // complete frame.
-		    return null;
+		    return false;
 		}
 	    } else if (current == stopTag) {
-		cleanBufferUpTo(index);
+		receiveBuffer.discard(index);
 		stopTagFound = true;
 	    } else if (current == startTag) {
-		cleanBufferUpTo(index - 1);
+		receiveBuffer.discard(index - 1);
                 index = 1;
-		extractedBytes = new LinkedList<Byte>();
+		data.clear();
 	    } else {
-		extractedBytes.add(current);
+		data.add(current);
 	    }
 
 	}
 
 	// If there is no stop tag, then the frame is incomplete.
 	if (!stopTagFound) {
-	    return null;
+	    return false;
 	}
 
 	if (debug) {
 	    System.out.println("ParityDataLinkLayer.processFrame(): Got whole frame!");
 	}
-        
-	// The final byte inside the frame is the parity.  Compare it to a
+
+	// The final bytes inside the frame are the checksum.  Compare it to a
 	// recalculation.
-	byte receivedParity   = extractedBytes.remove(extractedBytes.size() - 1);
-	byte calculatedParity = calculateParity(extractedBytes);
-	if (receivedParity != calculatedParity) {
+	if (!checksum.check(data)) {
 	    System.out.printf("ParityDataLinkLayer.processFrame():\tDamaged frame\n");
-	    return null;
+	    return false;
 	}
 
-	return extractedBytes;
+	return true;
 
     } // processFrame ()
     // =========================================================================
@@ -170,7 +143,7 @@ public class ParityDataLinkLayer extends DataLinkLayer {
      *
      * @param frame The framed data that was transmitted.
      */ 
-    protected void finishFrameSend (Queue<Byte> frame) {
+    protected void finishFrameSend (Frame frame) {
 
         // COMPLETE ME WITH FLOW CONTROL
         
@@ -187,17 +160,12 @@ public class ParityDataLinkLayer extends DataLinkLayer {
      *
      * @param frame The frame of bytes received.
      */
-    protected void finishFrameReceive (Queue<Byte> frame) {
+    protected void finishFrameReceive (Frame frame) {
 
         // COMPLETE ME WITH FLOW CONTROL
         
         // Deliver frame to the client.
-        byte[] deliverable = new byte[frame.size()];
-        for (int i = 0; i < deliverable.length; i += 1) {
-            deliverable[i] = frame.remove();
-        }
-
-        client.receive(deliverable);
+        client.receive(frame.array(), frame.offset(), frame.length());
         
     } // finishFrameReceive ()
     // =========================================================================
@@ -221,48 +189,24 @@ public class ParityDataLinkLayer extends DataLinkLayer {
 
     // =========================================================================
     /**
-     * For a sequence of bytes, determine its parity.
+     * Append a byte to a frame, preceded by an escape tag if it is itself a
+     * metadata tag.
      *
-     * @param data The sequence of bytes over which to calculate.
-     * @return <code>1</code> if the parity is odd; <code>0</code> if the parity
-     *         is even.
+     * @param b      The byte to append.
+     * @param framed The frame being built.
      */
-    private byte calculateParity (Queue<Byte> data) {
+    private void addEscaped (byte b, Frame framed) {
 
-	int parity = 0;
-	for (byte b : data) {
-	    for (int j = 0; j < Byte.SIZE; j += 1) {
-		if (((1 << j) & b) != 0) {
-		    parity ^= 1;
-		}
-	    }
+	if ((b == startTag) || (b == stopTag) || (b == escapeTag)) {
+	    framed.add(escapeTag);
 	}
+	framed.add(b);
 
-	return (byte)parity;
-	
-    } // calculateParity ()
+    } // addEscaped ()
     // =========================================================================
     
 
 
-    // =========================================================================
-    /**
-     * Remove a leading number of elements from the receive buffer.
-     *
-     * @param index The index of the position up to which the bytes are to be
-     *              removed.
-     */
-    private void cleanBufferUpTo (int index) {
-
-        for (int i = 0; i < index; i += 1) {
-            receiveBuffer.remove();
-	}
-
-    } // cleanBufferUpTo ()
-    // =========================================================================
-
-
-
     // =========================================================================
     // DATA MEMBERS
 
@@ -1,12 +1,3 @@
-// =============================================================================
-// IMPORTS
-
-import java.util.Collection;
-import java.util.Iterator;
-// =============================================================================
-
-
-
 // =============================================================================
 /**
  * An ideal medium with no noise, errors, loss.
@@ -39,23 +30,35 @@ public class PerfectMedium extends Medium {
      */
     public void transmit (PhysicalLayer sender, boolean bit) {
 
+	transmitBlock(sender, bit ? 1 : 0, 1);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a word of packed bits from one client to the other clients.
+     *
+     * @param sender The client physical layer sending the bits.
+     * @param bits   The packed bit values to send, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code> to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmitBlock (PhysicalLayer sender, long bits, int count) {
+
 	// Only registered clients may send.
-	if (!clients.contains(sender)) {
+	if (!isRegistered(sender)) {
 	    throw new RuntimeException("Unregistered sender on the medium");
 	}
-	
-	// Deliver the bit to each client that is not the sender.
-	Iterator<PhysicalLayer> clientIterator = clients.iterator();
-	while (clientIterator.hasNext()) {
-	    
-	    PhysicalLayer receiver = clientIterator.next();
-	    if (receiver != sender) {
-		receiver.receive(bit);
-	    }
 
-	}
+	// Deliver the whole word to each client that is not the sender, in the
+	// receiver's lane for this sender, when it arrives.
+	deliver(sender, bits, count);
 
-    } // transmit ()
+    } // transmitBlock ()
     // =========================================================================
 
 
@@ -1,8 +1,7 @@
 // =============================================================================
 // IMPORTS
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Arrays;
 // =============================================================================
 
 
@@ -11,6 +10,14 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 /**
  * Transmits bits across a medium.  Bits delivered by the medium are queued
  * until the client calls for their receiption.
+ *
+ * Bits from each sender are queued in a lane of their own, indexed by the
+ * sender's port on the medium, so that each lane has a single producer (the
+ * sender's thread) and a single consumer (this layer's client), and senders
+ * never contend with one another.  The client drains each lane on its own,
+ * whole bytes at a time, so that it can decode each sender's frames apart
+ * from the others': bits sent at the same time by different senders never
+ * mix, and a partial byte waits in its lane for the rest of its bits.
  * 
  * @file   PhysicalLayer.java
  * @author Scott F. Kaplan (sfkaplan@amherst.edu)
@@ -53,18 +60,29 @@ public class PhysicalLayer {
      */
     public PhysicalLayer (Medium medium) {
 
+        // Lanes for bits from each sender are created as they are needed.
+        lanes = new BitRingBuffer[0];
+
         // Connect the client to the media.
         this.medium = medium;
-        medium.register(this);
-
-        // Create the bit queue for received bits.
-        bitQueue = new ConcurrentLinkedQueue<Boolean>();
+        this.port   = medium.register(this);
 
     } // PhysicalLayer ()
     // =========================================================================
 
 
 
+    // =========================================================================
+    /** @return this layer's port on its medium. */
+    public int port () {
+
+        return port;
+
+    } // port ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Allow a data link layer to register as the client of this physical layer.
@@ -104,16 +122,152 @@ public class PhysicalLayer {
 
     // =========================================================================
     /**
-     * Called by the medium to receive a bit, which is then queued for
-     * receiption by the client.
+     * Send a word of packed bits via the medium in a single call.  The bits
+     * are right-aligned in the word and are sent most significant first, just
+     * as if each had been passed to <code>send(boolean)</code> in turn.
+     *
+     * @param bits  The packed bit values to send.
+     * @param count The number of low-order bits of <code>bits</code> to send,
+     *              from 1 to 64.
+     * @throws RuntimeException if the count is out of range.
+     */
+    public void send (long bits, int count) {
+
+        if (count < 1 || count > Long.SIZE) {
+            throw new RuntimeException("Invalid bit count " + count);
+        }
+
+        medium.transmitBlock(this, bits, count);
+
+    } // send ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a sequence of bytes via the medium, each byte most significant bit
+     * first.  The medium packs the bytes eight at a time into words so that
+     * it carries 64 bits at once rather than one (see
+     * <code>Medium.transmitBytes()</code>).
+     *
+     * @param src The bytes to send.
+     * @param off The index of the first byte to send.
+     * @param len The number of bytes to send.
+     */
+    public void sendBits (byte[] src, int off, int len) {
+
+        medium.transmitBytes(this, src, off, len);
+
+    } // sendBits ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return whether another client of the medium is transmitting.
+     */
+    public boolean carrierSensed () {
+
+        return medium.carrierSensed(this);
+
+    } // carrierSensed ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return whether this layer's transmission has collided with another
+     *         since this method was last called.
+     */
+    public boolean collisionDetected () {
+
+        return medium.collisionDetected(this);
+
+    } // collisionDetected ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the time, by the medium's clock, at which the latest bits sent
+     *         by this layer have wholly gone onto the medium (see
+     *         <code>Medium.sendingUntil()</code>).
+     */
+    public long sendingUntil () {
+
+        return medium.sendingUntil(this);
+
+    } // sendingUntil ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Draw a number at random from this layer's share of the medium's
+     * generator (see <code>Medium.draw()</code>).
      *
-     * @param bit The bit received from the medium.
+     * @param bound The number of values from which to draw, from 0.
+     * @return the number drawn.
      */
-    public void receive (boolean bit) {
+    public int draw (int bound) {
 
-        bitQueue.offer(bit);
-        
-    } // deliver ()
+        return medium.draw(this, bound);
+
+    } // draw ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Called by the medium to receive a word of packed bits, most significant
+     * first, from a given sender, which are then queued in that sender's lane
+     * for receiption by the client.  Each sender must deliver from only one
+     * thread at a time.
+     *
+     * @param sender The physical layer that sent the bits.
+     * @param bits   The packed bits received from the medium, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code>
+     *               received.
+     */
+    public void receiveBlock (PhysicalLayer sender, long bits, int count) {
+
+        lane(sender.port()).put(bits, count);
+        if (client != null) {
+            client.wakeup();
+        }
+
+    } // receiveBlock ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Called by a medium within a discrete-event simulation to receive a word
+     * of packed bits from a given sender, as <code>receiveBlock()</code> does.
+     * The simulation's thread both delivers bits and polls this layer's
+     * client, so it must never wait for the client to make room: the sender's
+     * lane grows instead.
+     *
+     * @param sender The physical layer that sent the bits.
+     * @param bits   The packed bits received from the medium, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code>
+     *               received.
+     */
+    public void receiveScheduled (PhysicalLayer sender, long bits, int count) {
+
+        lane(sender.port()).putOrGrow(bits, count);
+        if (client != null) {
+            client.wakeup();
+        }
+
+    } // receiveScheduled ()
     // =========================================================================
 
 
@@ -128,24 +282,117 @@ public class PhysicalLayer {
      */
     public Boolean retrieve () {
 
-        return bitQueue.poll();
+        int bit = -1;
+        for (int i = 0; bit < 0 && i < lanes.length; i += 1) {
+            if (lanes[i] != null) {
+                bit = lanes[i].poll();
+            }
+        }
+        return (bit < 0) ? null : (bit == 1);
 
     } // receive ()
     // ===============================================================
 
 
 
+    // ===============================================================
+    /**
+     * @return the number of lanes, which are indexed by the senders' ports;
+     *         a port from which nothing has arrived has an empty lane.
+     */
+    public int laneCount () {
+
+        return lanes.length;
+
+    } // laneCount ()
+    // ===============================================================
+
+
+
+    // ===============================================================
+    /**
+     * Called by the client to move as many whole bytes as have been received
+     * from one sender (or as many as fit) out of that sender's lane.  The
+     * bits of any partial byte are left in the lane.
+     *
+     * @param port The sender's port, from 0 to <code>laneCount() - 1</code>.
+     * @param dst  The array into which to place the bytes.
+     * @param off  The index at which to place the first byte.
+     * @param len  The maximum number of bytes to move.
+     * @return the number of bytes moved.
+     */
+    public int retrieve (int port, byte[] dst, int off, int len) {
+
+        BitRingBuffer lane = lanes[port];
+
+        return (lane == null) ? 0 : lane.drainBytes(dst, off, len);
+
+    } // retrieve ()
+    // ===============================================================
+
+
+
+    // ===============================================================
+    // PRIVATE METHODS
+    // ===============================================================
+
+
+
+    // ===============================================================
+    /**
+     * Find the lane for bits from a given port, creating it if need be.
+     * Creation is rare, so it copies the array of lanes under a lock; lookup
+     * needs none.
+     *
+     * @param port The sender's port.
+     * @return the lane.
+     */
+    private BitRingBuffer lane (int port) {
+
+        BitRingBuffer[] current = lanes;
+        if (port < current.length && current[port] != null) {
+            return current[port];
+        }
+
+        synchronized (this) {
+            current = lanes;
+            if (port >= current.length) {
+                current = Arrays.copyOf(current, port + 1);
+            } else if (current[port] != null) {
+                return current[port];
+            } else {
+                current = current.clone();
+            }
+            current[port] = new BitRingBuffer(LANE_CAPACITY);
+            lanes = current;
+            return current[port];
+        }
+
+    } // lane ()
+    // ===============================================================
+
+
+
     // ===============================================================
     // DATA MEMBERS
 
     /** The medium to which this layer is connected. */
     private Medium medium;
 
+    /** This layer's port on its medium. */
+    private int    port;
+
     /** The data link layer above this physical layer. */
     private DataLinkLayer client;
 
-    /** A queue of bits that have been received from the medium. */
-    private Queue<Boolean> bitQueue;
+    /** The bits that have been received from each sender, by port. */
+    private volatile BitRingBuffer[] lanes;
+
+    /** The number of received bits from one sender that may be buffered
+     *  before that sender must wait.  Modest, as a host on a large medium
+     *  may have many lanes, but still room for several of the largest
+     *  frames. */
+    public static final int LANE_CAPACITY = 1 << 16;
     // ===============================================================
 
 
@@ -0,0 +1,321 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A data link layer for subclasses written against the older interface, in
+ * which frames are passed as <code>Queue&lt;Byte&gt;</code>.  Such a subclass
+ * need only extend this class rather than <code>DataLinkLayer</code>: the
+ * <code>Frame</code>-based methods here copy each frame to and from a queue
+ * and call the older abstract methods.
+ *
+ * The received bytes are visible, as before, through
+ * <code>receiveBuffer</code>, a queue that reads and removes the bytes of the
+ * underlying buffer in place.  Data to send is still taken from the send
+ * buffer by <code>sendNextFrame()</code>, which cannot be replaced by a queue.
+ * Every frame is copied into boxed bytes, so new layers should extend
+ * <code>DataLinkLayer</code> directly.
+ *
+ * @file   QueueDataLinkLayer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public abstract class QueueDataLinkLayer extends DataLinkLayer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     */
+    public QueueDataLinkLayer () {
+
+	receiveBuffer = new FrameQueue();
+
+    } // QueueDataLinkLayer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Frame the data through <code>createFrame(Queue&lt;Byte&gt;)</code>.
+     *
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The empty frame into which to place the complete frame.
+     */
+    protected void createFrame (Frame data, Frame framed) {
+
+	Queue<Byte> framedData = createFrame(toQueue(data));
+	if (framedData != null) {
+	    for (byte b : framedData) {
+		framed.add(b);
+	    }
+	}
+
+    } // createFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Extract a frame's data through <code>processFrame()</code>.
+     *
+     * @param  data The frame into which to place the extracted data.  Its
+     *              previous contents are discarded.
+     * @return <code>true</code> if a frame's data was extracted;
+     *         <code>false</code> otherwise.
+     */
+    protected boolean processFrame (Frame data) {
+
+	Queue<Byte> extracted = processFrame();
+	if (extracted == null) {
+	    return false;
+	}
+
+	data.clear();
+	for (byte b : extracted) {
+	    data.add(b);
+	}
+	return true;
+
+    } // processFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Do the bookkeeping for a sent frame through
+     * <code>finishFrameSend(Queue&lt;Byte&gt;)</code>.
+     *
+     * @param frame The framed data that was transmitted.
+     */
+    protected void finishFrameSend (Frame frame) {
+
+	finishFrameSend(toQueue(frame));
+
+    } // finishFrameSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Do the bookkeeping for a received frame through
+     * <code>finishFrameReceive(Queue&lt;Byte&gt;)</code>.
+     *
+     * @param frame The frame of bytes received.
+     */
+    protected void finishFrameReceive (Frame frame) {
+
+	finishFrameReceive(toQueue(frame));
+
+    } // finishFrameReceive ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Transmit a sequence of bytes as bits (e.g., to resend a frame).
+     *
+     * @param data The sequence of bytes to send.
+     */
+    protected void transmit (Queue<Byte> data) {
+
+	Frame frame = new Frame(data.size());
+	for (byte b : data) {
+	    frame.add(b);
+	}
+	transmit(frame);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Embed a raw sequence of bytes into a framed sequence.
+     *
+     * @param  data The raw sequence of bytes to be framed.
+     * @return A complete frame.
+     */
+    abstract protected Queue<Byte> createFrame (Queue<Byte> data);
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether <code>receiveBuffer</code> contains a complete frame.
+     * If so, extract its contents, removing all metadata and (if applicable)
+     * checking its correctness, then returning (if possible) the contained
+     * data.
+     *
+     * @return if possible, the extracted data from the frame; <code>null</code>
+     *         otherwise.
+     */
+    abstract protected Queue<Byte> processFrame ();
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * After sending a frame, do any bookkeeping (e.g., buffer the frame in case
+     * a resend is required).
+     *
+     * @param frame The framed data that was transmitted.
+     */
+    abstract protected void finishFrameSend (Queue<Byte> frame);
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * After receiving a frame, do any bookkeeping (e.g., deliver the frame to
+     * the client, if appropriate) and responding (e.g., send an
+     * acknowledgment).
+     *
+     * @param frame The frame of bytes received.
+     */
+    abstract protected void finishFrameReceive (Queue<Byte> frame);
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param frame A frame.
+     * @return a new queue holding a copy of the frame's bytes.
+     */
+    private static Queue<Byte> toQueue (Frame frame) {
+
+	Queue<Byte> queue = new LinkedList<Byte>();
+	for (int i = 0; i < frame.length(); i += 1) {
+	    queue.add(frame.get(i));
+	}
+	return queue;
+
+    } // toQueue ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A view as a queue of the receive buffer of the sender whose frame is
+     * being processed: bytes are added at the buffer's end and removed from
+     * its front, in place.  Its iterator cannot remove bytes.
+     */
+    private class FrameQueue extends AbstractQueue<Byte> {
+
+	@Override
+	public int size () {
+
+	    return frame().length();
+
+	}
+
+	@Override
+	public boolean offer (Byte b) {
+
+	    frame().add(b);
+	    return true;
+
+	}
+
+	@Override
+	public Byte poll () {
+
+	    if (frame().isEmpty()) {
+		return null;
+	    }
+	    byte b = frame().get(0);
+	    frame().discard(1);
+	    return b;
+
+	}
+
+	@Override
+	public Byte peek () {
+
+	    return frame().isEmpty() ? null : frame().get(0);
+
+	}
+
+	@Override
+	public Iterator<Byte> iterator () {
+
+	    return new Iterator<Byte>() {
+
+		@Override
+		public boolean hasNext () {
+		    return index < frame().length();
+		}
+
+		@Override
+		public Byte next () {
+		    if (index >= frame().length()) {
+			throw new NoSuchElementException();
+		    }
+		    index += 1;
+		    return frame().get(index - 1);
+		}
+
+		private int index = 0;
+
+	    };
+
+	}
+
+	private Frame frame () {
+
+	    return QueueDataLinkLayer.super.receiveBuffer;
+
+	}
+
+    } // class FrameQueue
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The received bytes, as a queue over the underlying buffer.  Hides the
+     *  <code>Frame</code> of the same name, for the older subclasses. */
+    protected Queue<Byte> receiveBuffer;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class QueueDataLinkLayer
+// =============================================================================
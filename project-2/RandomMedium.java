@@ -0,0 +1,290 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A medium that damages or loses what it carries at random.  Each sender
+ * draws from a generator of its own, split in port order from one seeded for
+ * the medium, so that senders never contend for a generator and a given seed
+ * always gives the same damage.  Subclasses model the damage, keeping their
+ * progress through it in each sender's <code>Noise</code>; most skip ahead
+ * from one damaging event to the next, so that at realistic rates the cost
+ * is per event, not per bit.
+ *
+ * @file   RandomMedium.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public abstract class RandomMedium extends Medium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a medium whose damage is drawn from an arbitrary seed.
+     */
+    public RandomMedium () {
+
+	setSeed(new SplittableRandom().nextLong());
+
+    } // RandomMedium ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Reseed the medium, so that the damage from here on is that which the
+     * seed always gives.  Set it before any client transmits.
+     *
+     * @param seed The seed.
+     */
+    public synchronized void setSeed (long seed) {
+
+	root = new SplittableRandom(seed);
+	Noise[] reseeded = new Noise[noises.length];
+	for (int port = 0; port < reseeded.length; port += 1) {
+	    reseeded[port] = new Noise(root.split());
+	}
+	noises = reseeded;
+
+    } // setSeed ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Register a client, giving it a generator of its own.
+     *
+     * @param client The physical layer of a stack to connect to this medium.
+     * @return the client's port.
+     */
+    public synchronized int register (PhysicalLayer client) {
+
+	int port = super.register(client);
+	if (port >= noises.length) {
+	    Noise[] larger = Arrays.copyOf(noises, port + 1);
+	    larger[port] = new Noise(root.split());
+	    noises = larger;
+	}
+
+	return port;
+
+    } // register ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Draw a number at random on behalf of a client, from its own generator,
+     * so that the seed fixes its choices (e.g., of backoff) along with the
+     * damage.  Called only from the client's thread.
+     *
+     * @param client The client drawing the number.
+     * @param bound  The number of values from which to draw, from 0.
+     * @return the number drawn.
+     */
+    public int draw (PhysicalLayer client, int bound) {
+
+	return noise(client).random.nextInt(bound);
+
+    } // draw ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PROTECTED METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param sender A registered client.
+     * @return the sender's generator and progress.
+     */
+    protected Noise noise (PhysicalLayer sender) {
+
+	return noises[sender.port()];
+
+    } // noise ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Forget every sender's progress, e.g., because the probabilities that
+     * drew it have changed.  Each draws afresh on its next transmission.
+     */
+    protected synchronized void resetNoise () {
+
+	for (Noise noise : noises) {
+	    noise.gap     = NO_GAP;
+	    noise.sojourn = NO_GAP;
+	}
+
+    } // resetNoise ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Choose which of a run of bits in a word to flip, each with the same
+     * probability, by skipping ahead from each flip to the next.  The
+     * distance left over is carried to the next run.
+     *
+     * @param noise         The sender's generator and progress.
+     * @param logComplement The natural logarithm of the probability that a
+     *                      bit is not flipped (see <code>logComplement()</code>).
+     * @param count         The number of bits in the word.
+     * @param from          The first bit of the run, counted in the order
+     *                      sent (most significant first) from 0.
+     * @param to            The bit just past the run.
+     * @return a mask of the bits to flip.
+     */
+    protected static long skipToFlips (Noise  noise,
+				       double logComplement,
+				       int    count,
+				       int    from,
+				       int    to) {
+
+	if (noise.gap == NO_GAP) {
+	    noise.gap = geometric(noise.random, logComplement);
+	}
+
+	long flips    = 0;
+	int  position = from;
+	while (noise.gap < to - position) {
+	    position += (int)noise.gap;
+	    flips    |= 1L << (count - 1 - position);
+	    position += 1;
+	    noise.gap = geometric(noise.random, logComplement);
+	}
+	noise.gap -= to - position;
+
+	return flips;
+
+    } // skipToFlips ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Draw the number of trials before the first success, from the geometric
+     * distribution by inversion.
+     *
+     * @param random        The generator.
+     * @param logComplement The natural logarithm of the probability that a
+     *                      trial fails.
+     * @return the number of failed trials, or <code>Long.MAX_VALUE</code> if
+     *         no trial can succeed.
+     */
+    protected static long geometric (SplittableRandom random,
+				     double           logComplement) {
+
+	if (logComplement == 0) {
+	    return Long.MAX_VALUE;
+	}
+
+	double trials = Math.floor(Math.log1p(-random.nextDouble()) /
+				   logComplement);
+
+	return (trials < Long.MAX_VALUE) ? (long)trials : Long.MAX_VALUE;
+
+    } // geometric ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Check a probability, and find the logarithm used to draw from it.
+     *
+     * @param probability The probability of success in each trial.
+     * @return the natural logarithm of the probability of failure.
+     * @throws RuntimeException if the probability is not from 0 to 1.
+     */
+    protected static double logComplement (double probability) {
+
+	if (!(probability >= 0 && probability <= 1)) {
+	    throw new RuntimeException("Invalid probability " + probability);
+	}
+
+	return Math.log1p(-probability);
+
+    } // logComplement ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A sender's generator, and its progress through the damage that it
+     * draws.  Used only by the sender's thread.
+     */
+    protected static class Noise {
+
+	Noise (SplittableRandom random) {
+
+	    this.random = random;
+
+	}
+
+	/** The sender's generator. */
+	final SplittableRandom random;
+
+	/** The number of bits until the next damaging event, or
+	 *  <code>NO_GAP</code> if yet to be drawn. */
+	long                   gap     = NO_GAP;
+
+	/** The number of bits left in the current state, for media with
+	 *  states, or <code>NO_GAP</code> if yet to be drawn. */
+	long                   sojourn = NO_GAP;
+
+	/** Whether the sender's channel is in its bad state, for media with
+	 *  states. */
+	boolean                bad     = false;
+
+    } // class Noise
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The generator from which each sender's is split. */
+    private SplittableRandom  root;
+
+    /** Each sender's generator, by port.  Copied, never modified, when a
+     *  client registers. */
+    private volatile Noise[]  noises = new Noise[0];
+
+    /** The distance of a sender that has yet to draw one. */
+    protected static final long NO_GAP = -1;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class RandomMedium
+// =============================================================================
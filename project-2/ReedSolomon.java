@@ -0,0 +1,427 @@
+// =============================================================================
+/**
+ * A Reed-Solomon (n, k) code over GF(256).  Each block of up to k data bytes is
+ * followed by n - k check bytes, and up to (n - k) / 2 damaged bytes anywhere
+ * in the block can be corrected.  Blocks of fewer than k data bytes are
+ * shortened codewords, treated as though padded with leading zeros.
+ *
+ * Multiplication and division use log/antilog tables for the field generated
+ * by x^8 + x^4 + x^3 + x^2 + 1 (0x11D).  Decoding computes the syndromes,
+ * finds the error locator by Berlekamp-Massey, the error positions by a Chien
+ * search, and the error values by Forney's algorithm.  Instances are immutable
+ * apart from scratch space, so each must be used by one thread at a time.
+ *
+ * @file   ReedSolomon.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class ReedSolomon {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Describe a code and build its generator polynomial.
+     *
+     * @param n The number of bytes in a full block, at most 255.
+     * @param k The number of data bytes in a full block, less than n.
+     * @throws RuntimeException if n or k is out of range.
+     */
+    public ReedSolomon (int n, int k) {
+
+	if (n > FIELD_SIZE - 1 || k < 1 || k >= n) {
+	    throw new RuntimeException("Invalid Reed-Solomon code (" + n +
+				       ", " + k + ")");
+	}
+
+	this.n      = n;
+	this.k      = k;
+	this.checks = n - k;
+
+	// The generator is the product of (x - a^i) for each check byte,
+	// highest degree first.
+	generator    = new int[checks + 1];
+	generator[0] = 1;
+	for (int i = 0; i < checks; i += 1) {
+	    int root = EXP[i];
+	    for (int j = i + 1; j > 0; j -= 1) {
+		generator[j] = generator[j] ^ multiply(generator[j - 1], root);
+	    }
+	}
+
+	syndromes   = new int[checks];
+	locator     = new int[checks + 1];
+	previous    = new int[checks + 1];
+	temporary   = new int[checks + 1];
+	evaluator   = new int[checks];
+	positions   = new int[checks];
+
+    } // ReedSolomon ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes in a full block. */
+    public int n () {
+
+	return n;
+
+    } // n ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of data bytes in a full block. */
+    public int k () {
+
+	return k;
+
+    } // k ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of check bytes following each block's data. */
+    public int checks () {
+
+	return checks;
+
+    } // checks ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Compute the check bytes for a block of data.
+     *
+     * @param data   The array holding the data.
+     * @param off    The index of the first data byte.
+     * @param len    The number of data bytes, from 1 to k.
+     * @param dst    The array into which to store the check bytes.
+     * @param dstOff The index at which to store the first check byte.
+     * @throws RuntimeException if the length is out of range.
+     */
+    public void encode (byte[] data, int off, int len, byte[] dst, int dstOff) {
+
+	if (len < 1 || len > k) {
+	    throw new RuntimeException("Invalid block length " + len);
+	}
+
+	// Divide the data, shifted up by the number of checks, by the
+	// generator; the remainder is the check bytes.
+	int[] remainder = temporary;
+	for (int i = 0; i < checks; i += 1) {
+	    remainder[i] = 0;
+	}
+	for (int i = off; i < off + len; i += 1) {
+	    int feedback = (data[i] & 0xff) ^ remainder[0];
+	    for (int j = 0; j < checks - 1; j += 1) {
+		remainder[j] = remainder[j + 1] ^
+		               multiply(generator[j + 1], feedback);
+	    }
+	    remainder[checks - 1] = multiply(generator[checks], feedback);
+	}
+
+	for (int i = 0; i < checks; i += 1) {
+	    dst[dstOff + i] = (byte)remainder[i];
+	}
+
+    } // encode ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Correct a block in place: its data bytes followed by its check bytes.
+     *
+     * @param block The array holding the block.
+     * @param off   The index of the first byte of the block.
+     * @param len   The number of bytes in the block, data and checks.
+     * @return the number of bytes corrected, or <code>-1</code> if the block
+     *         has more errors than can be corrected.
+     */
+    public int decode (byte[] block, int off, int len) {
+
+	if (len <= checks || len > n) {
+	    return -1;
+	}
+
+	if (!computeSyndromes(block, off, len)) {
+	    return 0;
+	}
+
+	int errors = findLocator();
+	if (errors > checks / 2) {
+	    return -1;
+	}
+
+	// Chien search: byte i of the block is the coefficient of
+	// x^(len - 1 - i), and is in error if the locator has a root at the
+	// inverse of a^(len - 1 - i).
+	int found = 0;
+	for (int i = 0; i < len && found <= errors; i += 1) {
+	    int power = len - 1 - i;
+	    if (evaluate(locator, errors, EXP[(FIELD_SIZE - 1 - power) %
+					      (FIELD_SIZE - 1)]) == 0) {
+		if (found == errors) {
+		    return -1;
+		}
+		positions[found] = i;
+		found += 1;
+	    }
+	}
+	if (found != errors) {
+	    return -1;
+	}
+
+	// Forney: the evaluator is the syndromes times the locator, modulo
+	// x^checks, and each error's value is X * evaluator(1/X) divided by
+	// locator'(1/X).
+	for (int i = 0; i < checks; i += 1) {
+	    int sum = 0;
+	    for (int j = 0; j <= Math.min(i, errors); j += 1) {
+		sum ^= multiply(locator[j], syndromes[i - j]);
+	    }
+	    evaluator[i] = sum;
+	}
+	for (int e = 0; e < errors; e += 1) {
+
+	    int power   = len - 1 - positions[e];
+	    int x       = EXP[power];
+	    int xInv    = EXP[(FIELD_SIZE - 1 - power) % (FIELD_SIZE - 1)];
+	    int omega   = evaluate(evaluator, checks - 1, xInv);
+
+	    // The formal derivative keeps only the odd-degree terms.
+	    int derivative = 0;
+	    int xInvSquare = multiply(xInv, xInv);
+	    int term       = 1;
+	    for (int j = 1; j <= errors; j += 2) {
+		derivative ^= multiply(locator[j], term);
+		term        = multiply(term, xInvSquare);
+	    }
+	    if (derivative == 0) {
+		return -1;
+	    }
+
+	    int value = multiply(x, divide(omega, derivative));
+	    block[off + positions[e]] ^= (byte)value;
+
+	}
+
+	// Make sure that the corrected block is a codeword.
+	if (computeSyndromes(block, off, len)) {
+	    return -1;
+	}
+
+	return errors;
+
+    } // decode ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Evaluate the block, as a polynomial, at each root of the generator.
+     *
+     * @return <code>true</code> if any syndrome is non-zero (i.e., the block
+     *         has errors).
+     */
+    private boolean computeSyndromes (byte[] block, int off, int len) {
+
+	boolean damaged = false;
+	for (int j = 0; j < checks; j += 1) {
+	    int root = EXP[j];
+	    int sum  = 0;
+	    for (int i = off; i < off + len; i += 1) {
+		sum = multiply(sum, root) ^ (block[i] & 0xff);
+	    }
+	    syndromes[j] = sum;
+	    damaged |= (sum != 0);
+	}
+
+	return damaged;
+
+    } // computeSyndromes ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Find the error locator polynomial, lowest degree first, by
+     * Berlekamp-Massey.
+     *
+     * @return the degree of the locator (the number of errors).
+     */
+    private int findLocator () {
+
+	for (int i = 0; i <= checks; i += 1) {
+	    locator[i]  = 0;
+	    previous[i] = 0;
+	}
+	locator[0]  = 1;
+	previous[0] = 1;
+
+	int degree      = 0;
+	int shift       = 1;
+	int lastDiscrep = 1;
+	for (int step = 0; step < checks; step += 1) {
+
+	    int discrepancy = syndromes[step];
+	    for (int i = 1; i <= degree; i += 1) {
+		discrepancy ^= multiply(locator[i], syndromes[step - i]);
+	    }
+
+	    if (discrepancy == 0) {
+		shift += 1;
+		continue;
+	    }
+
+	    int scale = divide(discrepancy, lastDiscrep);
+	    if (2 * degree <= step) {
+		System.arraycopy(locator, 0, temporary, 0, checks + 1);
+		subtractShifted(scale, shift);
+		degree      = step + 1 - degree;
+		System.arraycopy(temporary, 0, previous, 0, checks + 1);
+		lastDiscrep = discrepancy;
+		shift       = 1;
+	    } else {
+		subtractShifted(scale, shift);
+		shift += 1;
+	    }
+
+	}
+
+	return degree;
+
+    } // findLocator ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Subtract from the locator the previous locator, scaled and shifted up.
+     */
+    private void subtractShifted (int scale, int shift) {
+
+	for (int i = 0; i + shift <= checks; i += 1) {
+	    locator[i + shift] ^= multiply(scale, previous[i]);
+	}
+
+    } // subtractShifted ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Evaluate a polynomial, lowest degree first, at a point.
+     */
+    private static int evaluate (int[] poly, int degree, int x) {
+
+	int sum = 0;
+	for (int i = degree; i >= 0; i -= 1) {
+	    sum = multiply(sum, x) ^ poly[i];
+	}
+
+	return sum;
+
+    } // evaluate ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the product of two field elements. */
+    private static int multiply (int a, int b) {
+
+	return (a == 0 || b == 0) ? 0 : EXP[LOG[a] + LOG[b]];
+
+    } // multiply ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the quotient of two field elements, the divisor non-zero. */
+    private static int divide (int a, int b) {
+
+	return (a == 0) ? 0 : EXP[LOG[a] + (FIELD_SIZE - 1) - LOG[b]];
+
+    } // divide ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The number of bytes in a full block. */
+    private final int   n;
+
+    /** The number of data bytes in a full block. */
+    private final int   k;
+
+    /** The number of check bytes in each block. */
+    private final int   checks;
+
+    /** The generator polynomial, highest degree first. */
+    private final int[] generator;
+
+    /** Scratch space for decoding. */
+    private final int[] syndromes, locator, previous, temporary, evaluator,
+	                positions;
+
+    /** The number of elements in the field. */
+    private static final int   FIELD_SIZE = 256;
+
+    /** The field's primitive polynomial, x^8 + x^4 + x^3 + x^2 + 1. */
+    private static final int   PRIMITIVE  = 0x11D;
+
+    /** The powers of the primitive element, doubled so that the sum of two
+     *  logarithms needs no reduction. */
+    private static final int[] EXP = new int[2 * FIELD_SIZE];
+
+    /** The logarithm of each non-zero element. */
+    private static final int[] LOG = new int[FIELD_SIZE];
+    static {
+	int x = 1;
+	for (int i = 0; i < FIELD_SIZE - 1; i += 1) {
+	    EXP[i] = x;
+	    LOG[x] = i;
+	    x <<= 1;
+	    if (x >= FIELD_SIZE) {
+		x ^= PRIMITIVE;
+	    }
+	}
+	for (int i = FIELD_SIZE - 1; i < EXP.length; i += 1) {
+	    EXP[i] = EXP[i - (FIELD_SIZE - 1)];
+	}
+    }
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class ReedSolomon
+// =============================================================================
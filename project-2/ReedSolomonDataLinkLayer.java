@@ -0,0 +1,180 @@
+// =============================================================================
+/**
+ * @file   ReedSolomonDataLinkLayer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ *
+ * A data link layer that corrects bursts of errors.  It frames and
+ * acknowledges as <code>PARDataLinkLayer</code> does, but protects the data
+ * and checksum of each frame with a Reed-Solomon (n, k) code over GF(256):
+ * every block of up to k bytes is followed by n - k check bytes, and up to
+ * (n - k) / 2 damaged bytes per block are corrected on receipt.  Only a frame
+ * that cannot be corrected, or whose framing itself was damaged, is sent
+ * again.  Since a block may hold far more than <code>MAX_FRAME_SIZE</code>
+ * bytes, each frame carries up to a whole block of data.
+ */
+public class ReedSolomonDataLinkLayer extends PARDataLinkLayer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.  Use a (255, 223) code, correcting up to 16 bytes per
+     * block, and let frames fill a whole block.
+     */
+    public ReedSolomonDataLinkLayer () {
+
+	setCode(DEFAULT_N, DEFAULT_K);
+	setFrameSize(FRAME_SIZE_LIMIT);
+
+    } // ReedSolomonDataLinkLayer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Choose the code.  Both ends of a link must use the same one.
+     *
+     * @param n The number of bytes in a full block, at most 255.
+     * @param k The number of data bytes in a full block, less than n.
+     * @throws RuntimeException if n or k is out of range.
+     */
+    public void setCode (int n, int k) {
+
+	code   = new ReedSolomon(n, k);
+	checks = new byte[code.checks()];
+
+    } // setCode ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Fill at most a block with data, leaving room for the header and
+     * checksum.
+     *
+     * @return the largest number of data bytes for the next frame.
+     */
+    protected int maxFrameSize () {
+
+	return Math.min(super.maxFrameSize(),
+			Math.max(1, code.k() - checksum.size() - headerSize()));
+
+    } // maxFrameSize ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append the data and its checksum, divided into blocks of k bytes, each
+     * followed by its check bytes, with any tag bytes escaped.
+     *
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The frame to which to append the encoded bytes.
+     */
+    protected void encode (Frame data, Frame framed) {
+
+	payload.clear();
+	payload.add(data);
+	checksum.append(payload);
+
+	byte[] array = payload.array();
+	int    end   = payload.offset() + payload.length();
+	for (int start = payload.offset(); start < end; start += code.k()) {
+
+	    int length = Math.min(code.k(), end - start);
+	    code.encode(array, start, length, checks, 0);
+
+	    for (int i = start; i < start + length; i += 1) {
+		addEscaped(array[i], framed);
+	    }
+	    for (int i = 0; i < checks.length; i += 1) {
+		addEscaped(checks[i], framed);
+	    }
+
+	}
+
+    } // encode ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Correct each block in place, gather the data of the blocks together, and
+     * then verify the checksum.
+     *
+     * @param data The blocks of a frame, replaced by the original data.
+     * @return <code>true</code> if the data is intact after correction;
+     *         <code>false</code> if the frame is damaged beyond repair.
+     */
+    protected boolean decode (Frame data) {
+
+	byte[] array     = data.array();
+	int    end       = data.offset() + data.length();
+	int    written   = 0;
+	int    corrected = 0;
+	for (int start = data.offset(); start < end; start += code.n()) {
+
+	    int length = Math.min(code.n(), end - start);
+	    int fixed  = code.decode(array, start, length);
+	    if (fixed < 0) {
+		if (debug) {
+		    System.out.println("ReedSolomonDataLinkLayer.decode(): " +
+				       "uncorrectable block");
+		}
+		return false;
+	    }
+	    corrected += fixed;
+
+	    // Move the block's data down over the check bytes before it.
+	    int dataLength = length - code.checks();
+	    System.arraycopy(array, start,
+			     array, data.offset() + written,
+			     dataLength);
+	    written += dataLength;
+
+	}
+	data.truncate(written);
+
+	if (debug && corrected > 0) {
+	    System.out.printf("ReedSolomonDataLinkLayer.decode(): corrected %d\n",
+			      corrected);
+	}
+
+	return checksum.check(data);
+
+    } // decode ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The code protecting each frame. */
+    private ReedSolomon code;
+
+    /** Space for the check bytes of one block. */
+    private byte[]      checks;
+
+    /** Space in which to assemble the data and its checksum. */
+    private final Frame payload = new Frame();
+
+    /** The number of bytes in a full block, unless another code is set. */
+    public static final int DEFAULT_N = 255;
+
+    /** The number of data bytes in a full block, unless another code is
+     *  set. */
+    public static final int DEFAULT_K = 223;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class ReedSolomonDataLinkLayer
+// =============================================================================
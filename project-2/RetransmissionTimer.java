@@ -0,0 +1,201 @@
+// =============================================================================
+/**
+ * Chooses how long to wait for an acknowledgment before resending, from the
+ * round-trip times actually observed.  It keeps a smoothed round-trip time and
+ * its mean deviation (Jacobson/Karels), and sets the timeout to the smoothed
+ * time plus four deviations.  Following Karn's algorithm, the caller samples
+ * only frames that were never resent, whose acknowledgments are unambiguous.
+ * Each expiry doubles the timeout, until an acknowledgment of new data shows
+ * that frames are getting through again.  All times are in nanoseconds, as
+ * from a <code>Clock</code>.
+ *
+ * @file   RetransmissionTimer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class RetransmissionTimer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a timer with the default bounds.
+     */
+    public RetransmissionTimer () {
+
+	this(DEFAULT_INITIAL_TIMEOUT, DEFAULT_MIN_TIMEOUT, DEFAULT_MAX_TIMEOUT);
+
+    } // RetransmissionTimer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a timer.  Equal bounds give a fixed timeout.
+     *
+     * @param initialTimeout The timeout before any round trip is sampled.
+     * @param minTimeout     The shortest timeout.
+     * @param maxTimeout     The longest timeout, however much it backs off.
+     * @throws RuntimeException if the timeouts are out of order.
+     */
+    public RetransmissionTimer (long initialTimeout,
+				long minTimeout,
+				long maxTimeout) {
+
+	if (minTimeout <= 0 || maxTimeout < minTimeout ||
+	    initialTimeout < minTimeout || initialTimeout > maxTimeout) {
+	    throw new RuntimeException("Invalid timeouts " + initialTimeout +
+				       ", " + minTimeout + ", " + maxTimeout);
+	}
+
+	this.minTimeout = minTimeout;
+	this.maxTimeout = maxTimeout;
+	this.timeout    = initialTimeout;
+
+    } // RetransmissionTimer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the current timeout, including any backoff. */
+    public long timeout () {
+
+	return clamp(timeout << backoffs);
+
+    } // timeout ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the smoothed round-trip time, or 0 if none has been sampled. */
+    public long smoothedRtt () {
+
+	return smoothedRtt;
+
+    } // smoothedRtt ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record the round-trip time of a frame that was sent only once, and
+     * recompute the timeout from it, ending any backoff.
+     *
+     * @param rtt The time from sending the frame to its acknowledgment.
+     */
+    public void sample (long rtt) {
+
+	rtt = Math.max(rtt, 0);
+	if (!sampled) {
+	    smoothedRtt = rtt;
+	    rttVariance = rtt / 2;
+	    sampled     = true;
+	} else {
+	    rttVariance += (Math.abs(smoothedRtt - rtt) - rttVariance) / 4;
+	    smoothedRtt += (rtt - smoothedRtt) / 8;
+	}
+
+	timeout  = clamp(smoothedRtt + 4 * rttVariance);
+	backoffs = 0;
+
+    } // sample ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Double the timeout after it has expired.
+     */
+    public void backoff () {
+
+	if (timeout() < maxTimeout) {
+	    backoffs += 1;
+	}
+
+    } // backoff ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * End any backoff once new data is acknowledged, even by an acknowledgment
+     * too ambiguous to sample.
+     */
+    public void progress () {
+
+	backoffs = 0;
+
+    } // progress ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the given timeout, kept within the bounds. */
+    private long clamp (long value) {
+
+	return Math.max(minTimeout, Math.min(maxTimeout, value));
+
+    } // clamp ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The shortest timeout. */
+    private final long minTimeout;
+
+    /** The longest timeout. */
+    private final long maxTimeout;
+
+    /** The timeout before any backoff. */
+    private long       timeout;
+
+    /** The number of times that the timeout has been doubled. */
+    private int        backoffs    = 0;
+
+    /** Whether any round trip has been sampled. */
+    private boolean    sampled     = false;
+
+    /** The smoothed round-trip time, or 0 before the first sample. */
+    private long       smoothedRtt = 0;
+
+    /** The smoothed mean deviation of the round-trip time. */
+    private long       rttVariance = 0;
+
+    /** The timeout before any round trip is sampled: 200 ms. */
+    public static final long DEFAULT_INITIAL_TIMEOUT = 200_000_000L;
+
+    /** The shortest timeout: 1 ms. */
+    public static final long DEFAULT_MIN_TIMEOUT     =   1_000_000L;
+
+    /** The longest timeout: 2 s. */
+    public static final long DEFAULT_MAX_TIMEOUT     = 2_000_000_000L;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class RetransmissionTimer
+// =============================================================================
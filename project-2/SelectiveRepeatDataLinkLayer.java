@@ -0,0 +1,582 @@
+// =============================================================================
+// IMPORTS
+
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * @file   SelectiveRepeatDataLinkLayer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ *
+ * A data link layer that uses the framing and checksum of
+ * <code>PARDataLinkLayer</code> and keeps a window of frames in flight, but
+ * that, unlike Go-Back-N, resends only the frames that are actually lost.
+ * Each frame has its own retransmission deadline and is acknowledged
+ * individually.  The receiver buffers frames that arrive out of order and
+ * delivers them to its client strictly in sequence.
+ *
+ * Optionally, the receiver instead answers each data frame with a selective
+ * acknowledgment (SACK): the sequence number it next expects, followed by a
+ * bitmap of the frames beyond that which it already holds.  A single SACK
+ * thus also repairs the loss of earlier acknowledgments.
+ */
+public class SelectiveRepeatDataLinkLayer extends PARDataLinkLayer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     */
+    public SelectiveRepeatDataLinkLayer () {
+
+	sent         = new Frame[SEQUENCE_SPACE];
+	sentLength   = new int[SEQUENCE_SPACE];
+	acked        = new boolean[SEQUENCE_SPACE];
+	deadlines    = new long[SEQUENCE_SPACE];
+	sentAt       = new long[SEQUENCE_SPACE];
+	wasResent    = new boolean[SEQUENCE_SPACE];
+	received     = new Frame[SEQUENCE_SPACE];
+	windowSize   = DEFAULT_WINDOW_SIZE;
+	controlData  = new Frame(BITMAP_SIZE);
+	controlFrame = new Frame();
+	resendFrame  = new Frame();
+	headerData   = new Frame();
+
+    } // SelectiveRepeatDataLinkLayer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set the number of frames that may be sent without yet being
+     * acknowledged, and that the receiver will buffer out of order.
+     *
+     * @param windowSize The window size, from 1 to <code>MAX_WINDOW_SIZE</code>.
+     * @throws RuntimeException if the window size is out of range.
+     */
+    public void setWindowSize (int windowSize) {
+
+	if (windowSize < 1 || windowSize > MAX_WINDOW_SIZE) {
+	    throw new RuntimeException("Invalid window size " + windowSize);
+	}
+
+	this.windowSize = windowSize;
+
+    } // setWindowSize ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Refuse piggybacking, as this layer sends its own acknowledgments and
+     * never carries them on data frames.
+     *
+     * @param piggybacking Must be <code>false</code>.
+     * @throws RuntimeException if piggybacking is requested.
+     */
+    public void setPiggybacking (boolean piggybacking) {
+
+	if (piggybacking) {
+	    throw new RuntimeException("Selective repeat does not piggyback " +
+				       "acknowledgments");
+	}
+
+    } // setPiggybacking ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Refuse an acknowledgment delay, as this layer never holds an
+     * acknowledgment back.
+     *
+     * @param millis Ignored.
+     * @throws RuntimeException always.
+     */
+    public void setAckDelay (long millis) {
+
+	throw new RuntimeException("Selective repeat does not delay acknowledgments");
+
+    } // setAckDelay ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Choose between individual acknowledgments and SACK bitmaps.
+     *
+     * @param selectiveAcks <code>true</code> to send SACK bitmaps.
+     */
+    public void setSelectiveAcks (boolean selectiveAcks) {
+
+	this.selectiveAcks = selectiveAcks;
+
+    } // setSelectiveAcks ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Prefix the data with a header holding the frame type and the next
+     * sequence number, then frame it.  A copy of the data is held until it is
+     * acknowledged.
+     *
+     * @param data   The raw sequence of bytes to be framed.
+     * @param framed The empty frame into which to place the complete frame.
+     */
+    protected void createFrame (Frame data, Frame framed) {
+
+	Frame copy = framePool.acquire();
+	copy.add(data);
+	sent[nextSequence]  = copy;
+	sentLength[nextSequence] = copy.length();
+	acked[nextSequence] = false;
+
+	frameWithHeader(DATA_TYPE, nextSequence, copy, framed);
+	nextSequence = (nextSequence + 1) % SEQUENCE_SPACE;
+
+    } // createFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Extract the next complete, undamaged frame, if any.  Damaged frames are
+     * dropped; the sender's per-frame timers recover from them.
+     *
+     * @param  data The frame into which to place the extracted frame, header
+     *              included.
+     * @return <code>true</code> if the buffer contained a complete, undamaged
+     *         frame with a header; <code>false</code> otherwise.
+     */
+    protected boolean processFrame (Frame data) {
+
+	return extract(data) == FRAME_INTACT && data.length() >= HEADER_SIZE;
+
+    } // processFrame ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A new frame may be sent only while the window has room.
+     *
+     * @return <code>true</code> if a frame may be sent now.
+     */
+    protected boolean readyToSend () {
+
+	return outstanding() < windowSize;
+
+    } // readyToSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * After sending a frame, start its own timer.
+     *
+     * @param frame The framed data that was transmitted.
+     */
+    protected void finishFrameSend (Frame frame) {
+
+	int sequence = (nextSequence - 1 + SEQUENCE_SPACE) % SEQUENCE_SPACE;
+	wasResent[sequence] = false;
+	startTimer(sequence);
+
+    } // finishFrameSend ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * After receiving a frame, either record acknowledgments, or, for data,
+     * buffer it, acknowledge it, and deliver whatever is now in sequence.
+     *
+     * @param frame The frame received, header included.
+     */
+    protected void finishFrameReceive (Frame frame) {
+
+	byte type     = frame.get(0);
+	int  sequence = frame.get(1) & 0xff;
+
+	if (type == ACK_TYPE) {
+
+	    acknowledge(sequence);
+
+	} else if (type == SACK_TYPE) {
+
+	    // Everything before the cumulative sequence number has arrived, as
+	    // has each frame whose bit is set.
+	    int cumulative = (sequence - baseSequence + SEQUENCE_SPACE) %
+		             SEQUENCE_SPACE;
+	    if (cumulative <= outstanding()) {
+		while (baseSequence != sequence) {
+		    acknowledge(baseSequence);
+		}
+	    }
+	    for (int i = 0; i < (frame.length() - HEADER_SIZE) * Byte.SIZE; i += 1) {
+		int bits = frame.get(HEADER_SIZE + i / Byte.SIZE);
+		if ((bits & (0x80 >>> (i % Byte.SIZE))) != 0) {
+		    acknowledge((sequence + 1 + i) % SEQUENCE_SPACE);
+		}
+	    }
+
+	} else if (type == DATA_TYPE) {
+
+	    receiveData(sequence, frame);
+
+	}
+
+    } // finishFrameReceive ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Resend each unacknowledged frame whose own deadline has passed, backing
+     * off the timeout.
+     */
+    protected void checkTimeout () {
+
+	long    now     = now();
+	boolean expired = false;
+	for (int i = baseSequence;
+	     i != nextSequence;
+	     i = (i + 1) % SEQUENCE_SPACE) {
+
+	    if (!acked[i] && now - deadlines[i] >= 0) {
+
+		if (debug) {
+		    System.out.printf("SelectiveRepeatDataLinkLayer." +
+				      "checkTimeout(): resending %d\n", i);
+		}
+
+		// Back off once for all the frames that expire together.
+		if (!expired) {
+		    retransmissionTimer.backoff();
+		    expired = true;
+		}
+
+		wasResent[i] = true;
+		recordFrame(sent[i].length(), false);
+		resendFrame.clear();
+		frameWithHeader(DATA_TYPE, i, sent[i], resendFrame);
+		transmit(resendFrame);
+		startTimer(i);
+
+	    }
+
+	}
+
+    } // checkTimeout ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of header bytes in a frame. */
+    protected int headerSize () {
+
+	return HEADER_SIZE;
+
+    } // headerSize ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Accept a data frame: buffer it if it falls within the receive window,
+     * acknowledge it, and deliver any frames that are now in sequence.
+     *
+     * @param sequence The frame's sequence number.
+     * @param frame    The frame received, header included.
+     */
+    private void receiveData (int sequence, Frame frame) {
+
+	int ahead = (sequence - expectedSequence + SEQUENCE_SPACE) % SEQUENCE_SPACE;
+	if (ahead < windowSize) {
+
+	    // Buffer it, unless it is a duplicate of one already buffered.
+	    if (received[sequence] == null) {
+		Frame copy = framePool.acquire();
+		copy.add(frame.array(), frame.offset() + HEADER_SIZE,
+			 frame.length() - HEADER_SIZE);
+		received[sequence] = copy;
+	    }
+
+	} else if (ahead < SEQUENCE_SPACE - windowSize) {
+
+	    // Neither in the window nor a recent duplicate, so not acknowledged.
+	    return;
+
+	}
+
+	// Deliver, in order, every frame now available.
+	while (received[expectedSequence] != null) {
+	    Frame ready = received[expectedSequence];
+	    client.receive(ready.array(), ready.offset(), ready.length());
+	    framePool.release(ready);
+	    received[expectedSequence] = null;
+	    expectedSequence = (expectedSequence + 1) % SEQUENCE_SPACE;
+	}
+
+	// Acknowledge the frame (even a duplicate, whose ack may have been lost).
+	if (selectiveAcks) {
+	    sendSack();
+	} else {
+	    sendControl(ACK_TYPE, sequence);
+	}
+
+    } // receiveData ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record the acknowledgment of one frame, releasing its copy, and slide the
+     * window past every acknowledged frame at its start.  Acknowledgments for
+     * frames not in flight are ignored.
+     *
+     * @param sequence The sequence number acknowledged.
+     */
+    private void acknowledge (int sequence) {
+
+	if (!inFlight(sequence) || acked[sequence]) {
+	    return;
+	}
+
+	acked[sequence] = true;
+	cancelDeadline(deadlines[sequence]);
+	if (!wasResent[sequence]) {
+	    retransmissionTimer.sample(now() - sentAt[sequence]);
+	} else {
+	    retransmissionTimer.progress();
+	}
+	recordFrame(sent[sequence].length(), true);
+	framePool.release(sent[sequence]);
+	sent[sequence] = null;
+
+	// The data is delivered in order as the window slides past it.
+	while (baseSequence != nextSequence && acked[baseSequence]) {
+	    dataDelivered(sentLength[baseSequence]);
+	    baseSequence = (baseSequence + 1) % SEQUENCE_SPACE;
+	}
+
+    } // acknowledge ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Immediately transmit a selective acknowledgment: the next expected
+     * sequence number and a bitmap of the buffered frames beyond it.
+     */
+    private void sendSack () {
+
+	controlData.clear();
+	for (int i = 0; i < BITMAP_SIZE; i += 1) {
+	    int bits = 0;
+	    for (int j = 0; j < Byte.SIZE; j += 1) {
+		int sequence = (expectedSequence + 1 + i * Byte.SIZE + j) %
+		               SEQUENCE_SPACE;
+		if (received[sequence] != null) {
+		    bits |= 0x80 >>> j;
+		}
+	    }
+	    controlData.add((byte)bits);
+	}
+
+	controlFrame.clear();
+	frameWithHeader(SACK_TYPE, expectedSequence, controlData, controlFrame);
+	transmit(controlFrame);
+
+    } // sendSack ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Immediately transmit a control frame that holds only a header.
+     *
+     * @param type     The frame type.
+     * @param sequence The sequence number to carry.
+     */
+    private void sendControl (byte type, int sequence) {
+
+	controlData.clear();
+	controlFrame.clear();
+	frameWithHeader(type, sequence, controlData, controlFrame);
+	transmit(controlFrame);
+
+    } // sendControl ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Frame data preceded by a header.
+     *
+     * @param type     The frame type.
+     * @param sequence The sequence number.
+     * @param data     The data to follow the header.
+     * @param framed   The frame to which to append the complete frame.
+     */
+    private void frameWithHeader (byte type, int sequence, Frame data,
+				  Frame framed) {
+
+	headerData.clear();
+	headerData.add(type);
+	headerData.add((byte)sequence);
+	headerData.add(data);
+	frame(headerData, framed);
+
+    } // frameWithHeader ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Start, or restart, the timer of one frame.
+     *
+     * @param sequence The frame's sequence number.
+     */
+    private void startTimer (int sequence) {
+
+	sentAt[sequence]    = now();
+	deadlines[sequence] = sentAt[sequence] + retransmissionTimer.timeout();
+	scheduleDeadline(deadlines[sequence]);
+
+    } // startTimer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param sequence A sequence number.
+     * @return whether that frame has been sent and the window not yet slid past
+     *         it.
+     */
+    private boolean inFlight (int sequence) {
+
+	int offset = (sequence - baseSequence + SEQUENCE_SPACE) % SEQUENCE_SPACE;
+	return offset < outstanding();
+
+    } // inFlight ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of frames from the oldest unacknowledged onward. */
+    private int outstanding () {
+
+	return (nextSequence - baseSequence + SEQUENCE_SPACE) % SEQUENCE_SPACE;
+
+    } // outstanding ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The sent data held until acknowledged, indexed by sequence number. */
+    private final Frame[]   sent;
+
+    /** The length of each sent frame's data, kept after its release. */
+    private final int[]     sentLength;
+
+    /** Which sent frames have been acknowledged. */
+    private final boolean[] acked;
+
+    /** When each sent frame times out. */
+    private final long[]    deadlines;
+
+    /** When each sent frame was most recently sent. */
+    private final long[]    sentAt;
+
+    /** Which sent frames have been sent more than once. */
+    private final boolean[] wasResent;
+
+    /** Frames received ahead of those still awaited, by sequence number. */
+    private final Frame[]   received;
+
+    /** The data of a control frame. */
+    private final Frame     controlData;
+
+    /** Space in which to frame control frames. */
+    private final Frame     controlFrame;
+
+    /** Space in which to frame resent data frames. */
+    private final Frame     resendFrame;
+
+    /** Space in which to assemble a header and its data. */
+    private final Frame     headerData;
+
+    /** The number of frames that may be unacknowledged or buffered at once. */
+    private int             windowSize;
+
+    /** Whether to acknowledge with SACK bitmaps. */
+    private boolean         selectiveAcks    = false;
+
+    /** The sequence number of the oldest unacknowledged frame. */
+    private int             baseSequence     = 0;
+
+    /** The sequence number of the next frame to send. */
+    private int             nextSequence     = 0;
+
+    /** The sequence number of the next frame to deliver. */
+    private int             expectedSequence = 0;
+
+    /** The type of a frame carrying data. */
+    private static final byte DATA_TYPE           = 0;
+
+    /** The type of a frame acknowledging a single frame. */
+    private static final byte ACK_TYPE            = 1;
+
+    /** The type of a frame carrying a selective acknowledgment. */
+    private static final byte SACK_TYPE           = 2;
+
+    /** The bytes of header (type and sequence number) in every frame. */
+    private static final int  HEADER_SIZE         = 2;
+
+    /** The number of distinct sequence numbers. */
+    private static final int  SEQUENCE_SPACE      = 256;
+
+    /** The largest window for which sequence numbers remain unambiguous. */
+    public  static final int  MAX_WINDOW_SIZE     = SEQUENCE_SPACE / 2;
+
+    /** The bytes of bitmap in a SACK, covering the largest window. */
+    private static final int  BITMAP_SIZE         = MAX_WINDOW_SIZE / Byte.SIZE;
+
+    /** The window size used unless another is set. */
+    public  static final int  DEFAULT_WINDOW_SIZE = 16;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class SelectiveRepeatDataLinkLayer
+// =============================================================================
@@ -0,0 +1,435 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * The data that a data link layer has yet to send, held as a queue of
+ * segments: the arrays passed to <code>add()</code>, each with a read offset.
+ * Adding data only enqueues a reference to its array, however long it is, and
+ * the bytes are copied once, a frame's worth at a time, when taken for
+ * framing.  The number of bytes buffered is kept in a counter rather than
+ * counted.
+ *
+ * The buffer is bounded by a pair of watermarks.  Data is accepted only while
+ * fewer than the high watermark of bytes are buffered; a producer that must
+ * wait for room is woken only once the buffer has drained to the low
+ * watermark, so that it is not woken for every frame taken.  Each byte added
+ * has a position in the stream of all bytes ever added, so that a producer
+ * can tell when its data has been sent or acknowledged.
+ *
+ * Any number of threads may add data, but only one (the data link layer's
+ * event loop) may take it.  Each call that adds data does so as a unit: its
+ * bytes are not interleaved with those of other calls.
+ *
+ * @file   SendBuffer.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class SendBuffer {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     *
+     * @param lowWatermark  The number of buffered bytes to which the buffer
+     *                      must drain before a waiting producer is woken.
+     * @param highWatermark The number of buffered bytes at which producers
+     *                      must wait.
+     * @param onAppend      Run by a producer after each run of bytes that it
+     *                      appends, e.g., to wake the consumer.
+     * @throws RuntimeException if the watermarks are out of order.
+     */
+    public SendBuffer (long     lowWatermark,
+		       long     highWatermark,
+		       Runnable onAppend) {
+
+	setWatermarks(lowWatermark, highWatermark);
+	this.onAppend = onAppend;
+
+    } // SendBuffer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Change the watermarks.
+     *
+     * @param lowWatermark  The number of buffered bytes to which the buffer
+     *                      must drain before a waiting producer is woken.
+     * @param highWatermark The number of buffered bytes at which producers
+     *                      must wait.
+     * @throws RuntimeException if the watermarks are out of order.
+     */
+    public void setWatermarks (long lowWatermark, long highWatermark) {
+
+	if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+	    throw new RuntimeException("Invalid watermarks " + lowWatermark +
+				       ", " + highWatermark);
+	}
+
+	lock.lock();
+	try {
+	    this.lowWatermark  = lowWatermark;
+	    this.highWatermark = highWatermark;
+	    room.signalAll();
+	} finally {
+	    lock.unlock();
+	}
+
+    } // setWatermarks ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append a run of bytes, waiting as often as needed for room.  The array
+     * is not copied, so that run must not be modified until all of its bytes
+     * have been taken.
+     *
+     * @param data   The array holding the bytes to append.
+     * @param offset The index of the first byte to append.
+     * @param length The number of bytes to append.
+     * @return the stream position just past the last byte appended.
+     * @throws IndexOutOfBoundsException if the run is not within the array.
+     * @throws InterruptedException if interrupted while waiting, in which
+     *                              case only some of the bytes were appended.
+     */
+    public long put (byte[] data, int offset, int length)
+	throws InterruptedException {
+
+	return put(data, offset, length, null);
+
+    } // put ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append a run of bytes, as <code>put()</code> does, first reserving its
+     * place in the stream.  The stream position just past the run is passed
+     * to an action before any of the run is appended, while no other call
+     * can append, so that actions are taken in the order of their runs and
+     * before the consumer can take any of the bytes.
+     *
+     * @param data      The array holding the bytes to append.
+     * @param offset    The index of the first byte to append.
+     * @param length    The number of bytes to append.
+     * @param onReserve Given the stream position just past the run, or
+     *                  <code>null</code> for no action.
+     * @return the stream position just past the last byte appended.
+     * @throws IndexOutOfBoundsException if the run is not within the array.
+     * @throws InterruptedException if interrupted while waiting, in which
+     *                              case only some of the bytes were appended.
+     */
+    public long put (byte[]       data,
+		     int          offset,
+		     int          length,
+		     LongConsumer onReserve)
+	throws InterruptedException {
+
+	checkBounds(data, offset, length);
+
+	producers.lockInterruptibly();
+	try {
+
+	    if (onReserve != null) {
+		onReserve.accept(added + length);
+	    }
+
+	    int end = offset + length;
+	    while (offset < end) {
+		int count = (int)Math.min(end - offset, room());
+		if (count > 0) {
+		    append(data, offset, count);
+		    offset += count;
+		} else {
+		    awaitRoom();
+		}
+	    }
+
+	    return added;
+
+	} finally {
+	    producers.unlock();
+	}
+
+    } // put ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append as much of a run of bytes as there is room for, without waiting.
+     * The array is not copied, so the bytes accepted must not be modified
+     * until they have been taken.
+     *
+     * @param data   The array holding the bytes to append.
+     * @param offset The index of the first byte to append.
+     * @param length The number of bytes to append.
+     * @return the number of leading bytes of the run that were appended.
+     * @throws IndexOutOfBoundsException if the run is not within the array.
+     */
+    public int offer (byte[] data, int offset, int length) {
+
+	checkBounds(data, offset, length);
+
+	producers.lock();
+	try {
+
+	    int count = (int)Math.min(length, room());
+	    if (count > 0) {
+		append(data, offset, count);
+	    }
+
+	    return count;
+
+	} finally {
+	    producers.unlock();
+	}
+
+    } // offer ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Move up to a number of bytes from the front of the buffer to the end of a
+     * frame.  Called only by the consuming thread.
+     *
+     * @param frame The frame to which to append the bytes.
+     * @param limit The most bytes to move.
+     * @return the number of bytes moved.
+     */
+    public int take (Frame frame, int limit) {
+
+	int moved = 0;
+	Segment segment;
+	while (moved < limit && (segment = segments.peek()) != null) {
+
+	    int count = Math.min(limit - moved, segment.end - segment.next);
+	    frame.add(segment.data, segment.next, count);
+	    segment.next += count;
+	    moved        += count;
+
+	    if (segment.next == segment.end) {
+		segments.poll();
+	    }
+
+	}
+
+	// Wake any waiting producers only on draining past the low watermark.
+	long remaining = size.addAndGet(-moved);
+	if (remaining <= lowWatermark && remaining + moved > lowWatermark) {
+	    lock.lock();
+	    try {
+		room.signalAll();
+	    } finally {
+		lock.unlock();
+	    }
+	}
+
+	return moved;
+
+    } // take ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes buffered. */
+    public long size () {
+
+	return size.get();
+
+    } // size ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return whether no bytes are buffered. */
+    public boolean isEmpty () {
+
+	return segments.peek() == null;
+
+    } // isEmpty ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the stream position just past the last byte appended. */
+    public long position () {
+
+	return added;
+
+    } // position ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Append a run of bytes as a segment.  Called only while holding the
+     * producer lock.
+     */
+    private void append (byte[] data, int offset, int length) {
+
+	// Count the bytes before publishing them, so that the size never
+	// falls below what the consumer can see.
+	size.addAndGet(length);
+	segments.add(new Segment(data, offset, offset + length));
+	added += length;
+	onAppend.run();
+
+    } // append ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of bytes that may be appended now. */
+    private long room () {
+
+	return Math.max(0, highWatermark - size.get());
+
+    } // room ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Wait until the buffer drains to the low watermark.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void awaitRoom () throws InterruptedException {
+
+	lock.lockInterruptibly();
+	try {
+	    while (size.get() > lowWatermark) {
+		room.await();
+	    }
+	} finally {
+	    lock.unlock();
+	}
+
+    } // awaitRoom ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @throws IndexOutOfBoundsException if the run is not within the array.
+     */
+    private static void checkBounds (byte[] data, int offset, int length) {
+
+	if (offset < 0 || length < 0 || offset + length > data.length) {
+	    throw new IndexOutOfBoundsException("Send buffer add " + offset +
+						", " + length);
+	}
+
+    } // checkBounds ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * An array added to the buffer, with the run of its bytes not yet taken.
+     */
+    private static class Segment {
+
+	Segment (byte[] data, int next, int end) {
+
+	    this.data = data;
+	    this.next = next;
+	    this.end  = end;
+
+	}
+
+	/** The array holding the bytes. */
+	final byte[] data;
+
+	/** The index of the next byte to take; advanced only by the consumer. */
+	int          next;
+
+	/** The index just past the last byte. */
+	final int    end;
+
+    } // class Segment
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The segments, oldest first. */
+    private final Queue<Segment> segments  =
+	new ConcurrentLinkedQueue<Segment>();
+
+    /** The number of bytes buffered. */
+    private final AtomicLong     size      = new AtomicLong();
+
+    /** The stream position just past the last byte appended. */
+    private volatile long        added     = 0;
+
+    /** The number of buffered bytes to which the buffer must drain before a
+     *  waiting producer is woken. */
+    private volatile long        lowWatermark;
+
+    /** The number of buffered bytes at which producers must wait. */
+    private volatile long        highWatermark;
+
+    /** Run after each run of bytes is appended. */
+    private final Runnable       onAppend;
+
+    /** Held by a producer for the whole of its call, so that calls are not
+     *  interleaved. */
+    private final ReentrantLock  producers = new ReentrantLock();
+
+    /** Guards waiting for room. */
+    private final ReentrantLock  lock      = new ReentrantLock();
+
+    /** Signalled when the buffer drains to the low watermark. */
+    private final Condition      room      = lock.newCondition();
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class SendBuffer
+// =============================================================================
@@ -0,0 +1,301 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.Arrays;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A medium shared, like a bus, by all of its clients, on which transmissions
+ * that overlap in time collide.  A client's transmission occupies the bus
+ * for the whole time that each word that it sends takes to go onto the wire
+ * at the medium's bit rate (see <code>Medium.setTiming()</code>), and for a
+ * slot time after; a word sent by another client while the bus is occupied
+ * collides with it.  The words of both are garbled for every receiver until
+ * the bus has been quiet for a slot time, and both senders are told of the
+ * collision so that they may abort.  A sender that paces its words by their
+ * wire time (see <code>Medium.sendingUntil()</code>) holds the bus for as
+ * long as its frame takes to send.
+ *
+ * A transmission takes half a slot time (the slot being the round trip across
+ * the bus) to reach every other client, so the others sense its carrier only
+ * after that; a client that starts within that window collides with it.
+ *
+ * Clients may sense the carrier (whether another client occupies the bus)
+ * before transmitting, and should check for collisions as they transmit; see
+ * <code>CsmaCdDataLinkLayer</code>.  Time is read from the medium's clock, so
+ * the bus runs in virtual time within a simulation, and the noise of a
+ * collision and the clients' backoffs are drawn from each sender's seeded
+ * generator (see <code>RandomMedium</code>), so that seeded runs repeat.
+ *
+ * @file   SharedBusMedium.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class SharedBusMedium extends RandomMedium {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Set how long a transmission occupies the bus after its most recent word
+     * has gone onto the wire, and so how close in time two transmissions may
+     * come before colliding.
+     *
+     * @param nanos The slot time, in nanoseconds.
+     * @throws RuntimeException if the slot time is not positive.
+     */
+    public synchronized void setSlotTime (long nanos) {
+
+	if (nanos <= 0) {
+	    throw new RuntimeException("Invalid slot time " + nanos);
+	}
+
+	slotTime = nanos;
+
+    } // setSlotTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the slot time, in nanoseconds. */
+    public synchronized long slotTime () {
+
+	return slotTime;
+
+    } // slotTime ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a bit from one client to the other clients.
+     *
+     * @param sender The client physical layer sending the bit.
+     * @param bit    The value to be sent.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmit (PhysicalLayer sender, boolean bit) {
+
+	transmitBlock(sender, bit ? 1 : 0, 1);
+
+    } // transmit ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Send a word of packed bits from one client to the other clients.  If the
+     * bus is occupied by another client, or the bus is still settling from a
+     * collision, the word collides: it is garbled, and each sender involved
+     * is marked as having collided.
+     *
+     * @param sender The client physical layer sending the bits.
+     * @param bits   The packed bit values to send, right-aligned.
+     * @param count  The number of low-order bits of <code>bits</code> to send.
+     * @throws RuntimeException if the sender is not registered with this
+     *                          medium.
+     */
+    public void transmitBlock (PhysicalLayer sender, long bits, int count) {
+
+	// Only registered clients may send.
+	if (!isRegistered(sender)) {
+	    throw new RuntimeException("Unregistered sender on the medium");
+	}
+
+	// The word occupies the bus from when it starts to go onto the wire
+	// until a slot time after it has wholly gone.  Only the sender's
+	// thread touches its own timing.
+	int     port     = sender.port();
+	long    start    = sendingUntil(sender);
+	long    arrival  = depart(sender, count);
+	long    until    = Math.max(start, sendingUntil(sender)) + slotTime;
+	boolean collided = false;
+	synchronized (this) {
+
+	    if (occupant != NO_OCCUPANT && occupant != port &&
+		start - occupiedUntil < 0) {
+
+		// Another client occupies the bus, so both transmissions are
+		// garbled until it has been quiet for a slot time.
+		markCollided(occupant);
+		collisions += 1;
+		jammedUntil = jammed ? Math.max(jammedUntil, occupiedUntil)
+		                     : occupiedUntil;
+		jammed      = true;
+		if (debug) {
+		    System.out.printf("SharedBusMedium.transmitBlock(): " +
+				      "ports %d and %d collided\n",
+				      occupant, port);
+		}
+
+	    }
+	    if (jammed && start - jammedUntil < 0) {
+		markCollided(port);
+		jammedUntil = Math.max(jammedUntil, until);
+		collided    = true;
+	    }
+
+	    // A transmission that takes an idle bus starts afresh.
+	    if (occupant != port || start - occupiedUntil >= 0) {
+		acquiredAt = start;
+	    }
+	    occupant      = port;
+	    occupiedUntil = until;
+
+	}
+
+	// A collided word arrives as noise.
+	if (collided) {
+	    bits ^= noise(sender).random.nextLong();
+	}
+
+	// Deliver the word to each client that is not the sender, in the
+	// receiver's lane for this sender, when it arrives.
+	for (PhysicalLayer receiver : clients) {
+	    if (receiver != sender) {
+		deliver(sender, receiver, bits, count, arrival);
+	    }
+	}
+
+    } // transmitBlock ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether another client occupies the bus.
+     *
+     * @param client The client sensing the carrier.
+     * @return <code>true</code> if another client's word is on the wire or
+     *         went within the last slot time, and its transmission has had
+     *         half a slot time to reach the client; or if the bus is still
+     *         settling from a collision.
+     */
+    public synchronized boolean carrierSensed (PhysicalLayer client) {
+
+	long now = now();
+
+	return (occupant != NO_OCCUPANT && occupant != client.port() &&
+		now - (acquiredAt + slotTime / 2) >= 0 &&
+		now - occupiedUntil < 0) ||
+	       (jammed && now - jammedUntil < 0);
+
+    } // carrierSensed ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Determine whether a client's transmission has collided since the client
+     * last asked, and clear the indication.
+     *
+     * @param client The client that is transmitting.
+     * @return <code>true</code> if it has collided.
+     */
+    public synchronized boolean collisionDetected (PhysicalLayer client) {
+
+	int port = client.port();
+	if (port >= collided.length || !collided[port]) {
+	    return false;
+	}
+
+	collided[port] = false;
+	return true;
+
+    } // collisionDetected ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the number of collisions since the medium was created. */
+    public synchronized long collisions () {
+
+	return collisions;
+
+    } // collisions ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Record that a port's transmission has collided.  Called only while
+     * holding this medium's lock.
+     *
+     * @param port The port.
+     */
+    private void markCollided (int port) {
+
+	if (port >= collided.length) {
+	    collided = Arrays.copyOf(collided, Math.max(port + 1,
+							2 * collided.length));
+	}
+	collided[port] = true;
+
+    } // markCollided ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** How long a transmission occupies the bus after each word has gone. */
+    private long      slotTime    = DEFAULT_SLOT_TIME;
+
+    /** The port that most recently sent, or <code>NO_OCCUPANT</code>. */
+    private int       occupant    = NO_OCCUPANT;
+
+    /** When the occupant's transmission began to occupy the bus. */
+    private long      acquiredAt;
+
+    /** When the occupant's latest word stops occupying the bus. */
+    private long      occupiedUntil;
+
+    /** Whether any collision has jammed the bus. */
+    private boolean   jammed      = false;
+
+    /** The time until which words are garbled by the latest collision. */
+    private long      jammedUntil;
+
+    /** Which ports have collided since they last asked, by port. */
+    private boolean[] collided    = new boolean[0];
+
+    /** The number of collisions so far. */
+    private long      collisions  = 0;
+
+    /** The occupant of a bus that no client has used. */
+    private static final int  NO_OCCUPANT       = -1;
+
+    /** The slot time unless another is set: 50 microseconds. */
+    public static final long  DEFAULT_SLOT_TIME = 50_000L;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class SharedBusMedium
+// =============================================================================
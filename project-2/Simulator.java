@@ -5,7 +5,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -17,7 +19,24 @@ import java.lang.reflect.InvocationTargetException;
 /**
  * The entry point of the simulator.  Based on command-line arguments, it
  * creates the layers to connect two simulated hosts, and then transmits data
- * (read from a file) from one host to the other.
+ * (read from a file) from one host to the other.  If the first argument
+ * names a topology file (see <code>Topology</code>) rather than a medium, the
+ * hosts and switches that it describes are created instead, and the first
+ * host declared transmits to the last.
+ *
+ * Given <code>-virtual</code> as its first argument, the simulator runs the
+ * hosts in a discrete-event simulation (see <code>EventSimulator</code>) on a
+ * single thread in virtual time, reporting the virtual time that the
+ * transmission took.  Such runs are exactly reproducible, given also
+ * <code>-seed</code> and a seed for a noisy medium (a
+ * <code>RandomMedium</code>); the seed is refused for any other.
+ *
+ * Given <code>-rate</code>, <code>-delay</code> or <code>-queue</code>, each
+ * followed by a number, the medium carries bits at that many bits per second,
+ * delays them by that many microseconds, or queues at most that many bits
+ * from each sender (see <code>Medium.setTiming()</code>), so that the
+ * bandwidth-delay product of a real link can be reproduced.  Links in a
+ * topology file are timed by the file.
  *
  * @file   Simulator.java
  * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
@@ -36,38 +55,131 @@ public class Simulator {
      */
     public static void main (String[] args) {
 
-	// Check the number of arguments passed.
-	if (args.length != 3) {
-
-	    System.err.println("Usage: java Simulator "  +
-			       "<medium type> "          +
-			       "<data link layer type> " +
-			       "<transmission data file>");
-	    System.exit(1);
-
+	// Check for options, then the number of arguments passed.
+	boolean virtual   = false;
+	Long    seed      = null;
+	long    bandwidth = Medium.UNLIMITED;
+	long    delay     = 0;
+	long    capacity  = Medium.UNLIMITED;
+	int     options   = 0;
+	while (options < args.length && args[options].startsWith("-")) {
+	    if (args[options].equals(VIRTUAL_OPTION)) {
+		virtual  = true;
+		options += 1;
+	    } else if (args[options].equals(SEED_OPTION) &&
+		       options + 1 < args.length) {
+		seed     = Long.parseLong(args[options + 1]);
+		options += 2;
+	    } else if (args[options].equals(RATE_OPTION) &&
+		       options + 1 < args.length) {
+		bandwidth = Long.parseLong(args[options + 1]);
+		options  += 2;
+	    } else if (args[options].equals(DELAY_OPTION) &&
+		       options + 1 < args.length) {
+		delay     = Long.parseLong(args[options + 1]) * 1000;
+		options  += 2;
+	    } else if (args[options].equals(QUEUE_OPTION) &&
+		       options + 1 < args.length) {
+		capacity  = Long.parseLong(args[options + 1]);
+		options  += 2;
+	    } else {
+		break;
+	    }
+	}
+	args = Arrays.copyOfRange(args, options, args.length);
+	if (args.length != 3 && args.length != 4) {
+	    usage();
 	}
 
 	// Assign names to the arguments.
 	String mediumType        = args[0];
 	String dataLinkLayerType = args[1];
 	String transmissionPath  = args[2];
-
-	// Create the medium, then the sender and receiver.
-	Medium medium   = Medium.create(mediumType);
-	Host   sender   = new Host(medium, dataLinkLayerType);
-	Host   receiver = new Host(medium, dataLinkLayerType);
+	String checksumType      = (args.length == 4) ? args[3] : "Parity";
 
 	// Read the contents of the data to be transmitted into a buffer.
 	byte[] dataToTransmit = readFile(transmissionPath);
 
+	// A topology file describes a whole network.
+	if (new File(mediumType).canRead()) {
+	    if (seed != null) {
+		System.err.println(SEED_OPTION + " applies only to a noisy " +
+				   "medium, not to a topology");
+		usage();
+	    }
+	    Topology topology = new Topology(mediumType,
+					     dataLinkLayerType,
+					     checksumType);
+	    if (virtual) {
+		EventSimulator simulation = new EventSimulator();
+		topology.addTo(simulation);
+		List<Host> hosts = topology.hosts();
+		simulate(simulation,
+			 hosts.get(0),
+			 hosts.get(hosts.size() - 1),
+			 dataToTransmit);
+	    } else {
+		simulate(topology, dataToTransmit);
+	    }
+	    return;
+	}
+
+	// Create the medium, then the sender and receiver.
+	Medium medium   = Medium.create(mediumType);
+	if (seed != null) {
+	    if (!(medium instanceof RandomMedium)) {
+		System.err.println(SEED_OPTION + " applies only to a noisy " +
+				   "medium, not to " + mediumType);
+		usage();
+	    }
+	    ((RandomMedium)medium).setSeed(seed);
+	}
+	medium.setTiming(bandwidth, delay, capacity);
+	Host   sender   = new Host(medium, dataLinkLayerType, checksumType);
+	Host   receiver = new Host(medium, dataLinkLayerType, checksumType);
+
 	// Perform the simulation!
-	simulate(sender, receiver, dataToTransmit);
+	if (virtual) {
+	    EventSimulator simulation = new EventSimulator();
+	    simulation.add(medium);
+	    simulation.add(sender);
+	    simulation.add(receiver);
+	    simulate(simulation, sender, receiver, dataToTransmit);
+	} else {
+	    simulate(sender, receiver, dataToTransmit);
+	}
+	if (medium.dropped() > 0) {
+	    System.out.printf("Bits dropped:           %d\n", medium.dropped());
+	}
 
     } // main
     // =========================================================================
 
 
 
+    // =========================================================================
+    /**
+     * Describe the command-line arguments, and abort.
+     */
+    private static void usage () {
+
+	System.err.println("Usage: java Simulator "  +
+			   "[" + VIRTUAL_OPTION + "] " +
+			   "[" + SEED_OPTION + " <seed>] " +
+			   "[" + RATE_OPTION + " <bits per second>] " +
+			   "[" + DELAY_OPTION + " <microseconds>] " +
+			   "[" + QUEUE_OPTION + " <bits>] " +
+			   "<medium type | topology file> " +
+			   "<data link layer type> " +
+			   "<transmission data file> " +
+			   "[<checksum type>]");
+	System.exit(1);
+
+    } // usage ()
+    // =========================================================================
+
+
+
     // =========================================================================
     /**
      * Read the whole contents of a given file, returning it in a byte array.
@@ -108,8 +220,9 @@ public class Simulator {
     // =========================================================================
     /**
      * Perform the simulation, having the sender transmit the given data to the
-     * receiver.  Verify that the receiver fully receives the complete and
-     * correct data.
+     * receiver.  Wait until the receiver has received as many bytes as were
+     * sent (or until <code>RECEIVE_TIMEOUT</code> passes), report how long
+     * that took, and verify that it received the complete and correct data.
      *
      * @param sender   The sending host.
      * @param receiver The receiving host.
@@ -121,17 +234,72 @@ public class Simulator {
         new Thread(receiver).start();
         new Thread(sender).start();
 
-        // Provide the data to send to the sender.
+        // Provide the data to send to the sender, and wait for it to arrive.
+	long   start    = System.nanoTime();
 	sender.send(data);
+	byte[] received = receiver.retrieve(data.length, RECEIVE_TIMEOUT);
+	long   elapsed  = System.nanoTime() - start;
+
+	report(data, received, elapsed);
+
+        receiver.stop();
+        sender.stop();
+
+    } // simulate()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform the simulation on a network from a topology file, having its
+     * first host transmit the given data to its last, as
+     * <code>simulate()</code> does for two hosts on one medium.
+     *
+     * @param topology The network.
+     * @param data     The data to be sent.
+     * @throws RuntimeException if the network has fewer than two hosts.
+     */
+    private static void simulate (Topology topology, byte[] data) {
 
-        System.out.printf("Press enter to receive: ");
-        try {
-            System.in.read();
-        } catch (IOException e) {}
-	byte[] received = receiver.retrieve();
+	List<Host> hosts = topology.hosts();
+	if (hosts.size() < 2) {
+	    throw new RuntimeException("A topology needs at least two hosts");
+	}
+	Host sender   = hosts.get(0);
+	Host receiver = hosts.get(hosts.size() - 1);
+
+	topology.start();
+
+	long   start    = System.nanoTime();
+	sender.sendTo(receiver.address(), data);
+	byte[] received = receiver.retrieve(data.length, RECEIVE_TIMEOUT);
+	long   elapsed  = System.nanoTime() - start;
+
+	report(data, received, elapsed);
+
+	topology.stop();
+
+    } // simulate()
+    // =========================================================================
 
 
+
+    // =========================================================================
+    /**
+     * Report what was received, how long it took, and whether it matches what
+     * was sent.
+     *
+     * @param data     The data sent.
+     * @param received The data received.
+     * @param elapsed  The time taken, in nanoseconds.
+     */
+    private static void report (byte[] data, byte[] received, long elapsed) {
+
 	System.out.println("Transmission received:  " + new String(received));
+	System.out.printf("Transmission time:      %.3f ms\n", elapsed / 1e6);
+	System.out.printf("Throughput:             %.3f Mbit/s\n",
+			  data.length * 8e3 / Math.max(elapsed, 1));
         if (Arrays.equals(data, received)) {
             System.out.println("Transmission match");
         } else {
@@ -141,14 +309,83 @@ public class Simulator {
                               received.length);
         }
 
-        receiver.stop();
-        sender.stop();
+    } // report()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Perform the simulation in virtual time, having the sender transmit the
+     * given data to the receiver, until it has all arrived or
+     * <code>VIRTUAL_TIME_LIMIT</code> passes.  Report the virtual time taken
+     * as <code>simulate()</code> reports the real time, and then the real time
+     * that the simulation took.
+     *
+     * @param simulation The simulation, to which the hosts and media have
+     *                   been added.
+     * @param sender     The sending host.
+     * @param receiver   The receiving host.
+     * @param data       The data to be sent.
+     */
+    private static void simulate (EventSimulator simulation,
+				  Host           sender,
+				  Host           receiver,
+				  byte[]         data) {
+
+	// Nothing would drain a full send buffer while the sender waited.
+	sender.dataLinkLayer().setSendWatermarks(Long.MAX_VALUE - 1,
+						 Long.MAX_VALUE);
+
+	long realStart = System.nanoTime();
+	long start     = simulation.nanoTime();
+	if (receiver.address() == Host.NO_ADDRESS) {
+	    sender.send(data);
+	} else {
+	    sender.sendTo(receiver.address(), data);
+	}
+	simulation.run(() -> receiver.available() >= data.length,
+		       start + VIRTUAL_TIME_LIMIT);
+	long elapsed  = simulation.nanoTime() - start;
+	long realTime = System.nanoTime() - realStart;
+
+	report(data, receiver.retrieve(), elapsed);
+	System.out.printf("Real time:              %.3f ms (%d events)\n",
+			  realTime / 1e6,
+			  simulation.eventsProcessed());
 
     } // simulate()
     // =========================================================================
 
 
 
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The longest time to wait for the data to arrive. */
+    private static final Duration RECEIVE_TIMEOUT = Duration.ofSeconds(60);
+
+    /** The longest virtual time, in nanoseconds, to simulate: a day. */
+    private static final long VIRTUAL_TIME_LIMIT = 24 * 3600 * 1_000_000_000L;
+
+    /** The option selecting a simulation in virtual time. */
+    private static final String VIRTUAL_OPTION = "-virtual";
+
+    /** The option seeding a noisy medium. */
+    private static final String SEED_OPTION    = "-seed";
+
+    /** The option setting the medium's bit rate. */
+    private static final String RATE_OPTION    = "-rate";
+
+    /** The option setting the medium's propagation delay. */
+    private static final String DELAY_OPTION   = "-delay";
+
+    /** The option setting the capacity of each sender's queue. */
+    private static final String QUEUE_OPTION   = "-queue";
+    // =========================================================================
+
+
+
 // =============================================================================
 } // class Simulator
 // =============================================================================
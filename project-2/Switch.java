@@ -0,0 +1,364 @@
+// =============================================================================
+// IMPORTS
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A learning switch, joining any number of links.  Each of its ports is a
+ * network stack of its own on one link, with no address, so that it receives
+ * every message sent along that link.  A message arriving at a port is
+ * forwarded, whole and with its address header, out of the port at which its
+ * destination was last seen as a source.  Messages for a destination not yet
+ * seen, and broadcasts, are flooded out of every other port.  A message whose
+ * destination lies behind the port at which it arrived is dropped.
+ *
+ * Started, the switch forwards on a thread per port.  Added to a
+ * discrete-event simulation instead (see <code>addTo()</code>), it forwards
+ * each message as soon as its port's data link layer delivers the last byte
+ * of it, on the simulation's thread, so switched networks run in virtual
+ * time too.
+ *
+ * @file   Switch.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class Switch {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * The constructor.
+     *
+     * @param dataLinkLayerType The type of data link layer for every port.
+     * @param checksumType      The type of <code>FrameChecksum</code> for
+     *                          every port.
+     */
+    public Switch (String dataLinkLayerType, String checksumType) {
+
+	this.dataLinkLayerType = dataLinkLayerType;
+	this.checksumType      = checksumType;
+
+	for (int address = 0; address < table.length(); address += 1) {
+	    table.set(address, NO_PORT);
+	}
+
+    } // Switch ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Attach a new port to a link.  Ports must be attached before the switch
+     * is started.
+     *
+     * @param link The medium on which to attach the port.
+     * @return the number of the new port.
+     */
+    public int attach (Medium link) {
+
+	ports.add(new Port(link, ports.size()));
+
+	return ports.size() - 1;
+
+    } // attach ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Start every port, and a thread for each to forward what it receives.
+     */
+    public void start () {
+
+	for (int port = 0; port < ports.size(); port += 1) {
+
+	    new Thread(ports.get(port)).start();
+
+	    final int ingress = port;
+	    Thread forwarder = new Thread(() -> forward(ingress), "Switch");
+	    forwarder.setDaemon(true);
+	    forwarder.start();
+
+	}
+
+    } // start ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run the switch within a discrete-event simulation, instead of starting
+     * it.  Each port forwards what it receives as it arrives, and never
+     * waits to send.
+     *
+     * @param simulation The simulation.
+     */
+    public void addTo (EventSimulator simulation) {
+
+	for (Port port : ports) {
+	    port.simulated = true;
+	    port.dataLinkLayer().setSendWatermarks(Long.MAX_VALUE - 1,
+						   Long.MAX_VALUE);
+	    simulation.add(port);
+	}
+
+    } // addTo ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run the switch within a parallel discrete-event simulation, all of its
+     * ports in one partition, as they forward to one another directly.
+     *
+     * @param simulation The simulation.
+     * @param partition  The index of the partition.
+     * @throws RuntimeException if there is no such partition.
+     */
+    public void addTo (ParallelEventSimulator simulation, int partition) {
+
+	for (Port port : ports) {
+	    port.simulated = true;
+	    port.dataLinkLayer().setSendWatermarks(Long.MAX_VALUE - 1,
+						   Long.MAX_VALUE);
+	    simulation.add(port, partition);
+	}
+
+    } // addTo ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Stop every port, ending its forwarding thread.
+     */
+    public void stop () {
+
+	for (Host port : ports) {
+	    port.stop();
+	}
+
+    } // stop ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param address A host address.
+     * @return the port at which that address was last seen as a source, or
+     *         <code>NO_PORT</code> if it has not been.
+     */
+    public int portOf (int address) {
+
+	return table.get(address);
+
+    } // portOf ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Read each message arriving at a port, learn where its source is, and
+     * forward it, until the port is stopped.  Run by the port's own thread.
+     *
+     * @param ingress The port to read.
+     */
+    private void forward (int ingress) {
+
+	DataInputStream in = new DataInputStream(ports.get(ingress)
+						 .inputStream());
+	try {
+	    while (true) {
+
+		// Read a whole message, header and all, into one array.
+		byte[] header = new byte[Host.ADDRESS_HEADER_SIZE];
+		in.readFully(header);
+		int    length  = ((header[2] & 0xff) << Byte.SIZE) |
+		                 (header[3] & 0xff);
+		byte[] message = new byte[Host.ADDRESS_HEADER_SIZE + length];
+		System.arraycopy(header, 0, message, 0, header.length);
+		in.readFully(message, header.length, length);
+
+		forward(ingress, message);
+
+	    }
+	} catch (EOFException e) {
+	    // The port was stopped.
+	} catch (IOException e) {
+	    throw new RuntimeException("Switch port " + ingress + " failed: " +
+				       e);
+	}
+
+    } // forward ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Learn where a message's source is, and forward the message.
+     *
+     * @param ingress The port at which the message arrived.
+     * @param message The whole message, address header and all.
+     */
+    private void forward (int ingress, byte[] message) {
+
+	int destination = message[0] & 0xff;
+	int source      = message[1] & 0xff;
+	if (source != Host.BROADCAST) {
+	    table.set(source, ingress);
+	}
+
+	int egress = (destination == Host.BROADCAST) ? NO_PORT
+	                                             : table.get(destination);
+	if (egress == NO_PORT) {
+	    for (int port = 0; port < ports.size(); port += 1) {
+		if (port != ingress) {
+		    ports.get(port).send(message);
+		}
+	    }
+	} else if (egress != ingress) {
+	    ports.get(egress).send(message);
+	}
+
+	if (debug) {
+	    System.out.printf("Switch.forward(): %d -> %d, port %d -> %d, " +
+			      "%d bytes\n",
+			      source, destination, ingress, egress,
+			      message.length - Host.ADDRESS_HEADER_SIZE);
+	}
+
+    } // forward ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * A port: a network stack that, within a simulation, forwards each
+     * message as soon as the last of it arrives, rather than buffering it for
+     * a forwarding thread.
+     */
+    private class Port extends Host {
+
+	Port (Medium link, int index) {
+
+	    super(link, dataLinkLayerType, checksumType);
+	    this.index = index;
+
+	}
+
+	public void receive (byte[] data, int offset, int length) {
+
+	    if (!simulated) {
+		super.receive(data, offset, length);
+		return;
+	    }
+
+	    // Messages may be split across any number of calls, so assemble
+	    // them incrementally: first each header, then the rest.
+	    int end = offset + length;
+	    while (offset < end) {
+		if (fill < Host.ADDRESS_HEADER_SIZE) {
+		    header[fill] = data[offset];
+		    fill   += 1;
+		    offset += 1;
+		    if (fill == Host.ADDRESS_HEADER_SIZE) {
+			int size = ((header[2] & 0xff) << Byte.SIZE) |
+			           (header[3] & 0xff);
+			message  = new byte[Host.ADDRESS_HEADER_SIZE + size];
+			System.arraycopy(header, 0, message, 0, fill);
+		    }
+		} else {
+		    int count = Math.min(end - offset, message.length - fill);
+		    System.arraycopy(data, offset, message, fill, count);
+		    fill   += count;
+		    offset += count;
+		}
+		if (message != null && fill == message.length) {
+		    forward(index, message);
+		    message = null;
+		    fill    = 0;
+		}
+	    }
+
+	}
+
+	/** The number of this port. */
+	final int         index;
+
+	/** Whether the port runs within a simulation. */
+	volatile boolean  simulated = false;
+
+	/** The address header being assembled. */
+	private final byte[] header  = new byte[Host.ADDRESS_HEADER_SIZE];
+
+	/** The message being assembled, once its header is complete. */
+	private byte[]    message;
+
+	/** The number of bytes of the message assembled so far. */
+	private int       fill      = 0;
+
+    } // class Port
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The type of data link layer for every port. */
+    private final String             dataLinkLayerType;
+
+    /** The type of checksum for every port. */
+    private final String             checksumType;
+
+    /** The stack at each port, by port number. */
+    private final List<Port>         ports = new ArrayList<Port>();
+
+    /** The port at which each address was last seen, by address. */
+    private final AtomicIntegerArray table =
+	new AtomicIntegerArray(Host.BROADCAST + 1);
+
+    /** The port of an address not yet seen. */
+    public static final int NO_PORT = -1;
+
+    /** Whether to emit debugging information. */
+    private static final boolean debug = false;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Switch
+// =============================================================================
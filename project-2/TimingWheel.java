@@ -0,0 +1,326 @@
+// =============================================================================
+// IMPORTS
+
+import java.util.concurrent.locks.LockSupport;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * Takes actions at given times, on a thread of its own, in real time.  Time
+ * is divided into ticks, and the wheel into a ring of slots, one per tick;
+ * an action is put in the slot of the tick in which it falls due, and an
+ * action more than a turn of the wheel away stays in its slot until the
+ * wheel comes round to its tick.  Adding an action, and taking one, thus
+ * costs the same however many are waiting, unlike keeping them sorted.
+ *
+ * The thread sleeps until the end of the next tick with anything in its
+ * slot, and takes that tick's actions in the order added.  Each action is
+ * therefore taken up to a tick late, but never early, and actions falling
+ * due in order are taken in order.
+ *
+ * @file   TimingWheel.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class TimingWheel {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a wheel with the default tick and number of slots.
+     *
+     * @param name The name of the wheel's thread.
+     */
+    public TimingWheel (String name) {
+
+	this(name, DEFAULT_TICK, DEFAULT_SLOT_COUNT);
+
+    } // TimingWheel ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Create a wheel.  Its thread starts with the first action added.
+     *
+     * @param name      The name of the wheel's thread.
+     * @param tick      The length of a tick, in nanoseconds.
+     * @param slotCount The number of slots, and so ticks in a turn.
+     * @throws RuntimeException if the tick or the number of slots is not
+     *                          positive.
+     */
+    public TimingWheel (String name, long tick, int slotCount) {
+
+	if (tick <= 0 || slotCount <= 0) {
+	    throw new RuntimeException("Invalid tick " + tick +
+				       " or slot count " + slotCount);
+	}
+
+	this.name   = name;
+	this.tick   = tick;
+	this.origin = System.nanoTime();
+	this.heads  = new Entry[slotCount];
+	this.tails  = new Entry[slotCount];
+
+    } // TimingWheel ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Take an action at a given time.  An action whose time has passed is
+     * taken at the end of the current tick.
+     *
+     * @param time   The time, in nanoseconds, as given by
+     *               <code>System.nanoTime()</code>.
+     * @param action The action to take.
+     */
+    public synchronized void add (long time, Runnable action) {
+
+	// An empty wheel stands still, so bring it up to the present.
+	if (pending == 0) {
+	    cursor = Math.max(cursor, tickOf(System.nanoTime()));
+	}
+
+	// Put the action at the end of its tick's slot.
+	long  due   = Math.max(tickOf(time), cursor);
+	int   slot  = (int)(due % heads.length);
+	Entry entry = new Entry(due, action);
+	if (heads[slot] == null) {
+	    heads[slot] = entry;
+	} else {
+	    tails[slot].next = entry;
+	}
+	tails[slot] = entry;
+	pending    += 1;
+
+	// Start the thread, or wake it if it sleeps past the action.
+	if (turner == null) {
+	    turner = new Thread(this::turn, name);
+	    turner.setDaemon(true);
+	    turner.start();
+	} else if (pending == 1) {
+	    notify();
+	} else if (due < sleepingUntil) {
+	    LockSupport.unpark(turner);
+	}
+
+    } // add ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Take each action as it falls due, forever.  Run by the wheel's own
+     * thread.
+     */
+    private void turn () {
+
+	while (true) {
+
+	    // Find the next tick with anything in its slot...
+	    long next;
+	    synchronized (this) {
+		while (pending == 0) {
+		    try {
+			wait();
+		    } catch (InterruptedException e) {
+			return;
+		    }
+		}
+		next          = nextOccupied();
+		sleepingUntil = next;
+	    }
+
+	    // ...and sleep until its end, unless woken for an earlier one.
+	    long end  = origin + (next + 1) * tick;
+	    long wait = end - System.nanoTime();
+	    if (wait > 0) {
+		LockSupport.parkNanos(this, wait);
+		if (end - System.nanoTime() > 0) {
+		    continue;
+		}
+	    }
+
+	    // Take the actions due in that tick from its slot, keeping those
+	    // for later turns.
+	    Entry due;
+	    synchronized (this) {
+		sleepingUntil = Long.MAX_VALUE;
+		due           = takeDue(next);
+		cursor        = next + 1;
+	    }
+	    for (Entry entry = due; entry != null; entry = entry.next) {
+		entry.action.run();
+	    }
+
+	}
+
+    } // turn ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @return the first tick, from the cursor on, whose slot holds anything.
+     *         Called only while something is pending.
+     */
+    private long nextOccupied () {
+
+	long due = cursor;
+	while (heads[(int)(due % heads.length)] == null) {
+	    due += 1;
+	}
+
+	return due;
+
+    } // nextOccupied ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Unlink the actions due by a tick from its slot.
+     *
+     * @param due The tick.
+     * @return the actions due, linked in the order added.
+     */
+    private Entry takeDue (long due) {
+
+	int   slot      = (int)(due % heads.length);
+	Entry taken     = null;
+	Entry takenTail = null;
+	Entry kept      = null;
+	Entry keptTail  = null;
+	for (Entry entry = heads[slot]; entry != null; ) {
+	    Entry next = entry.next;
+	    entry.next = null;
+	    if (entry.due <= due) {
+		if (taken == null) {
+		    taken = entry;
+		} else {
+		    takenTail.next = entry;
+		}
+		takenTail = entry;
+		pending  -= 1;
+	    } else {
+		if (kept == null) {
+		    kept = entry;
+		} else {
+		    keptTail.next = entry;
+		}
+		keptTail = entry;
+	    }
+	    entry = next;
+	}
+	heads[slot] = kept;
+	tails[slot] = keptTail;
+
+	return taken;
+
+    } // takeDue ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param time A time, in nanoseconds.
+     * @return the tick, counted from the wheel's creation, into which it
+     *         falls; 0 for any time before.
+     */
+    private long tickOf (long time) {
+
+	long since = time - origin;
+
+	return (since > 0) ? since / tick : 0;
+
+    } // tickOf ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * An action waiting in a slot, due in a given tick.
+     */
+    private static class Entry {
+
+	Entry (long due, Runnable action) {
+
+	    this.due    = due;
+	    this.action = action;
+
+	}
+
+	final long     due;
+	final Runnable action;
+	Entry          next;
+
+    } // class Entry
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The name of the wheel's thread. */
+    private final String   name;
+
+    /** The length of a tick, in nanoseconds. */
+    private final long     tick;
+
+    /** The time, in nanoseconds, at which tick 0 began. */
+    private final long     origin;
+
+    /** The first and last action in each slot. */
+    private final Entry[]  heads;
+    private final Entry[]  tails;
+
+    /** The earliest tick whose actions may not yet have been taken. */
+    private long           cursor        = 0;
+
+    /** The number of actions not yet taken. */
+    private int            pending       = 0;
+
+    /** The tick to whose end the thread sleeps, if it does. */
+    private long           sleepingUntil = Long.MAX_VALUE;
+
+    /** The wheel's thread, once an action has been added. */
+    private Thread         turner;
+
+    /** The length of a tick unless another is given: 100 microseconds. */
+    public static final long DEFAULT_TICK       = 100_000L;
+
+    /** The number of slots unless another is given, so that a turn is about
+     *  a tenth of a second. */
+    public static final int  DEFAULT_SLOT_COUNT = 1024;
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class TimingWheel
+// =============================================================================
@@ -0,0 +1,336 @@
+// =============================================================================
+// IMPORTS
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+// =============================================================================
+
+
+
+// =============================================================================
+/**
+ * A network of hosts and switches joined by links, read from a topology
+ * file.  Each line of the file declares one element:
+ *
+ * <pre>
+ *   host   &lt;name&gt; &lt;address&gt;
+ *   switch &lt;name&gt;
+ *   link   &lt;name&gt; &lt;name&gt; [&lt;bits per second&gt; [&lt;delay in microseconds&gt;
+ *                                 [&lt;queue capacity in bits&gt;]]]
+ * </pre>
+ *
+ * Blank lines, and everything following a <code>#</code>, are ignored.  Each
+ * host needs an address of its own.  A host must be on exactly one link; a
+ * switch may be on any number.  Links
+ * without a bandwidth or delay have those of <code>Link</code> by default,
+ * and those without a queue capacity queue without limit.
+ *
+ * @file   Topology.java
+ * @author Scott F. Kaplan (sfkaplan@cs.amherst.edu)
+ * @date   March 2020
+ */
+public class Topology {
+// =============================================================================
+
+
+
+    // =========================================================================
+    // PUBLIC METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Read a topology file and build the network that it describes.
+     *
+     * @param path              The pathname of the topology file.
+     * @param dataLinkLayerType The type of data link layer for every stack.
+     * @param checksumType      The type of <code>FrameChecksum</code> for
+     *                          every stack.
+     * @throws RuntimeException if the file cannot be read or is malformed.
+     */
+    public Topology (String path,
+		     String dataLinkLayerType,
+		     String checksumType) {
+
+	Map<String, Integer> addresses = new LinkedHashMap<String, Integer>();
+	Map<String, Switch>  switches  = new LinkedHashMap<String, Switch>();
+	Map<String, Link>    hostLinks = new LinkedHashMap<String, Link>();
+	List<String[]>       links     = new ArrayList<String[]>();
+
+	// Gather the declarations.
+	Scanner input;
+	try {
+	    input = new Scanner(new File(path));
+	} catch (FileNotFoundException e) {
+	    throw new RuntimeException(path + " is not a readable file");
+	}
+	int lineNumber = 0;
+	while (input.hasNextLine()) {
+
+	    lineNumber += 1;
+	    String line    = input.nextLine();
+	    int    comment = line.indexOf('#');
+	    if (comment >= 0) {
+		line = line.substring(0, comment);
+	    }
+	    line = line.trim();
+	    if (line.isEmpty()) {
+		continue;
+	    }
+
+	    String[] words = line.split("\\s+");
+	    String   where = path + ":" + lineNumber + ": ";
+	    if (words[0].equals("host") && words.length == 3) {
+		checkUnused(words[1], addresses, switches, where);
+		int address = (int)Math.min(parse(words[2], where),
+					    Integer.MAX_VALUE);
+		if (addresses.containsValue(address)) {
+		    throw new RuntimeException(where + "Duplicate address " +
+					       address);
+		}
+		addresses.put(words[1], address);
+	    } else if (words[0].equals("switch") && words.length == 2) {
+		checkUnused(words[1], addresses, switches, where);
+		switches.put(words[1], new Switch(dataLinkLayerType,
+						  checksumType));
+	    } else if (words[0].equals("link") &&
+		       words.length >= 3 && words.length <= 6) {
+		links.add(words);
+	    } else {
+		throw new RuntimeException(where + "Malformed line: " + line);
+	    }
+
+	}
+	input.close();
+
+	// Create each link, and attach the switches at its ends.
+	for (String[] words : links) {
+
+	    String where     = path + ": link " + words[1] + " " + words[2] +
+		               ": ";
+	    long   bandwidth = (words.length > 3) ? parse(words[3], where)
+		                                  : Link.DEFAULT_BANDWIDTH;
+	    long   delay     = (words.length > 4) ? parse(words[4], where) * 1000
+		                                  : Link.DEFAULT_DELAY;
+	    long   capacity  = (words.length > 5) ? parse(words[5], where)
+		                                  : Medium.UNLIMITED;
+	    Link   link      = new Link(bandwidth, delay);
+	    link.setTiming(bandwidth, delay, capacity);
+	    this.links.add(link);
+
+	    for (int end = 1; end <= 2; end += 1) {
+		String name = words[end];
+		if (switches.containsKey(name)) {
+		    switches.get(name).attach(link);
+		} else if (!addresses.containsKey(name)) {
+		    throw new RuntimeException(where + "Unknown element " + name);
+		} else if (hostLinks.put(name, link) != null) {
+		    throw new RuntimeException(where + "Host " + name +
+					       " is on more than one link");
+		}
+	    }
+
+	}
+
+	// Create the hosts, each on its link.
+	for (Map.Entry<String, Integer> entry : addresses.entrySet()) {
+	    String name = entry.getKey();
+	    Link   link = hostLinks.get(name);
+	    if (link == null) {
+		throw new RuntimeException(path + ": Host " + name +
+					   " is on no link");
+	    }
+	    Host host = new Host(link, dataLinkLayerType, checksumType);
+	    host.setAddress(entry.getValue());
+	    hosts.put(name, host);
+	}
+
+	this.switches.addAll(switches.values());
+
+    } // Topology ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * @param name The name of a host in the topology file.
+     * @return that host.
+     * @throws RuntimeException if there is no such host.
+     */
+    public Host host (String name) {
+
+	Host host = hosts.get(name);
+	if (host == null) {
+	    throw new RuntimeException("Unknown host " + name);
+	}
+
+	return host;
+
+    } // host ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /** @return the hosts, in the order in which they were declared. */
+    public List<Host> hosts () {
+
+	return new ArrayList<Host>(hosts.values());
+
+    } // hosts ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Start every switch, and every host as an independent thread.
+     */
+    public void start () {
+
+	for (Switch s : switches) {
+	    s.start();
+	}
+	for (Host host : hosts.values()) {
+	    new Thread(host).start();
+	}
+
+    } // start ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Run the network within a discrete-event simulation, instead of starting
+     * it.  In a parallel simulation, the switches are dealt to the partitions
+     * round robin, each with all of its ports in its one partition, and the
+     * hosts are dealt as the simulation deals them.
+     *
+     * @param simulation The simulation.
+     */
+    public void addTo (EventSimulator simulation) {
+
+	for (Link link : links) {
+	    simulation.add(link);
+	}
+	for (int i = 0; i < switches.size(); i += 1) {
+	    if (simulation instanceof ParallelEventSimulator) {
+		ParallelEventSimulator parallel =
+		    (ParallelEventSimulator)simulation;
+		switches.get(i).addTo(parallel, i % parallel.partitionCount());
+	    } else {
+		switches.get(i).addTo(simulation);
+	    }
+	}
+	for (Host host : hosts.values()) {
+	    simulation.add(host);
+	}
+
+    } // addTo ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Stop every host and switch.
+     */
+    public void stop () {
+
+	for (Host host : hosts.values()) {
+	    host.stop();
+	}
+	for (Switch s : switches) {
+	    s.stop();
+	}
+
+    } // stop ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // PRIVATE METHODS
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Parse a non-negative number.
+     *
+     * @param word  The number as text.
+     * @param where Where the number appears, for error messages.
+     * @return the number.
+     * @throws RuntimeException if the text is not a non-negative number.
+     */
+    private static long parse (String word, String where) {
+
+	long value;
+	try {
+	    value = Long.parseLong(word);
+	} catch (NumberFormatException e) {
+	    value = -1;
+	}
+	if (value < 0) {
+	    throw new RuntimeException(where + "Invalid number " + word);
+	}
+
+	return value;
+
+    } // parse ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    /**
+     * Ensure that a name has not already been declared.
+     *
+     * @param name      The name being declared.
+     * @param addresses The hosts declared so far.
+     * @param switches  The switches declared so far.
+     * @param where     Where the name appears, for error messages.
+     * @throws RuntimeException if the name has been declared.
+     */
+    private static void checkUnused (String               name,
+				     Map<String, Integer> addresses,
+				     Map<String, Switch>  switches,
+				     String               where) {
+
+	if (addresses.containsKey(name) || switches.containsKey(name)) {
+	    throw new RuntimeException(where + "Duplicate name " + name);
+	}
+
+    } // checkUnused ()
+    // =========================================================================
+
+
+
+    // =========================================================================
+    // DATA MEMBERS
+
+    /** The hosts, by name, in the order in which they were declared. */
+    private final Map<String, Host> hosts    = new LinkedHashMap<String, Host>();
+
+    /** The links. */
+    private final List<Link>        links    = new ArrayList<Link>();
+
+    /** The switches. */
+    private final List<Switch>      switches = new ArrayList<Switch>();
+    // =========================================================================
+
+
+
+// =============================================================================
+} // class Topology
+// =============================================================================